@@ -0,0 +1,34 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH 실행
+ *
+ * mvn -Pbenchmark test-compile exec:exec
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="PagingBenchmark -p members=1000,100000"
+ *
+ * 처리량(ops/ms), 평균 지연시간(us/op)과 함께 GC 프로파일러로 연산당 할당량(gc.alloc.rate.norm)을 보여준다.
+ * jmh.args에는 JMH 명령행 옵션을 그대로 넘길 수 있다. (-h 로 확인)
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		try {
+			new Runner(options).run();
+		} catch (RunnerException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+}
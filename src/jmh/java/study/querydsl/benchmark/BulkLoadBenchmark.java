@@ -0,0 +1,125 @@
+package study.querydsl.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberBulkLoader;
+import study.querydsl.repository.MemberTeamTestData;
+import study.querydsl.repository.sql.SqlMemberBulkLoader;
+
+/**
+ * members 건을 한 번 저장하는 시간 비교
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="BulkLoadBenchmark -p members=1000000"
+ *
+ * - persistLoop: em.persist 루프, JDBC batch 없음 (batchSize 건마다 flush/clear 하므로 MemberBulkLoader와 차이는 JDBC batch 여부뿐)
+ * - memberBulkLoader: MemberBulkLoader (JPA, JDBC batch)
+ * - sqlMemberBulkLoader: SqlMemberBulkLoader (querydsl-sql multi-row insert)
+ *
+ * 호출마다 새 팀에 저장하고 끝나면 그 팀을 지운다. (MemberTeamTestData.deleteTeams)
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkLoadBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class LoaderState {
+
+		@Param({ "10000" })
+		int members;
+
+		ConfigurableApplicationContext context;
+		EntityManager em;
+		TransactionTemplate tx;
+		MemberBulkLoader memberBulkLoader;
+		SqlMemberBulkLoader sqlMemberBulkLoader;
+		int batchSize;
+		Team team;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			context = MemberDataState.startApplication();
+			em = context.getBean(EntityManager.class);
+			tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+			memberBulkLoader = context.getBean(MemberBulkLoader.class);
+			sqlMemberBulkLoader = context.getBean(SqlMemberBulkLoader.class);
+			batchSize = context.getEnvironment()
+					.getProperty("spring.jpa.properties.hibernate.jdbc.batch_size", Integer.class, 100);
+		}
+
+		@Setup(Level.Invocation)
+		public void newTeam() {
+			team = new Team("bulkTeam");
+		}
+
+		@TearDown(Level.Invocation)
+		public void deleteTeam() {
+			if (team.getId() != null) {
+				tx.executeWithoutResult(status -> MemberTeamTestData.deleteTeams(em, List.of(team.getId())));
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			context.close();
+		}
+
+	}
+
+	@Benchmark
+	public long persistLoop(LoaderState state) {
+		return state.tx.execute(status -> {
+			// 이 세션만 JDBC batch를 끈다. (hibernate.jdbc.batch_size 설정 이전과 같게 한 건씩 insert)
+			state.em.unwrap(Session.class).setJdbcBatchSize(1);
+			state.em.persist(state.team);
+			long count = 0;
+			for (Member newMember : MemberTeamTestData.members(state.members, state.team)) {
+				state.em.persist(newMember);
+				if (++count % state.batchSize == 0) {
+					state.em.flush();
+					state.em.clear();
+				}
+			}
+			return count;
+		});
+	}
+
+	@Benchmark
+	public long memberBulkLoader(LoaderState state) {
+		return state.memberBulkLoader.load(Arrays.asList(state.team),
+				MemberTeamTestData.members(state.members, state.team));
+	}
+
+	@Benchmark
+	public long sqlMemberBulkLoader(LoaderState state) {
+		return state.sqlMemberBulkLoader.load(Arrays.asList(state.team),
+				MemberTeamTestData.members(state.members, state.team));
+	}
+
+}
@@ -0,0 +1,108 @@
+package study.querydsl.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.IndexAdvisor;
+import study.querydsl.repository.MemberSearchQueryCache;
+
+/**
+ * IndexAdvisor가 제안한 인덱스를 만들기 전(indexed=false)과 후(indexed=true)의 검색 비교
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="IndexAdvisorBenchmark -p members=1000000"
+ *
+ * - username: username 등호 조건 (1건)
+ * - usernameAndAge: username 등호 + age 범위 조건 (1건)
+ * - ageRange: age 범위 조건 (members의 1%, 앞 20건)
+ *
+ * H2는 같은 SQL, 같은 파라미터의 결과를 재사용하므로 호출마다 조건 값을 바꾼다.
+ * username은 전체 스캔이면 거의 끝까지 읽도록 뒤쪽 100명 중에서 고른다.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexAdvisorBenchmark {
+
+	private static final int CONDITIONS = 100;
+
+	@State(Scope.Benchmark)
+	public static class IndexState {
+
+		@Param({ "false", "true" })
+		boolean indexed;
+
+		MemberSearchQueryCache queryCache;
+		MemberSearchCondition[] username = new MemberSearchCondition[CONDITIONS];
+		MemberSearchCondition[] usernameAndAge = new MemberSearchCondition[CONDITIONS];
+		MemberSearchCondition[] ageRange = new MemberSearchCondition[CONDITIONS];
+		int next;
+
+		@Setup(Level.Trial)
+		public void setUp(MemberDataState data) {
+			queryCache = data.context.getBean(MemberSearchQueryCache.class);
+
+			for (int i = 0; i < CONDITIONS; i++) {
+				int target = data.members - 1 - i;
+				username[i] = new MemberSearchCondition();
+				username[i].setUsername("member" + target);
+
+				usernameAndAge[i] = new MemberSearchCondition();
+				usernameAndAge[i].setUsername("member" + target);
+				usernameAndAge[i].setAgeGoe(target % 100);
+
+				// 나이는 0 ~ 99를 돌아가며 주었으므로 한 살은 1%
+				ageRange[i] = new MemberSearchCondition();
+				ageRange[i].setAgeGoe(i % 100);
+				ageRange[i].setAgeLoe(i % 100);
+			}
+
+			// 검색 API로 들어온 것처럼 기록하고 제안한 인덱스를 만든다.
+			IndexAdvisor advisor = data.context.getBean(IndexAdvisor.class);
+			advisor.record(username[0]);
+			advisor.record(usernameAndAge[0]);
+			advisor.record(ageRange[0]);
+			if (indexed) {
+				advisor.apply();
+			}
+		}
+
+		int next() {
+			next = (next + 1) % CONDITIONS;
+			return next;
+		}
+
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> username(MemberDataState data, IndexState state) {
+		return state.queryCache.search(data.em, state.username[state.next()], 0, 20);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> usernameAndAge(MemberDataState data, IndexState state) {
+		return state.queryCache.search(data.em, state.usernameAndAge[state.next()], 0, 20);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> ageRange(MemberDataState data, IndexState state) {
+		return state.queryCache.search(data.em, state.ageRange[state.next()], 0, 20);
+	}
+
+}
@@ -0,0 +1,85 @@
+package study.querydsl.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.sql.SqlMemberBulkLoader;
+
+/**
+ * 임베디드(in-memory) H2로 애플리케이션을 띄우고 members 건수만큼 데이터를 넣어둔다.
+ *
+ * teamA, teamB 두 팀에 번갈아 넣고 나이는 0 ~ 99 를 돌아가며 준다.
+ */
+@State(Scope.Benchmark)
+public class MemberDataState {
+
+	private static final int LOAD_CHUNK = 20_000;
+
+	@Param({ "1000", "10000" })
+	int members;
+
+	ConfigurableApplicationContext context;
+	EntityManager em;
+
+	/**
+	 * 임베디드 H2로 애플리케이션을 띄운다. (데이터 없이)
+	 */
+	static ConfigurableApplicationContext startApplication() {
+		// 명령행 인자가 application.properties 보다 우선한다.
+		return new SpringApplicationBuilder(QuerydslApplication.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.profiles.active=benchmark",
+						"--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+						"--spring.jpa.properties.hibernate.format_sql=false",
+						"--spring.jpa.properties.hibernate.use_sql_comments=false",
+						"--decorator.datasource.enabled=false",
+						"--logging.level.root=warn",
+						"--logging.level.org.hibernate.SQL=warn");
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = startApplication();
+		em = context.getBean(EntityManager.class);
+
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		SqlMemberBulkLoader loader = context.getBean(SqlMemberBulkLoader.class);
+		// username 조각, 읽기 모델까지 한 트랜잭션으로 넣으면 H2 커밋이 매우 느려지므로 나눠서 커밋한다.
+		List<Team> teams = Arrays.asList(teamA, teamB);
+		List<Member> data = new ArrayList<>(LOAD_CHUNK);
+		for (int i = 0; i < members; i++) {
+			Member member = new Member("member" + i, i % 100);
+			member.setTeam(i % 2 == 0 ? teamA : teamB);
+			data.add(member);
+			if (data.size() == LOAD_CHUNK || i == members - 1) {
+				loader.load(teams, data);
+				teams = Collections.emptyList();
+				data.clear();
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+}
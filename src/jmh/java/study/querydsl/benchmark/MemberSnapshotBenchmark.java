@@ -0,0 +1,124 @@
+package study.querydsl.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.MemberSnapshot;
+
+/**
+ * MemberRepository.search 를 DB(snapshot=false)와 메모리 스냅샷(snapshot=true)으로 비교
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="MemberSnapshotBenchmark -p members=1000000"
+ *
+ * - username: username 등호 조건 (1건)
+ * - usernameStartsWith: username 앞부분 조건 (11건)
+ * - teamAndAge: 팀 이름 + age 범위 조건 (members의 0.5%)
+ * - teamAndAgePage: teamAndAge를 searchPageComplex로 (20건 + count)
+ * - teamAndDecadePage: 팀 이름 + 10살 구간 조건을 searchPageComplex로 (스냅샷이면 bitmap만으로 count)
+ *
+ * 인덱스는 없다. (IndexAdvisorBenchmark 참고) H2의 결과 재사용을 피하려고 호출마다 조건 값을 바꾼다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberSnapshotBenchmark {
+
+	private static final int CONDITIONS = 100;
+	private static final PageRequest PAGE = PageRequest.of(0, 20);
+
+	@State(Scope.Benchmark)
+	public static class SnapshotState {
+
+		@Param({ "false", "true" })
+		boolean snapshot;
+
+		MemberRepository memberRepository;
+		MemberSearchCondition[] username = new MemberSearchCondition[CONDITIONS];
+		MemberSearchCondition[] usernameStartsWith = new MemberSearchCondition[CONDITIONS];
+		MemberSearchCondition[] teamAndAge = new MemberSearchCondition[CONDITIONS];
+		MemberSearchCondition[] teamAndDecade = new MemberSearchCondition[CONDITIONS];
+		int next;
+
+		@Setup(Level.Trial)
+		public void setUp(MemberDataState data) {
+			memberRepository = data.context.getBean(MemberRepository.class);
+			MemberSnapshot memberSnapshot = data.context.getBean(MemberSnapshot.class);
+			memberSnapshot.setEnabled(snapshot);
+			if (snapshot) {
+				memberSnapshot.reload();
+			}
+
+			for (int i = 0; i < CONDITIONS; i++) {
+				int target = data.members - 1 - i;
+				username[i] = new MemberSearchCondition();
+				username[i].setUsername("member" + target);
+
+				// member{n/10}, member{n/10}0 ~ member{n/10}9
+				usernameStartsWith[i] = new MemberSearchCondition();
+				usernameStartsWith[i].setUsernameStartsWith("member" + target / 10);
+
+				teamAndAge[i] = new MemberSearchCondition();
+				teamAndAge[i].setTeamName(i % 2 == 0 ? "teamA" : "teamB");
+				teamAndAge[i].setAgeGoe(i);
+				teamAndAge[i].setAgeLoe(i);
+
+				teamAndDecade[i] = new MemberSearchCondition();
+				teamAndDecade[i].setTeamName(i % 2 == 0 ? "teamA" : "teamB");
+				teamAndDecade[i].setAgeGoe(i % 10 * 10);
+				teamAndDecade[i].setAgeLoe(i % 10 * 10 + 9);
+			}
+		}
+
+		int next() {
+			next = (next + 1) % CONDITIONS;
+			return next;
+		}
+
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> username(SnapshotState state) {
+		return state.memberRepository.search(state.username[state.next()]);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> usernameStartsWith(SnapshotState state) {
+		return state.memberRepository.search(state.usernameStartsWith[state.next()]);
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> teamAndAge(SnapshotState state) {
+		return state.memberRepository.search(state.teamAndAge[state.next()]);
+	}
+
+	@Benchmark
+	public Page<MemberTeamDto> teamAndAgePage(SnapshotState state) {
+		return state.memberRepository.searchPageComplex(state.teamAndAge[state.next()], PAGE);
+	}
+
+	@Benchmark
+	public Page<MemberTeamDto> teamAndDecadePage(SnapshotState state) {
+		return state.memberRepository.searchPageComplex(state.teamAndDecade[state.next()], PAGE);
+	}
+
+}
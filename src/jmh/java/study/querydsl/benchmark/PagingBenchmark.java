@@ -0,0 +1,144 @@
+package study.querydsl.benchmark;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberTestRepository;
+
+/**
+ * 페이징 조회 비교
+ *
+ * - fetchResults: content + count를 한 번에 (count 쿼리는 content 쿼리에서 만들어진다.)
+ * - fetchAndCount: content, count 쿼리를 따로 작성
+ * - applyPagination / applyPaginationWithCountQuery: Querydsl4RepositorySupport 두 가지 방식
+ *
+ * count 캐시 없이 매번 count 쿼리를 실행한다.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PagingBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class PagingState {
+
+		MemberSearchCondition condition;
+		Pageable pageable;
+		MemberTestRepository memberTestRepository;
+
+		@Setup(Level.Trial)
+		public void setUp(MemberDataState data) {
+			condition = new MemberSearchCondition();
+			condition.setTeamName("teamA");
+			condition.setAgeGoe(10);
+			condition.setAgeLoe(80);
+			pageable = PageRequest.of(2, 20);
+
+			memberTestRepository = new MemberTestRepository(Member.class);
+			memberTestRepository.setEntityManager(data.em);
+		}
+
+	}
+
+	@Benchmark
+	public Page<MemberTeamDto> fetchResults(MemberDataState data, PagingState state) {
+		QueryResults<MemberTeamDto> results = searchQuery(data, state.condition)
+				.offset(state.pageable.getOffset())
+				.limit(state.pageable.getPageSize())
+				.fetchResults();
+		return new PageImpl<>(results.getResults(), state.pageable, results.getTotal());
+	}
+
+	@Benchmark
+	public Page<MemberTeamDto> fetchAndCount(MemberDataState data, PagingState state) {
+		List<MemberTeamDto> content = searchQuery(data, state.condition)
+				.offset(state.pageable.getOffset())
+				.limit(state.pageable.getPageSize())
+				.fetch();
+
+		long total = new JPAQueryFactory(data.em)
+				.select(member.count())
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(usernameEq(state.condition.getUsername()),
+						teamNameEq(state.condition.getTeamName()),
+						ageGoe(state.condition.getAgeGoe()),
+						ageLoe(state.condition.getAgeLoe()))
+				.fetchOne();
+		return new PageImpl<>(content, state.pageable, total);
+	}
+
+	@Benchmark
+	public Page<Member> applyPagination(PagingState state) {
+		return state.memberTestRepository.applyPagenation(state.condition, state.pageable);
+	}
+
+	@Benchmark
+	public Page<Member> applyPaginationWithCountQuery(PagingState state) {
+		return state.memberTestRepository.applyPagenation2(state.condition, state.pageable);
+	}
+
+	private JPAQuery<MemberTeamDto> searchQuery(MemberDataState data, MemberSearchCondition condition) {
+		return new JPAQueryFactory(data.em)
+				.select(new QMemberTeamDto(
+						member.id.as("memberId"),
+						member.username,
+						member.age,
+						team.id.as("teamId"),
+						team.name.as("teamName")))
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()));
+	}
+
+	private BooleanExpression usernameEq(String username) {
+		return hasText(username) ? member.username.eq(username) : null;
+	}
+
+	private BooleanExpression teamNameEq(String teamName) {
+		return hasText(teamName) ? team.name.eq(teamName) : null;
+	}
+
+	private BooleanExpression ageGoe(Integer ageGoe) {
+		return ageGoe != null ? member.age.goe(ageGoe) : null;
+	}
+
+	private BooleanExpression ageLoe(Integer ageLoe) {
+		return ageLoe != null ? member.age.loe(ageLoe) : null;
+	}
+
+}
@@ -0,0 +1,102 @@
+package study.querydsl.benchmark;
+
+import static study.querydsl.entity.QMember.member;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.repository.support.FastProjections;
+
+/**
+ * QuerydslBasicTest의 DTO 조회 방식 4가지와 FastProjections 비교 (전체 Member 조회)
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+	@Benchmark
+	public List<MemberDto> bean(MemberDataState state) {
+		return new JPAQueryFactory(state.em)
+				.select(Projections.bean(MemberDto.class,
+						member.username,
+						member.age))
+				.from(member)
+				.fetch();
+	}
+
+	@Benchmark
+	public List<MemberDto> fields(MemberDataState state) {
+		return new JPAQueryFactory(state.em)
+				.select(Projections.fields(MemberDto.class,
+						member.username,
+						member.age))
+				.from(member)
+				.fetch();
+	}
+
+	@Benchmark
+	public List<UserDto> constructor(MemberDataState state) {
+		return new JPAQueryFactory(state.em)
+				.select(Projections.constructor(UserDto.class,
+						member.username,
+						member.age))
+				.from(member)
+				.fetch();
+	}
+
+	@Benchmark
+	public List<MemberDto> queryProjection(MemberDataState state) {
+		return new JPAQueryFactory(state.em)
+				.select(new QMemberDto(member.username, member.age))
+				.from(member)
+				.fetch();
+	}
+
+	@Benchmark
+	public List<MemberDto> fastBean(MemberDataState state) {
+		return new JPAQueryFactory(state.em)
+				.select(FastProjections.bean(MemberDto.class,
+						member.username,
+						member.age))
+				.from(member)
+				.fetch();
+	}
+
+	@Benchmark
+	public List<MemberDto> fastFields(MemberDataState state) {
+		return new JPAQueryFactory(state.em)
+				.select(FastProjections.fields(MemberDto.class,
+						member.username,
+						member.age))
+				.from(member)
+				.fetch();
+	}
+
+	@Benchmark
+	public List<UserDto> fastConstructor(MemberDataState state) {
+		return new JPAQueryFactory(state.em)
+				.select(FastProjections.constructor(UserDto.class,
+						member.username,
+						member.age))
+				.from(member)
+				.fetch();
+	}
+
+}
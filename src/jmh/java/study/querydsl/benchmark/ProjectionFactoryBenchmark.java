@@ -0,0 +1,78 @@
+package study.querydsl.benchmark;
+
+import static study.querydsl.entity.QMember.member;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.repository.support.FastProjections;
+
+/**
+ * row 하나를 DTO로 만드는 비용 (DB 없이 newInstance만 측정)
+ *
+ * Projections(리플렉션)과 FastProjections(LambdaMetafactory / MethodHandle) 비교
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionFactoryBenchmark {
+
+	final FactoryExpression<MemberDto> bean = Projections.bean(MemberDto.class, member.username, member.age);
+	final FactoryExpression<MemberDto> fields = Projections.fields(MemberDto.class, member.username, member.age);
+	final FactoryExpression<UserDto> constructor = Projections.constructor(UserDto.class, member.username, member.age);
+
+	final FactoryExpression<MemberDto> fastBean = FastProjections.bean(MemberDto.class, member.username, member.age);
+	final FactoryExpression<MemberDto> fastFields = FastProjections.fields(MemberDto.class, member.username, member.age);
+	final FactoryExpression<UserDto> fastConstructor = FastProjections.constructor(UserDto.class, member.username, member.age);
+
+	String username = "member1";
+	Integer age = 10;
+
+	@Benchmark
+	public MemberDto bean() {
+		return bean.newInstance(username, age);
+	}
+
+	@Benchmark
+	public MemberDto fields() {
+		return fields.newInstance(username, age);
+	}
+
+	@Benchmark
+	public UserDto constructor() {
+		return constructor.newInstance(username, age);
+	}
+
+	@Benchmark
+	public MemberDto fastBean() {
+		return fastBean.newInstance(username, age);
+	}
+
+	@Benchmark
+	public MemberDto fastFields() {
+		return fastFields.newInstance(username, age);
+	}
+
+	@Benchmark
+	public UserDto fastConstructor() {
+		return fastConstructor.newInstance(username, age);
+	}
+
+}
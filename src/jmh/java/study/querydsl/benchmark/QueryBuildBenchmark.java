@@ -0,0 +1,110 @@
+package study.querydsl.benchmark;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+/**
+ * MemberSearchCondition 검색 쿼리 생성, JPQL 직렬화 비용 (DB 없이 CPU만 측정)
+ *
+ * shape는 MemberSearchQueryCache의 조건 비트 (0 = 조건 없음, 15 = 조건 4개 모두)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuildBenchmark {
+
+	@Param({ "0", "15" })
+	int shape;
+
+	MemberSearchCondition condition;
+
+	@Setup
+	public void setUp() {
+		condition = new MemberSearchCondition();
+		if ((shape & 1) != 0) {
+			condition.setUsername("member1");
+		}
+		if ((shape & 2) != 0) {
+			condition.setTeamName("teamA");
+		}
+		if ((shape & 4) != 0) {
+			condition.setAgeGoe(10);
+		}
+		if ((shape & 8) != 0) {
+			condition.setAgeLoe(40);
+		}
+	}
+
+	@Benchmark
+	public JPAQuery<MemberTeamDto> build() {
+		return searchQuery(condition);
+	}
+
+	@Benchmark
+	public String buildAndSerialize() {
+		JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+		serializer.serialize(searchQuery(condition).getMetadata(), false, null);
+		return serializer.toString();
+	}
+
+	private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition) {
+		return new JPAQuery<Void>()
+				.select(new QMemberTeamDto(
+						member.id.as("memberId"),
+						member.username,
+						member.age,
+						team.id.as("teamId"),
+						team.name.as("teamName")))
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(
+						usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()));
+	}
+
+	private BooleanExpression usernameEq(String username) {
+		return hasText(username) ? member.username.eq(username) : null;
+	}
+
+	private BooleanExpression teamNameEq(String teamName) {
+		return hasText(teamName) ? team.name.eq(teamName) : null;
+	}
+
+	private BooleanExpression ageGoe(Integer ageGoe) {
+		return ageGoe != null ? member.age.goe(ageGoe) : null;
+	}
+
+	private BooleanExpression ageLoe(Integer ageLoe) {
+		return ageLoe != null ? member.age.loe(ageLoe) : null;
+	}
+
+}
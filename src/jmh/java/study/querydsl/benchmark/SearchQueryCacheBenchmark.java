@@ -0,0 +1,143 @@
+package study.querydsl.benchmark;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberSearchQueryCache;
+import study.querydsl.repository.support.UsernameSearch;
+
+/**
+ * 검색 조건마다 querydsl로 JPQL을 만드는 것과 MemberSearchQueryCache(모양별로 한 번만 만든다) 비교
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="SearchQueryCacheBenchmark -p members=1000"
+ *
+ * 연산당 시간과 할당량(gc.alloc.rate.norm)을 본다. 조건의 모양(어떤 필드가 있는지) 128가지를 돌아가며 쓴다.
+ * 쿼리 실행 비용은 두 쪽이 같으므로 members가 작을수록 JPQL을 만드는 비용 차이가 잘 보인다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchQueryCacheBenchmark {
+
+	private static final int SHAPES = 1 << 7;
+
+	@State(Scope.Benchmark)
+	public static class SearchState {
+
+		JPAQueryFactory queryFactory;
+		MemberSearchQueryCache cache;
+		MemberSearchCondition[] conditions = new MemberSearchCondition[SHAPES];
+		int next;
+
+		@Setup(Level.Trial)
+		public void setUp(MemberDataState data) {
+			queryFactory = new JPAQueryFactory(data.em);
+			cache = data.context.getBean(MemberSearchQueryCache.class);
+			for (int shape = 0; shape < SHAPES; shape++) {
+				conditions[shape] = conditionOf(shape);
+			}
+		}
+
+		MemberSearchCondition next() {
+			next = (next + 1) % SHAPES;
+			return conditions[next];
+		}
+
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> querydsl(SearchState state) {
+		MemberSearchCondition condition = state.next();
+		return state.queryFactory
+				.select(new QMemberTeamDto(
+						member.id.as("memberId"),
+						member.username,
+						member.age,
+						team.id.as("teamId"),
+						team.name.as("teamName")))
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(
+						usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition))
+				.fetch();
+	}
+
+	@Benchmark
+	public List<MemberTeamDto> cached(SearchState state, MemberDataState data) {
+		return state.cache.search(data.em, state.next());
+	}
+
+	/**
+	 * shape의 비트마다 필드 하나를 채운다. (member3, teamB, 20 ~ 40살)
+	 */
+	private static MemberSearchCondition conditionOf(int shape) {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		if ((shape & 1) != 0) {
+			condition.setUsername("member3");
+		}
+		if ((shape & 1 << 1) != 0) {
+			condition.setTeamName("teamB");
+		}
+		if ((shape & 1 << 2) != 0) {
+			condition.setAgeGoe(20);
+		}
+		if ((shape & 1 << 3) != 0) {
+			condition.setAgeLoe(40);
+		}
+		if ((shape & 1 << 4) != 0) {
+			condition.setUsernameIgnoreCase("MEMBER3");
+		}
+		if ((shape & 1 << 5) != 0) {
+			condition.setUsernameStartsWith("MEMBER3");
+		}
+		if ((shape & 1 << 6) != 0) {
+			condition.setUsernameContains("ember3");
+		}
+		return condition;
+	}
+
+	private BooleanExpression usernameEq(String username) {
+		return hasText(username) ? member.username.eq(username) : null;
+	}
+
+	private BooleanExpression teamNameEq(String teamName) {
+		return hasText(teamName) ? team.name.eq(teamName) : null;
+	}
+
+	private BooleanExpression ageGoe(Integer ageGoe) {
+		return ageGoe != null ? member.age.goe(ageGoe) : null;
+	}
+
+	private BooleanExpression ageLoe(Integer ageLoe) {
+		return ageLoe != null ? member.age.loe(ageLoe) : null;
+	}
+
+}
@@ -1,12 +1,17 @@
 package study.querydsl;
 
 import javax.persistence.EntityManager;
+import javax.sql.DataSource;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
 
 @SpringBootApplication
 public class QuerydslApplication {
@@ -19,5 +24,13 @@ public class QuerydslApplication {
 	JPAQueryFactory jpaQueryFactory(EntityManager em) {
 		return new JPAQueryFactory(em);
 	}
+	
+	// EntityManager를 거치지 않고 JDBC로 바로 쓰는 경우에 사용
+	// 스프링 트랜잭션의 커넥션을 그대로 사용하므로 트랜잭션 안에서만 사용해야 한다.
+	@Bean
+	SQLQueryFactory sqlQueryFactory(DataSource dataSource) {
+		return new SQLQueryFactory(new Configuration(new H2Templates()),
+				() -> DataSourceUtils.getConnection(dataSource));
+	}
 
 }
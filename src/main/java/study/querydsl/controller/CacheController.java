@@ -0,0 +1,47 @@
+package study.querydsl.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.CacheRegionStatsDto;
+
+@RestController
+@RequiredArgsConstructor
+public class CacheController {
+
+	private final EntityManagerFactory emf;
+
+	// 2차 캐시, 쿼리 캐시 영역별 적중률 (hibernate.generate_statistics=true 일 때만 집계된다. 기본은 local 프로파일에서만 켠다.)
+	@GetMapping("/v1/cache/stats")
+	public List<CacheRegionStatsDto> cacheStats() {
+		Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+		List<CacheRegionStatsDto> result = new ArrayList<>();
+		for (String region : statistics.getSecondLevelCacheRegionNames()) {
+			CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+			if (regionStatistics != null) {
+				result.add(new CacheRegionStatsDto(region,
+						regionStatistics.getHitCount(),
+						regionStatistics.getMissCount(),
+						regionStatistics.getPutCount(),
+						regionStatistics.getElementCountInMemory()));
+			}
+		}
+		result.add(new CacheRegionStatsDto("query",
+				statistics.getQueryCacheHitCount(),
+				statistics.getQueryCacheMissCount(),
+				statistics.getQueryCachePutCount(),
+				-1));
+		return result;
+	}
+
+}
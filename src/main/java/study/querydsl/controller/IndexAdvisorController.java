@@ -0,0 +1,40 @@
+package study.querydsl.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.IndexAdviceDto;
+import study.querydsl.repository.IndexAdvisor;
+
+@RestController
+@RequiredArgsConstructor
+public class IndexAdvisorController {
+
+	private final IndexAdvisor indexAdvisor;
+
+	@Value("${querydsl.index-advisor.create-enabled:false}")
+	private boolean createEnabled;
+
+	// 검색 API로 들어온 조건 모양별 EXPLAIN 결과, 전체 스캔 여부, 제안 인덱스
+	@GetMapping("/v1/index/advice")
+	public List<IndexAdviceDto> advice() {
+		return indexAdvisor.advise();
+	}
+
+	// 제안한 인덱스를 바로 만든다. (querydsl.index-advisor.create-enabled=true 일 때만)
+	@PostMapping("/v1/index/advice/apply")
+	public ResponseEntity<List<String>> apply() {
+		if (!createEnabled) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		return ResponseEntity.ok(indexAdvisor.apply());
+	}
+
+}
@@ -1,8 +1,10 @@
 package study.querydsl.controller;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
@@ -11,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberBulkLoader;
 
 @Profile("local")
 @Component
@@ -25,21 +28,24 @@ public class InitMember {
 	}
 	
 	@Component
+	@RequiredArgsConstructor
 	static class InitMemberService {
-		@PersistenceContext
-		private EntityManager em;
+		
+		private final MemberBulkLoader memberBulkLoader;
 		
 		@Transactional
 		public void init() {
 			Team teamA = new Team("teamA");
 			Team teamB = new Team("teamB");
-			em.persist(teamA);
-			em.persist(teamB);
 			
+			List<Member> members = new ArrayList<>();
 			for (int i = 0; i < 100; i++) {
 				Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-				em.persist(new Member("member" + i, i, selectedTeam));
+				members.add(new Member("member" + i, i, selectedTeam));
 			}
+			
+			// em.persist를 한 건씩 하던 것을 batch insert로 저장
+			memberBulkLoader.load(Arrays.asList(teamA, teamB), members);
 		}
 	}
 
@@ -1,17 +1,39 @@
 package study.querydsl.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import lombok.RequiredArgsConstructor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage.Total;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.repository.support.MemberTeamVersion;
 
 @RestController
 @RequiredArgsConstructor
@@ -19,20 +41,126 @@ public class MemberController {
 	
 	private final MemberJpaRepository memberJpaRepository;
 	private final MemberRepository memberRepository;
+	private final ObjectMapper objectMapper;
+	private final MemberTeamVersion memberTeamVersion;
+	
+	@Value("${querydsl.export.fetch-size:500}")
+	private int exportFetchSize;
+	
+	@Value("${querydsl.etag.enabled:true}")
+	private boolean etagEnabled;
+	
+	@Value("${querydsl.keyset.max-size:100}")
+	private int keysetMaxSize;
 	
+	// If-None-Match가 ETag(member, team 버전 + 검색 조건)와 같으면 조회 없이 304
 	@GetMapping("/v1/members")
-	public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
+	public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition, WebRequest request) {
+		if (notModified(request, "v1", condition)) {
+			return null;
+		}
 		return memberJpaRepository.search(condition);
 	}
 	
+	// 전체 결과를 List로 만들지 않고 한 줄에 한 건씩(NDJSON) 바로 응답에 써준다.
+	@GetMapping("/v1/members/export")
+	public void exportMemberV1(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+		response.setContentType("application/x-ndjson");
+		response.setCharacterEncoding("UTF-8");
+		
+		OutputStream out = response.getOutputStream();
+		// 한 건마다 flush 하지 않고 응답 버퍼가 찰 때 내보낸다.
+		ObjectWriter writer = objectMapper.writerFor(MemberTeamDto.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(null);
+			
+			memberJpaRepository.exportSearch(condition, exportFetchSize, row -> {
+				try {
+					writer.writeValue(generator, row);
+					generator.writeRaw('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+	
+	// count=CAPPED(최대 querydsl.count.cap 건까지), count=ESTIMATED(통계로 추정)
+	// 응답의 countStrategy, totalExact로 total을 어떻게 구했는지 알 수 있다.
 	@GetMapping("/v2/members")
-	public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-		return memberRepository.searchPageSimple(condition, pageable);
+	public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+			@RequestParam(defaultValue = "EXACT") CountStrategy count, WebRequest request) {
+		if (notModified(request, "v2", condition, pageable, count)) {
+			return null;
+		}
+		return memberRepository.searchPageSimple(condition, pageable, count);
 	}
 	
 	@GetMapping("/v3/members")
-	public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-		 return memberRepository.searchPageComplex(condition, pageable);
+	public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+			@RequestParam(defaultValue = "EXACT") CountStrategy count) {
+		 return memberRepository.searchPageComplex(condition, pageable, count);
+	}
+	
+	// V2, V3와 같은 검색을 컨텐츠 List, Page 객체 없이 조회하는 대로 JSON으로 쓴다.
+	// page 정보(totalElements 등)는 count 쿼리가 끝난 뒤 content 뒤에 붙는다. (StreamingPageWriter)
+	@GetMapping({ "/v2/members/stream", "/v3/members/stream" })
+	public void streamMemberV3(MemberSearchCondition condition, Pageable pageable,
+			@RequestParam(defaultValue = "EXACT") CountStrategy count, WebRequest request,
+			HttpServletResponse response) throws IOException {
+		if (notModified(request, "stream", condition, pageable, count)) {
+			return;
+		}
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setCharacterEncoding("UTF-8");
+		
+		StreamingPageWriter<MemberTeamDto> writer = new StreamingPageWriter<>(objectMapper, MemberTeamDto.class,
+				response.getOutputStream());
+		try {
+			Total total = memberRepository.streamPage(condition, pageable, count, writer::write);
+			writer.finish(pageable, total);
+		} catch (RuntimeException | IOException e) {
+			// 아직 아무것도 내보내지 않았으면 버퍼를 비워서 @ExceptionHandler, 오류 페이지가 응답하게 한다.
+			// 이미 내보냈다면 응답은 끝나지 않은 JSON으로 남는다.
+			if (!response.isCommitted()) {
+				response.resetBuffer();
+			}
+			throw e;
+		}
+	}
+	
+	// 다음 페이지는 응답의 nextCursor를 cursor로 넘겨서 조회한다.
+	// size는 querydsl.keyset.max-size 까지만 쓴다. (spring.data.web.pageable.max-page-size와 같이 잘라낸다.)
+	// 잘못된 cursor, 0 이하의 size는 400
+	@GetMapping("/v4/members")
+	public KeysetSlice<MemberTeamDto> searchMemberV4(MemberSearchCondition condition,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "20") int size) {
+		return memberRepository.searchSlice(condition, cursor, Math.min(size, keysetMaxSize));
+	}
+	
+	// count 쿼리 없이 다음 페이지 여부(hasNext)만 알려준다. (무한 스크롤)
+	@GetMapping("/v5/members")
+	public Slice<MemberTeamDto> searchMemberV5(MemberSearchCondition condition, Pageable pageable) {
+		return memberRepository.searchSlice(condition, pageable);
+	}
+	
+	// 잘못된 검색 조건 (usernameContains가 3글자보다 짧은 경우 등)
+	// @Repository 예외 변환을 거치면 InvalidDataAccessApiUsageException으로 감싸져서 온다.
+	@ExceptionHandler({ IllegalArgumentException.class, InvalidDataAccessApiUsageException.class })
+	public ResponseEntity<String> badSearchCondition(RuntimeException e) {
+		Throwable cause = e instanceof InvalidDataAccessApiUsageException ? e.getCause() : e;
+		if (!(cause instanceof IllegalArgumentException)) {
+			throw e;
+		}
+		return ResponseEntity.badRequest().body(cause.getMessage());
+	}
+	
+	// 304면 true, 아니면 응답에 ETag를 붙이고 false
+	private boolean notModified(WebRequest request, Object... keys) {
+		return etagEnabled && request.checkNotModified(memberTeamVersion.etag(keys));
 	}
 
 }
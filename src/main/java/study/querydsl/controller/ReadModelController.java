@@ -0,0 +1,29 @@
+package study.querydsl.controller;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.ReadModelCheckDto;
+import study.querydsl.repository.support.MemberTeamReadModel;
+
+@RestController
+@RequiredArgsConstructor
+public class ReadModelController {
+
+	private final MemberTeamReadModel memberTeamReadModel;
+
+	// 읽기 모델(member_team)이 member, team 과 같은지 확인
+	@GetMapping("/v1/read-model/check")
+	public ReadModelCheckDto check() {
+		return memberTeamReadModel.check();
+	}
+
+	// 읽기 모델을 member, team 으로 다시 만든다. (넣은 row 수)
+	@PostMapping("/v1/read-model/rebuild")
+	public long rebuild() {
+		return memberTeamReadModel.rebuild();
+	}
+
+}
@@ -0,0 +1,97 @@
+package study.querydsl.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.springframework.data.domain.Pageable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import study.querydsl.repository.support.CountedPage.Total;
+
+/**
+ * Page 응답을 컨텐츠 List, PageImpl 없이 바로 쓰는 JSON writer
+ *
+ * {"content":[...],"number":0,"size":20,"numberOfElements":20,"totalElements":100,"totalPages":5,
+ *  "first":true,"last":false,"countStrategy":"EXACT","totalExact":true}
+ *
+ * - 행은 조회하는 대로 content에 쓰고, page 정보는 count까지 끝난 뒤 content 뒤에 쓴다. (trailer)
+ * - 응답 스트림은 finish()에서만 닫고 flush 한다. 중간에 실패하면 finish()를 부르지 않는다.
+ *   열린 배열, 객체를 자동으로 닫지 않으므로 이미 내보낸 응답은 끝나지 않은 JSON으로 남아서
+ *   클라이언트가 잘린 응답을 정상 응답으로 오해하지 않는다.
+ *   아직 내보내지 않았다면 호출하는 쪽에서 버퍼를 비우고 오류로 응답할 수 있다. (MemberController)
+ */
+class StreamingPageWriter<T> {
+
+	private final JsonGenerator generator;
+	private final ObjectWriter writer;
+	private boolean started;
+	private long numberOfElements;
+
+	StreamingPageWriter(ObjectMapper objectMapper, Class<T> type, OutputStream out) throws IOException {
+		this.generator = objectMapper.getFactory().createGenerator(out);
+		this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+		this.generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+		// 한 건마다 flush 하지 않고 응답 버퍼가 찰 때 내보낸다.
+		this.writer = objectMapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	/**
+	 * 컨텐츠 한 건 (Consumer로 넘기므로 IOException은 UncheckedIOException으로 감싼다.)
+	 */
+	void write(T row) {
+		try {
+			start();
+			writer.writeValue(generator, row);
+			numberOfElements++;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * content를 닫고 page 정보를 쓴 다음 남은 내용을 응답 스트림으로 내보낸다. 값은 PageImpl과 같게 계산한다.
+	 */
+	void finish(Pageable pageable, Total total) throws IOException {
+		start();
+		generator.writeEndArray();
+
+		long totalElements = total.getValue();
+		int number = 0;
+		int size = Math.toIntExact(numberOfElements);
+		if (pageable.isPaged()) {
+			number = pageable.getPageNumber();
+			size = pageable.getPageSize();
+			if (numberOfElements > 0 && pageable.getOffset() + size > totalElements) {
+				totalElements = pageable.getOffset() + numberOfElements;
+			}
+		}
+		int totalPages = size == 0 ? 1 : (int) Math.ceil((double) totalElements / (double) size);
+
+		generator.writeNumberField("number", number);
+		generator.writeNumberField("size", size);
+		generator.writeNumberField("numberOfElements", numberOfElements);
+		generator.writeNumberField("totalElements", totalElements);
+		generator.writeNumberField("totalPages", totalPages);
+		generator.writeBooleanField("first", number == 0);
+		generator.writeBooleanField("last", number + 1 >= totalPages);
+		generator.writeStringField("countStrategy", total.getStrategy().name());
+		generator.writeBooleanField("totalExact", total.isExact());
+		generator.writeEndObject();
+		generator.close();
+	}
+
+	private void start() throws IOException {
+		if (!started) {
+			started = true;
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("content");
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+package study.querydsl.datasource;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import study.querydsl.datasource.ReplicaRoutingDataSource.Writer;
+
+/**
+ * 요청마다 read-your-writes 범위(ReplicaRoutingDataSource.Writer)를 쿠키로 이어준다.
+ *
+ * 쓰기 트랜잭션이 커밋되면 primary로 읽을 시각(epoch millis)을 쿠키로 내려주고,
+ * 그 시각 전에 같은 클라이언트가 보낸 요청의 읽기는 primary로 보낸다.
+ * 쿠키에 담으므로 서버가 여러 대여도 같은 클라이언트면 적용된다.
+ * (응답을 이미 내보낸 뒤에 커밋된 쓰기는 쿠키를 내려줄 수 없으므로 그 요청 안에서만 적용된다.)
+ */
+@Component
+@ConditionalOnProperty(name = "querydsl.replica.enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	static final String COOKIE_NAME = "querydsl-primary-until";
+
+	private final Duration readYourWrites;
+
+	public ReadYourWritesFilter(@Value("${querydsl.replica.read-your-writes:2s}") Duration readYourWrites) {
+		this.readYourWrites = readYourWrites;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		ReplicaRoutingDataSource.bindWriter(new Writer(primaryUntil(request), untilMillis -> {
+			if (!response.isCommitted()) {
+				response.addCookie(cookie(untilMillis));
+			}
+		}));
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			ReplicaRoutingDataSource.unbindWriter();
+		}
+	}
+
+	private Cookie cookie(long untilMillis) {
+		Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(untilMillis));
+		cookie.setPath("/");
+		cookie.setHttpOnly(true);
+		cookie.setMaxAge((int) Math.max(1, (readYourWrites.toMillis() + 999) / 1000));
+		return cookie;
+	}
+
+	private static long primaryUntil(HttpServletRequest request) {
+		if (request.getCookies() == null) {
+			return 0;
+		}
+		for (Cookie cookie : request.getCookies()) {
+			if (COOKIE_NAME.equals(cookie.getName())) {
+				try {
+					return Long.parseLong(cookie.getValue());
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 0;
+	}
+
+}
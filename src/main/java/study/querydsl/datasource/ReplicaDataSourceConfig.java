@@ -0,0 +1,79 @@
+package study.querydsl.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * querydsl.replica.enabled=true 이면 spring.datasource(primary) 대신
+ * primary + querydsl.replica.urls(replica)로 라우팅하는 DataSource를 등록한다.
+ *
+ * - primary, replica 풀 모두 spring.datasource.hikari.* 설정을 그대로 받는다.
+ *   (replica는 그 위에 url, 계정, readOnly, connection-timeout 만 바꾼다.)
+ * - p6spy는 라우팅 DataSource(replicaRoutingDataSource)만 감싸고 바깥 lazyDataSource는 감싸지 않는다.
+ *   (decorator.datasource.exclude-beans) p6spy는 커넥션을 받자마자 getMetaData()를 불러서
+ *   LazyConnectionDataSourceProxy 밖에 있으면 readOnly가 정해지기 전에 커넥션을 가져오고, 모든 읽기가 primary로 간다.
+ *
+ * replica 스키마, 데이터 복제는 DB가 맡는다. (ddl-auto는 primary에만 적용된다.)
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+	private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+	@Bean
+	ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, Environment environment,
+			@Value("${querydsl.replica.urls}") String[] urls,
+			@Value("${querydsl.replica.username:${spring.datasource.username:}}") String username,
+			@Value("${querydsl.replica.password:${spring.datasource.password:}}") String password,
+			@Value("${querydsl.replica.read-your-writes:2s}") Duration readYourWrites,
+			@Value("${querydsl.replica.retry-after:10s}") Duration retryAfter,
+			@Value("${querydsl.replica.connection-timeout:1s}") Duration connectionTimeout) {
+		HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(primary));
+		primary.setPoolName("primary");
+
+		List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+		for (int i = 0; i < urls.length; i++) {
+			HikariDataSource replica = new HikariDataSource();
+			Binder.get(environment).bind(HIKARI_PREFIX, Bindable.ofInstance(replica));
+			replica.setDriverClassName(properties.determineDriverClassName());
+			replica.setJdbcUrl(urls[i].trim());
+			replica.setUsername(username);
+			replica.setPassword(password);
+			replica.setPoolName("replica-" + i);
+			replica.setReadOnly(true);
+			// replica가 내려가 있어도 기동은 되고, 커넥션을 기다리다 빨리 포기하고 다른 곳으로 넘어간다.
+			replica.setInitializationFailTimeout(-1);
+			replica.setConnectionTimeout(connectionTimeout.toMillis());
+			replicas.add(new ReplicaRoutingDataSource.Replica(urls[i].trim(), replica));
+		}
+		return new ReplicaRoutingDataSource(primary, replicas, readYourWrites, retryAfter);
+	}
+
+	/**
+	 * 트랜잭션 시작 시점에는 readOnly 여부가 정해지지 않았으므로 첫 쿼리까지 커넥션을 미룬다.
+	 */
+	@Bean
+	@Primary
+	DataSource lazyDataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+
+}
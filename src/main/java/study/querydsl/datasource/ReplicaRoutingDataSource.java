@@ -0,0 +1,229 @@
+package study.querydsl.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import study.querydsl.repository.support.TransactionScopedInvalidation;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))의 커넥션은 replica에서, 나머지는 primary에서 가져온다.
+ *
+ * - 트랜잭션 시작 시점에는 readOnly 여부가 아직 정해지지 않았으므로 LazyConnectionDataSourceProxy로 감싸서 써야 한다.
+ *   (첫 쿼리를 실행할 때 커넥션을 가져온다.)
+ * - replica가 여러 개면 돌아가면서 쓴다. 커넥션을 못 가져온 replica는 retryAfter 동안 빼고, 모두 안 되면 primary를 쓴다.
+ * - read-your-writes: 쓰기 트랜잭션이 커밋된 뒤 readYourWrites 동안은 그 쓰기를 한 쪽의 읽기를 primary로 보낸다.
+ *   (replica 반영 지연 동안 방금 쓴 값을 못 읽는 일을 막는다. 0이면 끈다.)
+ *   요청 안에서는 ReadYourWritesFilter가 묶어둔 Writer(클라이언트 쿠키) 단위로 적용되므로
+ *   다른 클라이언트의 쓰기 때문에 읽기가 primary로 몰리지 않는다.
+ *   요청 밖(백그라운드 작업 등)의 쓰기, 읽기만 요청 밖끼리 전체 단위로 적용된다.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+	private static final ThreadLocal<Writer> CURRENT_WRITER = new ThreadLocal<>();
+
+	private final DataSource primary;
+	private final List<Replica> replicas;
+	private final Duration readYourWrites;
+	private final Duration retryAfter;
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicLong lastWriteNanos = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+
+	public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, Duration readYourWrites,
+			Duration retryAfter) {
+		this.primary = primary;
+		this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+		this.readYourWrites = readYourWrites;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * 현재 스레드의 read-your-writes 범위를 정한다. (요청마다 ReadYourWritesFilter가 묶고 푼다.)
+	 */
+	public static void bindWriter(Writer writer) {
+		CURRENT_WRITER.set(writer);
+	}
+
+	public static void unbindWriter() {
+		CURRENT_WRITER.remove();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return connect(DataSource::getConnection);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return connect(dataSource -> dataSource.getConnection(username, password));
+	}
+
+	private Connection connect(ConnectionSource source) throws SQLException {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			trackWrite();
+			return source.get(primary);
+		}
+		if (recentlyWritten()) {
+			return source.get(primary);
+		}
+
+		int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get((start + i) % replicas.size());
+			if (!replica.isAvailable()) {
+				continue;
+			}
+			try {
+				Connection connection = source.get(replica.getDataSource());
+				replica.markUp();
+				return connection;
+			} catch (SQLException e) {
+				replica.markDown(e, retryAfter);
+				log.warn("replica {} is unavailable for {}: {}", replica.getName(), retryAfter, e.getMessage());
+			}
+		}
+		return source.get(primary);
+	}
+
+	public DataSource getPrimary() {
+		return primary;
+	}
+
+	public List<Replica> getReplicas() {
+		return replicas;
+	}
+
+	public void close() throws Exception {
+		for (Replica replica : replicas) {
+			if (replica.getDataSource() instanceof AutoCloseable) {
+				((AutoCloseable) replica.getDataSource()).close();
+			}
+		}
+		if (primary instanceof AutoCloseable) {
+			((AutoCloseable) primary).close();
+		}
+	}
+
+	private boolean recentlyWritten() {
+		if (readYourWrites.isZero()) {
+			return false;
+		}
+		Writer writer = CURRENT_WRITER.get();
+		if (writer != null) {
+			return writer.isRecent();
+		}
+		return System.nanoTime() - lastWriteNanos.get() < readYourWrites.toNanos();
+	}
+
+	/**
+	 * 쓰기 트랜잭션이 커밋되면 read-your-writes 구간을 시작한다. (트랜잭션당 한 번만 등록)
+	 */
+	private void trackWrite() {
+		if (readYourWrites.isZero() || !TransactionSynchronizationManager.isActualTransactionActive()) {
+			return;
+		}
+		Writer writer = CURRENT_WRITER.get();
+		TransactionScopedInvalidation.onCompletion(this, status -> {
+			// 커밋에만
+			if (status != TransactionSynchronization.STATUS_COMMITTED) {
+				return;
+			}
+			if (writer != null) {
+				writer.written(System.currentTimeMillis() + readYourWrites.toMillis());
+			} else {
+				lastWriteNanos.set(System.nanoTime());
+			}
+		});
+	}
+
+	@FunctionalInterface
+	private interface ConnectionSource {
+		Connection get(DataSource dataSource) throws SQLException;
+	}
+
+	/**
+	 * read-your-writes 범위 하나 (클라이언트 하나)
+	 *
+	 * primaryUntilMillis 까지는 읽기를 primary로 보낸다. 커밋된 쓰기가 있으면 늘리고 onWrite로 알린다.
+	 * 여러 서버에서 같이 쓸 수 있도록 시각은 epoch millis 이다.
+	 */
+	public static class Writer {
+
+		private volatile long primaryUntilMillis;
+		private final LongConsumer onWrite;
+
+		public Writer(long primaryUntilMillis, LongConsumer onWrite) {
+			this.primaryUntilMillis = primaryUntilMillis;
+			this.onWrite = onWrite;
+		}
+
+		boolean isRecent() {
+			return System.currentTimeMillis() < primaryUntilMillis;
+		}
+
+		void written(long untilMillis) {
+			primaryUntilMillis = untilMillis;
+			onWrite.accept(untilMillis);
+		}
+
+	}
+
+	/**
+	 * replica 하나와 그 상태
+	 */
+	@Getter
+	public static class Replica {
+
+		private final String name;
+		private final DataSource dataSource;
+		private volatile boolean up = true;
+		private volatile long downUntilNanos;
+		private volatile String lastError;
+		private final AtomicLong failureCount = new AtomicLong();
+
+		public Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+
+		/**
+		 * 정상이거나, 내려간 뒤 retryAfter가 지나서 다시 시도해볼 수 있는 상태
+		 */
+		public boolean isAvailable() {
+			return up || System.nanoTime() - downUntilNanos >= 0;
+		}
+
+		public long getFailureCount() {
+			return failureCount.get();
+		}
+
+		void markUp() {
+			up = true;
+		}
+
+		void markDown(SQLException e, Duration retryAfter) {
+			failureCount.incrementAndGet();
+			lastError = e.getMessage();
+			downUntilNanos = System.nanoTime() + retryAfter.toNanos();
+			up = false;
+		}
+
+	}
+
+}
@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheRegionStatsDto {
+	private String region;
+	private long hitCount;
+	private long missCount;
+	private long putCount;
+	private long elementCount;
+	private double hitRatio;
+
+	public CacheRegionStatsDto(String region, long hitCount, long missCount, long putCount, long elementCount) {
+		this.region = region;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.putCount = putCount;
+		this.elementCount = elementCount;
+		this.hitRatio = hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount);
+	}
+
+}
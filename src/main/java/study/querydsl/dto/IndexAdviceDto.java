@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class IndexAdviceDto {
+	// 조건 모양 (예: "username,ageGoe"), 들어온 요청 수
+	private String shape;
+	private long requests;
+	private String sql;
+	private String plan;
+	// 전체 스캔(tableScan)한 테이블
+	private List<String> scannedTables;
+	// 엔티티에 붙일 @Index, 바로 만들 때의 DDL
+	private List<String> indexes;
+	private List<String> ddl;
+	private String note;
+
+	public boolean isFullScan() {
+		return !scannedTables.isEmpty();
+	}
+
+}
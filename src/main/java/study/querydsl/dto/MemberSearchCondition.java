@@ -10,5 +10,11 @@ public class MemberSearchCondition {
 	private String teamName;
 	private Integer ageGoe;
 	private Integer ageLoe;
+	
+	// 회원명 대소문자 무시 일치, 앞부분 일치, 부분 일치(3글자 이상)
+	// 모두 대소문자를 무시한다. (Member.usernameNormalized, MemberUsernameGram)
+	private String usernameIgnoreCase;
+	private String usernameStartsWith;
+	private String usernameContains;
 
 }
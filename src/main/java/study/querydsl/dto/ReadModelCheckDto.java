@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class ReadModelCheckDto {
+	private long members;
+	private long rows;
+	// 읽기 모델에 없는 회원, 회원이 없는 읽기 모델 row, 값이 다른 row
+	private long missing;
+	private long orphaned;
+	private long mismatched;
+	// 어긋난 member id 몇 개 (최대 10개)
+	private List<Long> sampleMemberIds;
+
+	public boolean isConsistent() {
+		return missing == 0 && orphaned == 0 && mismatched == 0;
+	}
+
+}
@@ -0,0 +1,31 @@
+package study.querydsl.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 데이터 버전 (이름마다 한 행, 서버가 여러 대여도 같은 값을 본다.)
+ *
+ * 조회만 하고 JPA로는 쓰지 않는다. MemberTeamVersion이 JDBC로 읽고 올린다.
+ */
+@Entity
+@Immutable
+@Table(name = "data_version")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class DataVersion {
+
+	@Id
+	private String name;
+	private long version;
+
+}
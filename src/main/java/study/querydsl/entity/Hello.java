@@ -2,16 +2,22 @@ package study.querydsl.entity;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
+@SequenceGenerator(
+		name = "HELLO_SEQ_GENERATOR",
+		sequenceName = "HELLO_SEQ",
+		allocationSize = 50)
 @Getter @Setter
 public class Hello {
 	
-	@Id @GeneratedValue
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "HELLO_SEQ_GENERATOR")
 	private Long id;
 	
 	
@@ -2,22 +2,34 @@ package study.querydsl.entity;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedAttributeNode;
 import javax.persistence.NamedEntityGraph;
 import javax.persistence.NamedQuery;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import study.querydsl.entity.listener.MemberTeamChangeListener;
 
 @Entity
+@Table(indexes = @Index(name = "idx_member_username_normalized", columnList = "username_normalized"))
+@SequenceGenerator(
+		name = "MEMBER_SEQ_GENERATOR",
+		sequenceName = "MEMBER_SEQ",
+		allocationSize = 50)
+@EntityListeners(MemberTeamChangeListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
@@ -29,10 +41,16 @@ import lombok.ToString;
 //public class Member extends JpaBaseEntity {
 public class Member extends BaseEntity {
 	
-	@Id @GeneratedValue
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "MEMBER_SEQ_GENERATOR")
 	@Column(name = "member_id")
 	private Long id;
 	private String username;
+	
+	// 대소문자 무시(usernameIgnoreCase), 앞부분 일치(usernameStartsWith) 검색용. setUsername()에서 같이 바꾼다.
+	@Column(name = "username_normalized")
+	@Setter(AccessLevel.NONE)
+	private String usernameNormalized;
+	
 	private int age;
 	
 	@ManyToOne(fetch = FetchType.LAZY)
@@ -40,7 +58,12 @@ public class Member extends BaseEntity {
 	private Team team;
 
 	public Member(String username) {
+		setUsername(username);
+	}
+	
+	public void setUsername(String username) {
 		this.username = username;
+		this.usernameNormalized = MemberUsernameGram.normalize(username);
 	}
 	
 	public void changeTeam(Team team) {
@@ -50,7 +73,7 @@ public class Member extends BaseEntity {
 
 	public Member(String username, int age, Team team) {
 		// TODO Auto-generated constructor stub
-		this.username = username;
+		setUsername(username);
 		this.age = age;
 		if (team != null) {
 			changeTeam(team); 			
@@ -59,7 +82,7 @@ public class Member extends BaseEntity {
 	}
 
 	public Member(String username, int age) {
-		this.username = username;
+		setUsername(username);
 		this.age = age;
 	}
 
@@ -0,0 +1,47 @@
+package study.querydsl.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 검색용 읽기 모델 (member + team 을 MemberTeamDto 모양으로 펼쳐둔 테이블)
+ *
+ * 조회만 하고 JPA로는 쓰지 않는다. Member, Team이 바뀌면 MemberTeamReadModel이 같은 트랜잭션에서 맞춘다.
+ * querydsl.read-model.enabled=true 이면 검색(MemberSearchQueryCache)이 join 없이 이 테이블만 읽는다.
+ */
+@Entity
+@Immutable
+@Table(name = "member_team", indexes = {
+		@Index(name = "idx_member_team_username", columnList = "username"),
+		@Index(name = "idx_member_team_username_normalized", columnList = "username_normalized"),
+		@Index(name = "idx_member_team_team_name_age", columnList = "team_name, age"),
+		@Index(name = "idx_member_team_age", columnList = "age"),
+		@Index(name = "idx_member_team_team_id", columnList = "team_id") })
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class MemberTeamView {
+
+	@Id
+	@Column(name = "member_id")
+	private Long memberId;
+	private String username;
+	@Column(name = "username_normalized")
+	private String usernameNormalized;
+	private int age;
+	@Column(name = "team_id")
+	private Long teamId;
+	@Column(name = "team_name")
+	private String teamName;
+
+}
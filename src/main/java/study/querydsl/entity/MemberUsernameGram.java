@@ -0,0 +1,82 @@
+package study.querydsl.entity;
+
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * username 부분 일치(contains) 검색용 n-gram 인덱스 (소문자로 바꾼 username의 3글자 조각)
+ *
+ * 예) "Member1" -> "mem", "emb", "mbe", "ber", "er1"
+ * PK(gram, member_id)로 조각을 찾고, 검색어의 조각을 모두 가진 회원만 남긴다.
+ * Member가 저장/수정/삭제되면 UsernameGramIndex가 맞춰준다. (member와 FK는 걸지 않는다.)
+ */
+@Entity
+@Table(name = "member_username_gram",
+		indexes = @Index(name = "idx_member_username_gram_member", columnList = "member_id"))
+@IdClass(MemberUsernameGram.Key.class)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+@ToString
+public class MemberUsernameGram {
+
+	public static final int GRAM_LENGTH = 3;
+
+	@Id
+	@Column(length = GRAM_LENGTH)
+	private String gram;
+
+	@Id
+	@Column(name = "member_id")
+	private Long memberId;
+
+	/**
+	 * 대소문자 무시 검색에 쓰는 username (앞뒤 공백 제거, 소문자)
+	 */
+	public static String normalize(String username) {
+		return username != null ? username.trim().toLowerCase(Locale.ROOT) : null;
+	}
+
+	/**
+	 * @param normalized normalize()한 문자열
+	 * @return 중복 없는 GRAM_LENGTH 글자 조각 (GRAM_LENGTH 보다 짧으면 없음)
+	 */
+	public static Set<String> gramsOf(String normalized) {
+		Set<String> grams = new LinkedHashSet<>();
+		if (normalized != null) {
+			for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+				grams.add(normalized.substring(i, i + GRAM_LENGTH));
+			}
+		}
+		return grams;
+	}
+
+	@EqualsAndHashCode
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Key implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String gram;
+		private Long memberId;
+
+	}
+
+}
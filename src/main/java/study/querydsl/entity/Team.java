@@ -3,19 +3,35 @@ package study.querydsl.entity;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import study.querydsl.entity.listener.MemberTeamChangeListener;
 
 @Entity
+@SequenceGenerator(
+		name = "TEAM_SEQ_GENERATOR",
+		sequenceName = "TEAM_SEQ",
+		allocationSize = 50)
+@EntityListeners(MemberTeamChangeListener.class)
+// 거의 바뀌지 않는 데이터라 2차 캐시에 둔다. (설정은 application.conf의 team)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 // 'lombok'의'@ToString'을 사용하려면 연관 필드인  team 같은 것은 사용하면 안된다.
@@ -24,7 +40,7 @@ import lombok.ToString;
 @ToString(of = {"id", "name"})
 public class Team {
 	
-	@Id @GeneratedValue
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "TEAM_SEQ_GENERATOR")
 	@Column(name = "team_id")
 	private Long id;
 	private String name;
@@ -0,0 +1,20 @@
+package study.querydsl.entity.listener;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 엔티티 리스너를 거치지 않고 Team, Member를 대량 저장했을 때 발행되는 이벤트 (SqlMemberBulkLoader)
+ * MemberTeamChangedEvent(PERSIST)를 건마다 보내는 대신 저장한 id를 한 번에 넘긴다.
+ * 저장한 트랜잭션 안에서(insert가 끝난 뒤) 발행된다.
+ */
+@Getter
+@RequiredArgsConstructor
+public class MemberTeamBulkInsertedEvent {
+
+	private final List<Long> teamIds;
+	private final List<Long> memberIds;
+
+}
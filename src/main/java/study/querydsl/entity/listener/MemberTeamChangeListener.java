@@ -0,0 +1,40 @@
+package study.querydsl.entity.listener;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import study.querydsl.entity.listener.MemberTeamChangedEvent.Type;
+
+/**
+ * Member, Team 변경을 스프링 이벤트로 넘겨주는 JPA 엔티티 리스너
+ * 
+ * 하이버네이트가 스프링 빈 컨테이너(SpringBeanContainer)를 통해 생성하므로
+ * 생성자 주입을 사용할 수 있다.
+ */
+public class MemberTeamChangeListener {
+	
+	private final ApplicationEventPublisher publisher;
+	
+	public MemberTeamChangeListener(ApplicationEventPublisher publisher) {
+		this.publisher = publisher;
+	}
+	
+	@PostPersist
+	public void postPersist(Object entity) {
+		publisher.publishEvent(new MemberTeamChangedEvent(entity, Type.PERSIST));
+	}
+	
+	@PostUpdate
+	public void postUpdate(Object entity) {
+		publisher.publishEvent(new MemberTeamChangedEvent(entity, Type.UPDATE));
+	}
+	
+	@PostRemove
+	public void postRemove(Object entity) {
+		publisher.publishEvent(new MemberTeamChangedEvent(entity, Type.REMOVE));
+	}
+
+}
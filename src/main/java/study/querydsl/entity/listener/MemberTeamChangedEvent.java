@@ -0,0 +1,23 @@
+package study.querydsl.entity.listener;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Member, Team이 저장/수정/삭제(flush 시점)되었을 때 발행되는 이벤트
+ * 검색 결과에 영향을 주는 캐시들은 이 이벤트를 받아서 무효화한다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberTeamChangedEvent {
+	
+	public enum Type {
+		PERSIST, UPDATE, REMOVE
+	}
+	
+	private final Object entity;
+	private final Type type;
+
+}
@@ -0,0 +1,123 @@
+package study.querydsl.metrics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 요청 하나에서 실행한 SQL을 모양(바인딩 전 SQL)별로 세서 N+1을 찾는다. (p6spy)
+ *
+ * begin() ~ end() 사이에 같은 스레드에서 실행한 문장만 센다. (SqlBudgetFilter가 샘플링한 요청에서 호출)
+ * - 같은 모양의 문장이 max-repeats 번을 넘으면 (예: 지연 로딩되는 member.team) 한 번 경고한다.
+ * - 요청 전체 문장 수가 max-statements를 넘으면 한 번 경고한다.
+ * 경고에는 넘는 순간의 스택 트레이스(애플리케이션 코드 부분)를 함께 남기고
+ * querydsl.sql.budget.exceeded 카운터를 올린다.
+ *
+ * 추적 중이 아닌 스레드에서는 ThreadLocal 조회 한 번이 전부다.
+ */
+@Slf4j
+@Component
+public class NPlusOneDetector extends SimpleJdbcEventListener {
+
+	private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+	private static final String APPLICATION_PACKAGE = "study.querydsl.";
+	private static final String METRICS_PACKAGE = "study.querydsl.metrics.";
+
+	private final MeterRegistry registry;
+	private final int maxStatements;
+	private final int maxRepeats;
+
+	public NPlusOneDetector(MeterRegistry registry,
+			@Value("${querydsl.sql-budget.max-statements:50}") int maxStatements,
+			@Value("${querydsl.sql-budget.max-repeats:10}") int maxRepeats) {
+		this.registry = registry;
+		this.maxStatements = maxStatements;
+		this.maxRepeats = maxRepeats;
+	}
+
+	/**
+	 * @param name 지표 태그, 로그에 쓸 요청 이름 (경고할 때 꺼낸다.)
+	 */
+	public void begin(Supplier<String> name) {
+		CURRENT.set(new RequestStatements(name));
+	}
+
+	/**
+	 * @return 추적하는 동안 실행한 문장 수 (추적 중이 아니었으면 -1)
+	 */
+	public int end() {
+		RequestStatements statements = CURRENT.get();
+		CURRENT.remove();
+		return statements != null ? statements.total : -1;
+	}
+
+	@Override
+	public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos,
+			SQLException e) {
+		RequestStatements statements = CURRENT.get();
+		if (statements != null) {
+			record(statements, statementInformation.getSql());
+		}
+	}
+
+	private void record(RequestStatements statements, String sql) {
+		statements.total++;
+		int repeats = statements.shapes.merge(sql, 1, Integer::sum);
+
+		if (repeats == maxRepeats + 1) {
+			String name = statements.name.get();
+			registry.counter("querydsl.sql.budget.exceeded", "type", "repeated", "request", name).increment();
+			log.warn("Possible N+1 in {}: the same statement ran more than {} times: {}", name, maxRepeats, sql,
+					origin("Repeated statement executed here"));
+		}
+		if (statements.total == maxStatements + 1) {
+			String name = statements.name.get();
+			registry.counter("querydsl.sql.budget.exceeded", "type", "total", "request", name).increment();
+			log.warn("SQL budget exceeded in {}: more than {} statements", name, maxStatements,
+					origin("Budget exceeded here"));
+		}
+	}
+
+	/**
+	 * 넘는 순간의 스택에서 애플리케이션 코드 프레임만 남긴다. (없으면 전체)
+	 */
+	private static Throwable origin(String message) {
+		Throwable origin = new Throwable(message);
+		List<StackTraceElement> frames = new ArrayList<>();
+		for (StackTraceElement frame : origin.getStackTrace()) {
+			if (frame.getClassName().startsWith(APPLICATION_PACKAGE)
+					&& !frame.getClassName().startsWith(METRICS_PACKAGE)) {
+				frames.add(frame);
+			}
+		}
+		if (!frames.isEmpty()) {
+			origin.setStackTrace(frames.toArray(new StackTraceElement[0]));
+		}
+		return origin;
+	}
+
+	private static class RequestStatements {
+
+		final Supplier<String> name;
+		final Map<String, Integer> shapes = new HashMap<>();
+		int total;
+
+		RequestStatements(Supplier<String> name) {
+			this.name = name;
+		}
+
+	}
+
+}
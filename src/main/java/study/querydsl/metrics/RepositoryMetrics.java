@@ -0,0 +1,180 @@
+package study.querydsl.metrics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathType;
+import com.querydsl.core.types.Predicate;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberSearchQueryCache;
+import study.querydsl.repository.support.KeysetSlice;
+
+/**
+ * 리포지토리 메서드별 지표 (Micrometer, /actuator/metrics 에서 확인)
+ *
+ * - querydsl.repository.latency: 실행 시간 (히스토그램, p50/p95/p99)
+ * - querydsl.repository.rows: 반환한 row 수 (List, Page, Slice의 컨텐츠 수, Optional은 0/1, 숫자는 그 값)
+ * - querydsl.repository.statements: 호출 중에 같은 스레드에서 실행한 SQL 문장 수
+ *
+ * 태그: repository, method, shape(조건 모양), outcome(success/error)
+ * shape는 MemberSearchCondition이면 채워진 조건 이름, Querydsl 쿼리면 where 절에서 쓰는 경로다.
+ * (none: 조건 없음, n/a: 조건을 받지 않는 메서드)
+ */
+@Component
+public class RepositoryMetrics {
+
+	public static final String NOT_APPLICABLE = "n/a";
+	public static final String NO_CONDITION = "none";
+
+	private final MeterRegistry registry;
+	private final SqlStatementCounter statementCounter;
+	private final ConcurrentMap<List<String>, Meters> meters = new ConcurrentHashMap<>();
+
+	public RepositoryMetrics(MeterRegistry registry, SqlStatementCounter statementCounter) {
+		this.registry = registry;
+		this.statementCounter = statementCounter;
+	}
+
+	public <T> T record(String repository, String method, String shape, Supplier<T> call) {
+		try {
+			return recordThrowing(repository, method, shape, call::get);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public <T> T recordThrowing(String repository, String method, String shape, ThrowingSupplier<T> call)
+			throws Throwable {
+		long statements = statementCounter.current();
+		long start = registry.config().clock().monotonicTime();
+		String outcome = "error";
+		T result = null;
+		try {
+			result = call.get();
+			outcome = "success";
+			return result;
+		} finally {
+			Meters recorded = meters(repository, method, shape, outcome);
+			recorded.latency.record(registry.config().clock().monotonicTime() - start,
+					TimeUnit.NANOSECONDS);
+			recorded.statements.record(statementCounter.current() - statements);
+			if ("success".equals(outcome)) {
+				recorded.rows.record(rowsOf(result));
+			}
+		}
+	}
+
+	public static String shapeOf(MemberSearchCondition condition) {
+		if (condition == null) {
+			return NOT_APPLICABLE;
+		}
+		return MemberSearchQueryCache.shapeName(MemberSearchQueryCache.shapeOf(condition));
+	}
+
+	/**
+	 * where 절에서 쓰는 경로 (정렬) 예) member1.age,team.name
+	 */
+	public static String shapeOf(Predicate where) {
+		if (where == null) {
+			return NO_CONDITION;
+		}
+		Set<String> paths = new TreeSet<>();
+		collectPaths(where, paths);
+		return paths.isEmpty() ? NO_CONDITION : String.join(",", paths);
+	}
+
+	private static void collectPaths(Expression<?> expr, Set<String> paths) {
+		if (expr instanceof Path) {
+			Path<?> path = (Path<?>) expr;
+			if (path.getMetadata().getPathType() == PathType.PROPERTY) {
+				paths.add(path.toString());
+			}
+		} else if (expr instanceof Operation) {
+			for (Expression<?> arg : ((Operation<?>) expr).getArgs()) {
+				collectPaths(arg, paths);
+			}
+		}
+	}
+
+	private static long rowsOf(Object result) {
+		if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		}
+		if (result instanceof Slice) {
+			return ((Slice<?>) result).getNumberOfElements();
+		}
+		if (result instanceof KeysetSlice) {
+			return ((KeysetSlice<?>) result).getContent().size();
+		}
+		if (result instanceof Optional) {
+			return ((Optional<?>) result).isPresent() ? 1 : 0;
+		}
+		if (result instanceof Number) {
+			return ((Number) result).longValue();
+		}
+		return result != null ? 1 : 0;
+	}
+
+	private Meters meters(String repository, String method, String shape, String outcome) {
+		return meters.computeIfAbsent(Arrays.asList(repository, method, shape, outcome), key -> new Meters(
+				Timer.builder("querydsl.repository.latency")
+						.description("Repository method latency")
+						.tags("repository", repository, "method", method, "shape", shape, "outcome", outcome)
+						.publishPercentileHistogram()
+						.publishPercentiles(0.5, 0.95, 0.99)
+						.register(registry),
+				DistributionSummary.builder("querydsl.repository.rows")
+						.description("Rows returned by a repository method")
+						.baseUnit("rows")
+						.tags("repository", repository, "method", method, "shape", shape, "outcome", outcome)
+						.publishPercentileHistogram()
+						.register(registry),
+				DistributionSummary.builder("querydsl.repository.statements")
+						.description("SQL statements executed by a repository method")
+						.baseUnit("statements")
+						.tags("repository", repository, "method", method, "shape", shape, "outcome", outcome)
+						.publishPercentileHistogram()
+						.register(registry)));
+	}
+
+	@FunctionalInterface
+	public interface ThrowingSupplier<T> {
+		T get() throws Throwable;
+	}
+
+	private static class Meters {
+
+		final Timer latency;
+		final DistributionSummary rows;
+		final DistributionSummary statements;
+
+		Meters(Timer latency, DistributionSummary rows, DistributionSummary statements) {
+			this.latency = latency;
+			this.rows = rows;
+			this.statements = statements;
+		}
+
+	}
+
+}
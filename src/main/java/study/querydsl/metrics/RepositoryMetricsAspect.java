@@ -0,0 +1,45 @@
+package study.querydsl.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import study.querydsl.dto.MemberSearchCondition;
+
+/**
+ * MemberJpaRepository, MemberRepositoryImpl의 public 메서드 호출마다 RepositoryMetrics에 기록한다.
+ *
+ * 같은 객체 안에서 부르는 메서드(self-invocation)는 프록시를 거치지 않으므로 기록되지 않는다.
+ * Querydsl4RepositorySupport의 applyPagination, applySlicing은 protected 이므로 클래스 안에서 직접 기록한다.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+	private final RepositoryMetrics repositoryMetrics;
+
+	public RepositoryMetricsAspect(RepositoryMetrics repositoryMetrics) {
+		this.repositoryMetrics = repositoryMetrics;
+	}
+
+	@Around("execution(public * study.querydsl.repository.MemberJpaRepository.*(..))"
+			+ " || execution(public * study.querydsl.repository.MemberRepositoryImpl.*(..))")
+	public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+		return repositoryMetrics.recordThrowing(
+				joinPoint.getSignature().getDeclaringType().getSimpleName(),
+				joinPoint.getSignature().getName(),
+				shapeOf(joinPoint.getArgs()),
+				joinPoint::proceed);
+	}
+
+	private static String shapeOf(Object[] args) {
+		for (Object arg : args) {
+			if (arg instanceof MemberSearchCondition) {
+				return RepositoryMetrics.shapeOf((MemberSearchCondition) arg);
+			}
+		}
+		return RepositoryMetrics.NOT_APPLICABLE;
+	}
+
+}
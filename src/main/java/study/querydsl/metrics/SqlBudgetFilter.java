@@ -0,0 +1,68 @@
+package study.querydsl.metrics;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 요청 중 sample-rate 비율만 골라서 NPlusOneDetector로 SQL을 센다.
+ *
+ * 샘플링한 요청의 문장 수는 querydsl.sql.request.statements 로 남긴다.
+ * 요청 이름은 매핑된 URL 패턴(/v3/members 등)을 쓴다. (지표 태그 수가 늘어나지 않도록)
+ */
+@Component
+@ConditionalOnProperty(name = "querydsl.sql-budget.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlBudgetFilter extends OncePerRequestFilter {
+
+	private final NPlusOneDetector detector;
+	private final MeterRegistry registry;
+	private final double sampleRate;
+
+	public SqlBudgetFilter(NPlusOneDetector detector, MeterRegistry registry,
+			@Value("${querydsl.sql-budget.sample-rate:0.1}") double sampleRate) {
+		this.detector = detector;
+		this.registry = registry;
+		this.sampleRate = sampleRate;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		detector.begin(() -> requestName(request));
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			int statements = detector.end();
+			DistributionSummary.builder("querydsl.sql.request.statements")
+					.description("SQL statements per sampled request")
+					.baseUnit("statements")
+					.tag("request", requestName(request))
+					.register(registry)
+					.record(statements);
+		}
+	}
+
+	private static String requestName(HttpServletRequest request) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		return request.getMethod() + " " + (pattern != null ? pattern : "UNKNOWN");
+	}
+
+}
@@ -0,0 +1,74 @@
+package study.querydsl.metrics;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+/**
+ * 운영용 SQL 로그 (p6spy). 모든 문장을 포맷해서 남기는 대신
+ *
+ * - slow-threshold 보다 오래 걸린 문장, 실패한 문장은 항상 WARN으로 남긴다.
+ * - 나머지는 sample-rate 비율만 INFO로 남긴다.
+ *
+ * 남기지 않는 문장은 난수 하나 뽑는 것이 전부다. (바인딩 값을 채운 SQL은 남길 때만 만든다.)
+ * 로거는 study.querydsl.sql 이고, prod 프로파일에서는 logback-spring.xml의 AsyncAppender로 내보낸다.
+ * SQL에는 use_sql_comments가 붙인 JPQL 주석이 그대로 남는다.
+ */
+@Component
+@ConditionalOnProperty(name = "querydsl.sql-log.enabled", havingValue = "true")
+public class SqlSamplingLogger extends SimpleJdbcEventListener {
+
+	public static final String LOGGER_NAME = "study.querydsl.sql";
+
+	private static final Logger log = LoggerFactory.getLogger(LOGGER_NAME);
+
+	private final long slowThresholdNanos;
+	private final double sampleRate;
+
+	public SqlSamplingLogger(@Value("${querydsl.sql-log.slow-threshold:200ms}") Duration slowThreshold,
+			@Value("${querydsl.sql-log.sample-rate:0.01}") double sampleRate) {
+		this.slowThresholdNanos = slowThreshold.toNanos();
+		this.sampleRate = sampleRate;
+	}
+
+	@Override
+	public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos,
+			SQLException e) {
+		if (e != null) {
+			if (log.isWarnEnabled()) {
+				log.warn("failed {}ms connection={} {} : {}", millis(timeElapsedNanos),
+						statementInformation.getConnectionInformation().getConnectionId(),
+						statementInformation.getSqlWithValues(), e.getMessage());
+			}
+		} else if (timeElapsedNanos >= slowThresholdNanos) {
+			if (log.isWarnEnabled()) {
+				log.warn("slow {}ms connection={} {}", millis(timeElapsedNanos),
+						statementInformation.getConnectionInformation().getConnectionId(),
+						statementInformation.getSqlWithValues());
+			}
+		} else if (sampled() && log.isInfoEnabled()) {
+			log.info("sampled {}ms connection={} {}", millis(timeElapsedNanos),
+					statementInformation.getConnectionInformation().getConnectionId(),
+					statementInformation.getSqlWithValues());
+		}
+	}
+
+	private boolean sampled() {
+		return sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+	}
+
+	private static long millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+}
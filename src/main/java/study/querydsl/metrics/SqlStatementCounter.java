@@ -0,0 +1,34 @@
+package study.querydsl.metrics;
+
+import java.sql.SQLException;
+
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+/**
+ * 스레드별로 실행한 SQL 문장 수를 센다. (p6spy가 감싼 DataSource를 거치는 JDBC 실행 전부)
+ *
+ * 값은 계속 늘어나기만 하므로 호출 전후 값의 차이가 그 사이에 실행한 문장 수다.
+ * 다른 스레드에서 실행한 문장(ParallelPageExecutor의 count 등)은 세지 않는다.
+ */
+@Component
+public class SqlStatementCounter extends SimpleJdbcEventListener {
+
+	private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+	@Override
+	public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos,
+			SQLException e) {
+		COUNT.get()[0]++;
+	}
+
+	/**
+	 * @return 현재 스레드에서 지금까지 실행한 문장 수
+	 */
+	public long current() {
+		return COUNT.get()[0];
+	}
+
+}
@@ -0,0 +1,313 @@
+package study.querydsl.repository;
+
+import static study.querydsl.repository.MemberSearchQueryCache.AGE_GOE;
+import static study.querydsl.repository.MemberSearchQueryCache.AGE_LOE;
+import static study.querydsl.repository.MemberSearchQueryCache.SHAPE_COUNT;
+import static study.querydsl.repository.MemberSearchQueryCache.TEAM_NAME;
+import static study.querydsl.repository.MemberSearchQueryCache.USERNAME;
+import static study.querydsl.repository.MemberSearchQueryCache.USERNAME_IGNORE_CASE;
+import static study.querydsl.repository.MemberSearchQueryCache.USERNAME_STARTS_WITH;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.dto.IndexAdviceDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.support.UsernameSearch;
+
+/**
+ * 검색 API로 실제 들어온 MemberSearchCondition 모양(shape)별로 SQL을 EXPLAIN 해서 인덱스를 제안한다. (H2 EXPLAIN 기준)
+ *
+ * - MemberController 메서드가 호출될 때마다 조건 모양을 센다. 마지막으로 들어온 조건 값은 EXPLAIN 바인딩 값으로 쓴다.
+ * - SQL은 MemberSearchQueryCache의 JPQL을 마지막 조건 값으로 한 건만 실행해서 하이버네이트가 보낸 SQL이다.
+ * - 전체 스캔(tableScan, 조건 없이 인덱스 전체를 읽는 경우 포함)한 테이블에 그 테이블에 거는 조건 컬럼으로 인덱스를 제안한다. (등호 조건 먼저, 범위 조건 나중)
+ *   다른 제안의 앞부분과 같은 인덱스는 그 제안으로 대신한다. 예) (username)은 (username, age)로 충분하다.
+ * - apply()는 제안한 인덱스를 바로 만든다. DDL이므로 진행 중인 트랜잭션은 커밋된다.
+ *   ddl-auto로 다시 만들 때도 남기려면 제안한 @Index를 엔티티에 옮긴다.
+ */
+@Slf4j
+@Aspect
+@Component
+public class IndexAdvisor {
+
+	// FROM "PUBLIC"."MEMBER" "MEMBER0_" /* PUBLIC.MEMBER.tableScan */ 또는
+	// /* PUBLIC.PRIMARY_KEY_8 */ 처럼 조건 없이 인덱스 전체를 읽는 경우 (order by member.id 때문에 PK 순서로 읽는다.)
+	private static final Pattern TABLE_SCAN = Pattern.compile(
+			"\"\\w+\"\\.\"(\\w+)\" \"\\w+\"\\s*/\\* \\w+\\.(?:\\w+\\.tableScan|\\w+) \\*/");
+
+	private final MemberSearchQueryCache queryCache;
+	private final EntityManagerFactory emf;
+	private final JdbcTemplate jdbcTemplate;
+	private final AtomicLongArray shapeCounts = new AtomicLongArray(SHAPE_COUNT);
+	private final AtomicReferenceArray<MemberSearchCondition> samples = new AtomicReferenceArray<>(SHAPE_COUNT);
+
+	public IndexAdvisor(MemberSearchQueryCache queryCache, EntityManagerFactory emf, JdbcTemplate jdbcTemplate) {
+		this.queryCache = queryCache;
+		this.emf = emf;
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@Before("execution(public * study.querydsl.controller.MemberController.*(..)) && args(condition, ..)")
+	public void record(MemberSearchCondition condition) {
+		// 잘못된 조건(400으로 끝나는 요청)은 쿼리를 실행하지 않으므로 세지 않는다. EXPLAIN 값으로도 쓸 수 없다.
+		if (!UsernameSearch.isValid(condition)) {
+			return;
+		}
+		int shape = MemberSearchQueryCache.shapeOf(condition);
+		shapeCounts.incrementAndGet(shape);
+		samples.set(shape, condition);
+	}
+
+	/**
+	 * @return 들어온 조건 모양별 EXPLAIN 결과와 제안 인덱스 (요청 수가 많은 순)
+	 */
+	public List<IndexAdviceDto> advise() {
+		List<Advice> advices = new ArrayList<>();
+		for (int shape = 0; shape < SHAPE_COUNT; shape++) {
+			long requests = shapeCounts.get(shape);
+			if (requests > 0) {
+				advices.add(explain(shape, requests, samples.get(shape)));
+			}
+		}
+
+		List<Index> suggested = new ArrayList<>();
+		advices.forEach(advice -> suggested.addAll(advice.indexes));
+
+		List<IndexAdviceDto> result = new ArrayList<>();
+		for (Advice advice : advices) {
+			Set<Index> indexes = new LinkedHashSet<>();
+			for (Index index : advice.indexes) {
+				indexes.add(covering(index, suggested));
+			}
+			IndexAdviceDto dto = advice.dto;
+			dto.setIndexes(new ArrayList<>());
+			dto.setDdl(new ArrayList<>());
+			for (Index index : indexes) {
+				dto.getIndexes().add(index.annotation());
+				dto.getDdl().add(index.ddl());
+			}
+			result.add(dto);
+		}
+		result.sort(Comparator.comparingLong(IndexAdviceDto::getRequests).reversed());
+		return result;
+	}
+
+	/**
+	 * 제안한 인덱스를 만든다.
+	 *
+	 * @return 실행한 DDL
+	 */
+	public List<String> apply() {
+		Set<String> ddl = new LinkedHashSet<>();
+		advise().forEach(advice -> ddl.addAll(advice.getDdl()));
+		for (String statement : ddl) {
+			log.info("index advisor: {}", statement);
+			jdbcTemplate.execute(statement);
+		}
+		return new ArrayList<>(ddl);
+	}
+
+	/**
+	 * 조건 모양별 요청 수 (index = shape 비트)
+	 */
+	public long[] getShapeCounts() {
+		long[] counts = new long[SHAPE_COUNT];
+		for (int i = 0; i < SHAPE_COUNT; i++) {
+			counts[i] = shapeCounts.get(i);
+		}
+		return counts;
+	}
+
+	private Advice explain(int shape, long requests, MemberSearchCondition condition) {
+		List<Object> values = new ArrayList<>();
+		String sql = toSql(shape, condition, values);
+		String plan = jdbcTemplate.queryForObject("explain " + sql, String.class, values.toArray());
+
+		IndexAdviceDto dto = new IndexAdviceDto();
+		dto.setShape(MemberSearchQueryCache.shapeName(shape));
+		dto.setRequests(requests);
+		dto.setSql(sql);
+		dto.setPlan(plan);
+		dto.setScannedTables(new ArrayList<>());
+
+		List<Index> indexes = new ArrayList<>();
+		List<String> unindexable = new ArrayList<>();
+		Matcher matcher = TABLE_SCAN.matcher(plan);
+		while (matcher.find()) {
+			String table = matcher.group(1).toLowerCase(Locale.ROOT);
+			dto.getScannedTables().add(table);
+
+			List<String> columns = columns(table, shape);
+			if (columns.isEmpty()) {
+				unindexable.add(table);
+			} else {
+				indexes.add(new Index(table, columns));
+			}
+		}
+		if (!unindexable.isEmpty()) {
+			dto.setNote(String.join(",", unindexable)
+					+ " 전체 스캔: 이 테이블에 거는 조건이 없어서 인덱스로 줄일 수 없다."
+					+ " (team 조건은 left join 뒤에 적용된다.)");
+		}
+		return new Advice(dto, indexes);
+	}
+
+	/**
+	 * 캐시된 JPQL을 조건 값으로 한 건만 실행하고 하이버네이트가 실제로 보낸 SQL을 StatementInspector로 받는다.
+	 * (하이버네이트 내부 번역기를 직접 쓰지 않는다.)
+	 *
+	 * @param values EXPLAIN에 바인딩할 값을 SQL의 ? 순서로 채운다.
+	 *               컬렉션 파라미터는 원소마다 ?가 되고, setMaxResults(1)로 SQL 끝에 붙는 limit ?가 마지막이다. (H2Dialect)
+	 */
+	private String toSql(int shape, MemberSearchCondition condition, List<Object> values) {
+		List<String> statements = new ArrayList<>();
+		StatementInspector inspector = sql -> {
+			statements.add(sql);
+			return sql;
+		};
+		try (Session session = emf.unwrap(SessionFactory.class).withOptions().statementInspector(inspector)
+				.openSession()) {
+			Query<?> query = session.createQuery(queryCache.jpql(session, shape, condition));
+			List<Object> parameters = queryCache.parameterValues(condition);
+			for (int i = 0; i < parameters.size(); i++) {
+				Object value = parameters.get(i);
+				query.setParameter(i + 1, value);
+				if (value instanceof Collection) {
+					values.addAll((Collection<?>) value);
+				} else {
+					values.add(value);
+				}
+			}
+			query.setReadOnly(true);
+			query.setMaxResults(1);
+			query.getResultList();
+		}
+		values.add(1);
+		return statements.get(statements.size() - 1);
+	}
+
+	/**
+	 * 테이블에 거는 조건 컬럼 (등호 조건 먼저, 범위 조건 나중)
+	 */
+	private static List<String> columns(String table, int shape) {
+		List<String> columns = new ArrayList<>();
+		if ("member".equals(table)) {
+			if ((shape & USERNAME) != 0) {
+				columns.add("username");
+			}
+			if ((shape & USERNAME_IGNORE_CASE) != 0) {
+				columns.add("username_normalized");
+			}
+			if ((shape & USERNAME_STARTS_WITH) != 0 && !columns.contains("username_normalized")) {
+				columns.add("username_normalized");
+			}
+			if ((shape & (AGE_GOE | AGE_LOE)) != 0) {
+				columns.add("age");
+			}
+		} else if ("member_team".equals(table)) {
+			// 읽기 모델은 team 조건도 같은 테이블에 건다.
+			if ((shape & USERNAME) != 0) {
+				columns.add("username");
+			}
+			if ((shape & (USERNAME_IGNORE_CASE | USERNAME_STARTS_WITH)) != 0) {
+				columns.add("username_normalized");
+			}
+			if ((shape & TEAM_NAME) != 0) {
+				columns.add("team_name");
+			}
+			if ((shape & (AGE_GOE | AGE_LOE)) != 0) {
+				columns.add("age");
+			}
+		} else if ("team".equals(table)) {
+			if ((shape & TEAM_NAME) != 0) {
+				columns.add("name");
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * index를 앞부분으로 갖는 가장 긴 제안 (없으면 index 그대로)
+	 */
+	private static Index covering(Index index, List<Index> suggested) {
+		Index result = index;
+		for (Index other : suggested) {
+			if (other.table.equals(index.table) && other.columns.size() > result.columns.size()
+					&& other.columns.subList(0, index.columns.size()).equals(index.columns)) {
+				result = other;
+			}
+		}
+		return result;
+	}
+
+	private static class Advice {
+
+		final IndexAdviceDto dto;
+		final List<Index> indexes;
+
+		Advice(IndexAdviceDto dto, List<Index> indexes) {
+			this.dto = dto;
+			this.indexes = indexes;
+		}
+
+	}
+
+	private static class Index {
+
+		final String table;
+		final List<String> columns;
+
+		Index(String table, List<String> columns) {
+			this.table = table;
+			this.columns = columns;
+		}
+
+		String name() {
+			return "idx_" + table + "_" + String.join("_", columns);
+		}
+
+		String annotation() {
+			String entity = "member_team".equals(table)
+					? "MemberTeamView"
+					: Character.toUpperCase(table.charAt(0)) + table.substring(1);
+			return entity + ": @Index(name = \"" + name() + "\", columnList = \"" + String.join(", ", columns) + "\")";
+		}
+
+		String ddl() {
+			return "create index if not exists " + name() + " on " + table + " (" + String.join(", ", columns) + ")";
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Index && ((Index) o).table.equals(table) && ((Index) o).columns.equals(columns);
+		}
+
+		@Override
+		public int hashCode() {
+			return table.hashCode() * 31 + columns.hashCode();
+		}
+
+	}
+
+}
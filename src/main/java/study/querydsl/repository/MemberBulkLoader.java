@@ -0,0 +1,60 @@
+package study.querydsl.repository;
+
+import java.util.Collection;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * 대량의 Team, Member를 한 번에 저장한다.
+ *
+ * - 시퀀스는 allocationSize(50) 만큼 한 번에 받아오므로(pooled) row마다 시퀀스를 조회하지 않는다.
+ * - hibernate.jdbc.batch_size, order_inserts 설정으로 insert가 JDBC batch로 묶여서 나간다.
+ * - flushSize 건마다 flush/clear 해서 영속성 컨텍스트가 계속 커지지 않게 한다.
+ *
+ * Member를 만들 때 changeTeam()을 쓰면 Team.members 컬렉션이 계속 커지므로
+ * 대량 저장에는 setTeam()으로 연관관계만 걸어주는 것을 권장한다.
+ */
+@Repository
+public class MemberBulkLoader {
+
+	private final EntityManager em;
+	private final int flushSize;
+
+	public MemberBulkLoader(EntityManager em,
+			@Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int flushSize) {
+		this.em = em;
+		this.flushSize = flushSize;
+	}
+
+	/**
+	 * @return 저장한 Member 수
+	 */
+	@Transactional
+	public long load(Collection<Team> teams, Iterable<Member> members) {
+		for (Team team : teams) {
+			em.persist(team);
+		}
+		// Member 보다 Team insert가 먼저 나가야 한다.
+		em.flush();
+
+		long count = 0;
+		for (Member member : members) {
+			em.persist(member);
+			if (++count % flushSize == 0) {
+				em.flush();
+				em.clear();
+			}
+		}
+		em.flush();
+		em.clear();
+		return count;
+	}
+
+}
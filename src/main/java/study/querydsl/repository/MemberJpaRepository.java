@@ -6,14 +6,18 @@ import static study.querydsl.entity.QTeam.team;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 
 import org.hibernate.query.criteria.internal.predicate.BooleanExpressionPredicate;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
@@ -23,20 +27,23 @@ import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.UsernameSearch;
 
 @Repository
 public class MemberJpaRepository {
 	
 	private final EntityManager em;
 	private final JPAQueryFactory queryFactory;
+	private final MemberSearchQueryCache searchQueryCache;
 	
-	public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory) {
+	public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory,
+			MemberSearchQueryCache searchQueryCache) {
 		this.em = em;
 //		this.queryFactory = new JPAQueryFactory(em);
 		
 		// JPAQueryFactory가 bean으로 등록되어 있기 때문에 밑에처럼 해도 된다.   
 		this.queryFactory = queryFactory;
-		
+		this.searchQueryCache = searchQueryCache;
 	}
 	
 	public void save(Member member) {
@@ -72,6 +79,7 @@ public class MemberJpaRepository {
 				.fetch();
 	}
 	
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
     	
     	BooleanBuilder builder = new BooleanBuilder();
@@ -87,6 +95,7 @@ public class MemberJpaRepository {
     	if (condition.getAgeLoe() != null) {
     		builder.and(member.age.loe(condition.getAgeLoe()));
     	}
+    	builder.and(UsernameSearch.of(condition));
     	
         return queryFactory
                 .select(new QMemberTeamDto(
@@ -101,8 +110,25 @@ public class MemberJpaRepository {
                 .fetch();
     }
     
+    // 조건 조합(쿼리 모양)별로 미리 만들어둔 JPQL에 파라미터만 바인딩해서 실행한다.
+    // 쿼리 자체는 MemberSearchQueryCache 참고
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-    	return queryFactory
+    	return searchQueryCache.search(em, condition);
+    }
+    
+    /**
+     * search와 같은 조건의 결과를 List로 모으지 않고 한 건씩 consumer로 넘겨준다.
+     * forward-only 커서(ScrollableResults)로 fetchSize 만큼씩 읽는다.
+     * DTO 프로젝션이라 영속성 컨텍스트에 엔티티가 쌓이지 않으므로 결과 건수와 상관없이 메모리 사용량이 일정하다.
+     * (영속성 컨텍스트를 비우지 않으므로 호출하는 쪽 쓰기 트랜잭션의 flush 전 변경도 그대로 남는다.)
+     * 
+     * @return 넘겨준 건수
+     */
+    @Transactional(readOnly = true)
+    public long exportSearch(MemberSearchCondition condition, int fetchSize, Consumer<MemberTeamDto> consumer) {
+    	long count = 0;
+    	try (CloseableIterator<MemberTeamDto> rows = queryFactory
     			.select(new QMemberTeamDto(
                 		member.id.as("memberId"),
                 		member.username,
@@ -115,8 +141,18 @@ public class MemberJpaRepository {
                 		usernameEq(condition.getUsername()),
                 		teamNameEq(condition.getTeamName()),
                 		ageGoe(condition.getAgeGoe()),
-                		ageLoe(condition.getAgeLoe()))
-                .fetch();
+                		ageLoe(condition.getAgeLoe()),
+                		UsernameSearch.of(condition))
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate()) {
+    		
+    		while (rows.hasNext()) {
+    			consumer.accept(rows.next());
+    			count++;
+    		}
+    	}
+    	return count;
     }
     
     // where절 파라미터 사용이 좋은 점
@@ -125,6 +161,7 @@ public class MemberJpaRepository {
     // 동적쿼리를 생성하는 것보다
     // Where절 파라미터 사용으로
     // 동적쿼리를 생성하는 것을 기본으로 생각하기.
+    @Transactional(readOnly = true)
     public List<Member> searchMember(MemberSearchCondition condition) {
     	return queryFactory
                 .selectFrom(member)
@@ -133,7 +170,8 @@ public class MemberJpaRepository {
                 		usernameEq(condition.getUsername()),
                 		teamNameEq(condition.getTeamName()),
                 		ageGoe(condition.getAgeGoe()),
-                		ageLoe(condition.getAgeLoe()))
+                		ageLoe(condition.getAgeLoe()),
+                		UsernameSearch.of(condition))
                 .fetch();
     }
     
@@ -1,18 +1,31 @@
 package study.querydsl.repository;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
+import study.querydsl.repository.support.KeysetSlice;
 
 public interface MemberRepositoryCustom {
 	
 	List<MemberTeamDto> search(MemberSearchCondition condition);
 	Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
+	CountedPage<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable,
+			CountStrategy countStrategy);
 	Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+	CountedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+			CountStrategy countStrategy);
+	CountedPage.Total streamPage(MemberSearchCondition condition, Pageable pageable, CountStrategy countStrategy,
+			Consumer<MemberTeamDto> consumer);
+	Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable);
+	KeysetSlice<MemberTeamDto> searchSlice(MemberSearchCondition condition, String cursor, int size);
 	
 
 }
@@ -4,15 +4,20 @@ import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
-import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
@@ -25,57 +30,46 @@ import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.repository.MemberRepositoryCustom;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
+import study.querydsl.repository.support.CountedPage.Total;
+import study.querydsl.repository.support.Keyset;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.repository.support.MemberSnapshot;
+import study.querydsl.repository.support.PageCounter;
+import study.querydsl.repository.support.Slices;
+import study.querydsl.repository.support.ParallelPageExecutor;
+import study.querydsl.repository.support.UsernameSearch;
 
+// 조회 전용이므로 replica 라우팅(querydsl.replica.enabled=true)을 켜면 replica에서 읽는다.
+// 읽기 전용 트랜잭션에는 커밋 전 변경이 없으므로 ParallelPageExecutor가 count를 별도 스레드(별도 트랜잭션)에서 돌릴 수 있다.
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl extends QuerydslRepositorySupport implements MemberRepositoryCustom {
 	
-	public MemberRepositoryImpl() {
+	private final EntityManager em;
+	private final JPAQueryFactory queryFactory;
+	private final PageCounter pageCounter;
+	private final ParallelPageExecutor parallelPageExecutor;
+	private final MemberSearchQueryCache searchQueryCache;
+	private final MemberSnapshot memberSnapshot;
+	
+	public MemberRepositoryImpl(EntityManager em, PageCounter pageCounter,
+			ParallelPageExecutor parallelPageExecutor, MemberSearchQueryCache searchQueryCache,
+			MemberSnapshot memberSnapshot) {
 		super(Member.class);
-		// TODO Auto-generated constructor stub
+		this.em = em;
+		this.queryFactory = new JPAQueryFactory(em);
+		this.pageCounter = pageCounter;
+		this.parallelPageExecutor = parallelPageExecutor;
+		this.searchQueryCache = searchQueryCache;
+		this.memberSnapshot = memberSnapshot;
 	}
-	
-//	private final JPAQueryFactory queryFactory;
-//	
-//	public MemberRepositoryImpl(EntityManager em) {
-//		this.queryFactory = new JPAQueryFactory(em);
-//	}	
 
 	public List<MemberTeamDto> search(MemberSearchCondition condition) {
-		
-		EntityManager entityManager = getEntityManager();
-		
-		from(member)
-				.leftJoin(member.team, team)
-				.where(
-						usernameEq(condition.getUsername()),
-                		teamNameEq(condition.getTeamName()),
-                		ageGoe(condition.getAgeGoe()),
-                		ageLoe(condition.getAgeLoe())
-                )
-				.select(new QMemberTeamDto(
-                		member.id.as("memberId"),
-                		member.username,
-                		member.age,
-                		team.id.as("teamId"),
-                		team.name.as("teamName"))
-				)
-				.fetch();
-				
-		
-//    	return queryFactory
-//    			.select(new QMemberTeamDto(
-//                		member.id.as("memberId"),
-//                		member.username,
-//                		member.age,
-//                		team.id.as("teamId"),
-//                		team.name.as("teamName")))
-//                .from(member)
-//                .leftJoin(member.team, team)
-//                .where(
-//                		usernameEq(condition.getUsername()),
-//                		teamNameEq(condition.getTeamName()),
-//                		ageGoe(condition.getAgeGoe()),
-//                		ageLoe(condition.getAgeLoe()))
-//                .fetch();
+		// QuerydslRepositorySupport의 from(member)... 으로 매번 쿼리를 조립하던 것을
+		// 쿼리 모양별로 캐시된 JPQL을 사용하도록 변경
+		// querydsl.snapshot.enabled=true 이면 메모리 스냅샷에서 찾고, 스냅샷을 쓸 수 없을 때만 DB로 조회한다.
+		return memberSnapshot.search(condition, () -> searchQueryCache.search(em, condition));
 	}
 
 	@Override
@@ -93,7 +87,8 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                 		usernameEq(condition.getUsername()),
                 		teamNameEq(condition.getTeamName()),
                 		ageGoe(condition.getAgeGoe()),
-                		ageLoe(condition.getAgeLoe()))
+                		ageLoe(condition.getAgeLoe()),
+                		UsernameSearch.of(condition))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -105,43 +100,144 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
 	}
 
 	@Override
-	public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-		List<MemberTeamDto> content = queryFactory
-    			.select(new QMemberTeamDto(
-                		member.id.as("memberId"),
-                		member.username,
-                		member.age,
-                		team.id.as("teamId"),
-                		team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                		usernameEq(condition.getUsername()),
-                		teamNameEq(condition.getTeamName()),
-                		ageGoe(condition.getAgeGoe()),
-                		ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
-		
-		JPAQuery<Member> countQuery = queryFactory
-				.select(member)
+	public CountedPage<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable,
+			CountStrategy countStrategy) {
+		// searchPageSimple과 같은 쿼리, 같은 순서로 조회하고 total만 countStrategy로 구한다.
+		// (CAPPED는 querydsl.count.cap 건까지만 세고, ESTIMATED는 통계로 추정한다.)
+		JPAQuery<MemberTeamDto> query = queryFactory
+				.select(new QMemberTeamDto(
+						member.id.as("memberId"),
+						member.username,
+						member.age,
+						team.id.as("teamId"),
+						team.name.as("teamName")))
 				.from(member)
 				.leftJoin(member.team, team)
 				.where(
 						usernameEq(condition.getUsername()),
-                		teamNameEq(condition.getTeamName()),
-                		ageGoe(condition.getAgeGoe()),
-                		ageLoe(condition.getAgeLoe())
-                )
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition));
+
+		List<MemberTeamDto> content = query.clone()
 				.offset(pageable.getOffset())
-                .limit(pageable.getPageSize());
+				.limit(pageable.getPageSize())
+				.fetch();
+
+		return CountedPage.of(content, pageable, countStrategy,
+				() -> pageCounter.count(em, query, countStrategy, null));
+	}
+
+	@Override
+	public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+		return searchPageComplex(condition, pageable, CountStrategy.EXACT);
+	}
+
+	@Override
+	public CountedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+			CountStrategy countStrategy) {
+		// 검색 스냅샷의 bitmap 인덱스로 정확한 count와 페이지의 id를 구하고 그 행만 DB에서 읽는다.
+		// id는 캐시된 JPQL과 같은 member.id 순서이고, total은 요청한 countStrategy로 담는다. (CAPPED는 cap에서 자른다.)
+		MemberSnapshot.IdPage idPage = pageable.isPaged()
+				? memberSnapshot.page(condition, pageable.getOffset(), pageable.getPageSize())
+				: null;
+		if (idPage != null) {
+			return new CountedPage<>(searchByIds(idPage.getIds()), pageable,
+					pageCounter.of(idPage.getTotal(), countStrategy));
+		}
+
+		// count 쿼리는 직접 작성하지 않고 컨텐츠 쿼리에서 만든다. (select 절, offset/limit 제외)
+		JPAQuery<MemberTeamDto> contentQuery = contentQuery(condition);
 		
-		return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+		// 같은 조건으로 페이지를 넘길 때는 캐시된 count를 사용한다.
+		// count는 team 조인 없이 member 테이블만으로 세도록 최적화해서 실행한다.
+		// CAPPED는 querydsl.count.cap 건까지만 세고, ESTIMATED는 통계로 추정한다.
+		// querydsl.parallel-count.enabled=true 이면 컨텐츠와 count를 동시에 실행한다.
+		Duration timeout = parallelPageExecutor.isEnabled() ? parallelPageExecutor.getTimeout() : null;
+		return parallelPageExecutor.getPage(
+				() -> searchQueryCache.search(em, condition, pageable.getOffset(), pageable.getPageSize(), timeout),
+				pageable, countStrategy,
+				countTimeout -> pageCounter.count(em, contentQuery, countStrategy, countKey(condition), countTimeout));
 		
 //		return new PageImpl(content, pageable, total);
 	}
 	
+	@Override
+	public Total streamPage(MemberSearchCondition condition, Pageable pageable, CountStrategy countStrategy,
+			Consumer<MemberTeamDto> consumer) {
+		MemberSnapshot.IdPage idPage = pageable.isPaged()
+				? memberSnapshot.page(condition, pageable.getOffset(), pageable.getPageSize())
+				: null;
+		if (idPage != null) {
+			searchByIds(idPage.getIds()).forEach(consumer);
+			return pageCounter.of(idPage.getTotal(), countStrategy);
+		}
+		
+		// 컨텐츠를 List로 모으지 않고 읽는 대로 consumer로 넘긴 다음 count를 구한다.
+		long size = pageable.isPaged()
+				? searchQueryCache.stream(em, condition, pageable.getOffset(), pageable.getPageSize(), consumer)
+				: searchQueryCache.stream(em, condition, -1, -1, consumer);
+		JPAQuery<MemberTeamDto> contentQuery = contentQuery(condition);
+		return CountedPage.totalOf(size, pageable, countStrategy,
+				() -> pageCounter.count(em, contentQuery, countStrategy, countKey(condition)));
+	}
+	
+	@Override
+	public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+		// size + 1 건을 조회해서 다음 페이지가 있는지만 판단한다. (count 쿼리 없음)
+		// 캐시된 JPQL은 member.id 순서이므로 offset으로 나눠 읽어도 페이지끼리 겹치지 않는다.
+		List<MemberTeamDto> rows = pageable.isPaged()
+				? searchQueryCache.search(em, condition, pageable.getOffset(), Math.toIntExact(Slices.limitOf(pageable)))
+				: searchQueryCache.search(em, condition);
+		return Slices.of(rows, pageable);
+	}
+	
+	@Override
+	public KeysetSlice<MemberTeamDto> searchSlice(MemberSearchCondition condition, String cursor, int size) {
+		// member.id로 seek 하므로 읽기 모델이 아닌 member, team join 쿼리를 쓴다.
+		JPAQuery<MemberTeamDto> query = MemberSearchQueryCache.searchQuery(queryFactory.query(), condition, false);
+		
+		// offset 대신 member.id로 seek 하므로 몇 페이지를 넘겨도 비용이 같다.
+		return Keyset.byId(member.id, MemberTeamDto::getMemberId).fetch(query, cursor, size);
+	}
+	
+	// 컨텐츠 JPQL(MemberSearchQueryCache)과 같은 팩토리로 만들어서 같은 조건으로 센다.
+	// 읽기 모델을 켜면 컨텐츠와 같이 member_team 에서 센다.
+	private JPAQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition) {
+		return MemberSearchQueryCache.searchQuery(queryFactory.query(), condition,
+				searchQueryCache.isReadModelEnabled());
+	}
+	
+	private Object countKey(MemberSearchCondition condition) {
+		return Arrays.asList("searchPageComplex",
+				hasText(condition.getUsername()) ? condition.getUsername() : null,
+				hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+				condition.getAgeGoe(),
+				condition.getAgeLoe(),
+				hasText(condition.getUsernameIgnoreCase()) ? condition.getUsernameIgnoreCase() : null,
+				hasText(condition.getUsernameStartsWith()) ? condition.getUsernameStartsWith() : null,
+				hasText(condition.getUsernameContains()) ? condition.getUsernameContains() : null);
+	}
+	
+	private List<MemberTeamDto> searchByIds(List<Long> ids) {
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return queryFactory
+				.select(new QMemberTeamDto(
+						member.id.as("memberId"),
+						member.username,
+						member.age,
+						team.id.as("teamId"),
+						team.name.as("teamName")))
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(member.id.in(ids))
+				.orderBy(member.id.asc())
+				.fetch();
+	}
+	
 	private BooleanExpression usernameEq(String username) {
 		return hasText(username) ? member.username.eq(username) : null;
 	}
@@ -0,0 +1,320 @@
+package study.querydsl.repository;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
+import static study.querydsl.entity.QTeam.team;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.UsernameSearch;
+
+/**
+ * MemberSearchCondition 검색 쿼리의 모양(shape)별 JPQL 캐시
+ *
+ * 조건 7개(username, teamName, ageGoe, ageLoe, usernameIgnoreCase, usernameStartsWith, usernameContains)가
+ * 있고 없고에 따라 쿼리 모양은 128가지뿐이다.
+ * 모양별로 한 번만 Querydsl 표현식을 만들고 JPQL로 직렬화해 두고,
+ * 요청마다는 파라미터 값만 바인딩해서 실행한다.
+ *
+ * 결과는 항상 member.id 순서다. (Pageable의 sort는 쓰지 않는다.)
+ *
+ * querydsl.read-model.enabled=true 이면 member, team join 대신 읽기 모델(member_team, MemberTeamView)만 읽는다.
+ * 조건과 파라미터 순서는 같고 JPQL만 따로 캐시한다.
+ */
+@Component
+public class MemberSearchQueryCache {
+
+	static final int USERNAME = 1;
+	static final int TEAM_NAME = 1 << 1;
+	static final int AGE_GOE = 1 << 2;
+	static final int AGE_LOE = 1 << 3;
+	static final int USERNAME_IGNORE_CASE = 1 << 4;
+	static final int USERNAME_STARTS_WITH = 1 << 5;
+	static final int USERNAME_CONTAINS = 1 << 6;
+	static final int SHAPE_COUNT = 1 << 7;
+
+	private final AtomicReferenceArray<String> compiled = new AtomicReferenceArray<>(SHAPE_COUNT);
+	private final AtomicReferenceArray<String> compiledReadModel = new AtomicReferenceArray<>(SHAPE_COUNT);
+	private final AtomicLongArray shapeCounts = new AtomicLongArray(SHAPE_COUNT);
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	@Value("${querydsl.read-model.enabled:false}")
+	private volatile boolean readModelEnabled;
+
+	public List<MemberTeamDto> search(EntityManager em, MemberSearchCondition condition) {
+		return search(em, condition, -1, -1);
+	}
+
+	public List<MemberTeamDto> search(EntityManager em, MemberSearchCondition condition, long offset, int limit) {
+		return search(em, condition, offset, limit, null);
+	}
+
+	/**
+	 * @param timeout 쿼리 타임아웃 (null이면 없음)
+	 */
+	public List<MemberTeamDto> search(EntityManager em, MemberSearchCondition condition, long offset, int limit,
+			Duration timeout) {
+		@SuppressWarnings("unchecked")
+		List<Object[]> rows = createQuery(em, condition, offset, limit, timeout).getResultList();
+		List<MemberTeamDto> result = new ArrayList<>(rows.size());
+		for (Object[] row : rows) {
+			result.add(toDto(row));
+		}
+		return result;
+	}
+
+	/**
+	 * 결과를 List로 모으지 않고 커서(ScrollableResults)에서 한 건씩 읽어서 consumer로 넘긴다.
+	 * 트랜잭션 안에서 호출해야 한다.
+	 *
+	 * @return consumer로 넘긴 건수
+	 */
+	public long stream(EntityManager em, MemberSearchCondition condition, long offset, int limit,
+			Consumer<MemberTeamDto> consumer) {
+		long count = 0;
+		@SuppressWarnings("unchecked")
+		Stream<Object[]> rows = createQuery(em, condition, offset, limit, null)
+				.setHint(QueryHints.HINT_READONLY, true)
+				.getResultStream();
+		try (rows) {
+			Iterator<Object[]> iterator = rows.iterator();
+			while (iterator.hasNext()) {
+				consumer.accept(toDto(iterator.next()));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private Query createQuery(EntityManager em, MemberSearchCondition condition, long offset, int limit,
+			Duration timeout) {
+		int shape = shapeOf(condition);
+		shapeCounts.incrementAndGet(shape);
+
+		Query query = em.createQuery(jpql(em, shape, condition));
+		List<Object> values = parameterValues(condition);
+		for (int i = 0; i < values.size(); i++) {
+			query.setParameter(i + 1, values.get(i));
+		}
+		if (offset >= 0) {
+			query.setFirstResult(Math.toIntExact(offset));
+		}
+		if (limit >= 0) {
+			query.setMaxResults(limit);
+		}
+		if (timeout != null) {
+			query.setHint(QueryHints.SPEC_HINT_TIMEOUT, Math.toIntExact(timeout.toMillis()));
+		}
+		return query;
+	}
+
+	private static MemberTeamDto toDto(Object[] row) {
+		return new MemberTeamDto((Long) row[0], (String) row[1], (Integer) row[2], (Long) row[3], (String) row[4]);
+	}
+
+	public boolean isReadModelEnabled() {
+		return readModelEnabled;
+	}
+
+	public void setReadModelEnabled(boolean readModelEnabled) {
+		this.readModelEnabled = readModelEnabled;
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * 쿼리 모양별 요청 수 (index = shape 비트)
+	 */
+	public long[] getShapeCounts() {
+		long[] counts = new long[SHAPE_COUNT];
+		for (int i = 0; i < SHAPE_COUNT; i++) {
+			counts[i] = shapeCounts.get(i);
+		}
+		return counts;
+	}
+
+	public static int shapeOf(MemberSearchCondition condition) {
+		int shape = 0;
+		if (hasText(condition.getUsername())) {
+			shape |= USERNAME;
+		}
+		if (hasText(condition.getTeamName())) {
+			shape |= TEAM_NAME;
+		}
+		if (condition.getAgeGoe() != null) {
+			shape |= AGE_GOE;
+		}
+		if (condition.getAgeLoe() != null) {
+			shape |= AGE_LOE;
+		}
+		if (hasText(condition.getUsernameIgnoreCase())) {
+			shape |= USERNAME_IGNORE_CASE;
+		}
+		if (hasText(condition.getUsernameStartsWith())) {
+			shape |= USERNAME_STARTS_WITH;
+		}
+		if (hasText(condition.getUsernameContains())) {
+			shape |= USERNAME_CONTAINS;
+		}
+		return shape;
+	}
+
+	/**
+	 * @return 쿼리 모양에 포함된 조건 이름 (예: "username,ageGoe", 조건이 없으면 "none")
+	 */
+	public static String shapeName(int shape) {
+		StringJoiner names = new StringJoiner(",");
+		if ((shape & USERNAME) != 0) {
+			names.add("username");
+		}
+		if ((shape & TEAM_NAME) != 0) {
+			names.add("teamName");
+		}
+		if ((shape & AGE_GOE) != 0) {
+			names.add("ageGoe");
+		}
+		if ((shape & AGE_LOE) != 0) {
+			names.add("ageLoe");
+		}
+		if ((shape & USERNAME_IGNORE_CASE) != 0) {
+			names.add("usernameIgnoreCase");
+		}
+		if ((shape & USERNAME_STARTS_WITH) != 0) {
+			names.add("usernameStartsWith");
+		}
+		if ((shape & USERNAME_CONTAINS) != 0) {
+			names.add("usernameContains");
+		}
+		return shape == 0 ? "none" : names.toString();
+	}
+
+	String jpql(EntityManager em, int shape, MemberSearchCondition condition) {
+		boolean readModel = readModelEnabled;
+		AtomicReferenceArray<String> cache = readModel ? compiledReadModel : compiled;
+		String jpql = cache.get(shape);
+		if (jpql != null) {
+			hitCount.incrementAndGet();
+			return jpql;
+		}
+
+		missCount.incrementAndGet();
+		jpql = compile(JPAProvider.getTemplates(em), condition, readModel);
+		cache.compareAndSet(shape, null, jpql);
+		return jpql;
+	}
+
+	/**
+	 * 검색 쿼리 (select 절, from/join, 조건). 캐시하는 JPQL과 count 쿼리(PageCounter)가 모두 여기서 만들어지므로
+	 * 컨텐츠와 count의 조건이 어긋나지 않는다.
+	 *
+	 * @param readModel true면 member, team join 대신 읽기 모델(member_team)
+	 */
+	public static JPAQuery<MemberTeamDto> searchQuery(JPAQuery<?> query, MemberSearchCondition condition,
+			boolean readModel) {
+		if (readModel) {
+			return readModelQuery(query, condition);
+		}
+		return query
+				.select(new QMemberTeamDto(
+						member.id.as("memberId"),
+						member.username,
+						member.age,
+						team.id.as("teamId"),
+						team.name.as("teamName")))
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(
+						hasText(condition.getUsername()) ? member.username.eq(condition.getUsername()) : null,
+						hasText(condition.getTeamName()) ? team.name.eq(condition.getTeamName()) : null,
+						condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null,
+						condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null,
+						UsernameSearch.of(condition));
+	}
+
+	/**
+	 * 읽기 모델(member_team) 검색 쿼리. select 절, 조건, 파라미터 순서는 member, team join 쿼리와 같다.
+	 */
+	private static JPAQuery<MemberTeamDto> readModelQuery(JPAQuery<?> query, MemberSearchCondition condition) {
+		return query
+				.select(new QMemberTeamDto(
+						memberTeamView.memberId,
+						memberTeamView.username,
+						memberTeamView.age,
+						memberTeamView.teamId,
+						memberTeamView.teamName))
+				.from(memberTeamView)
+				.where(
+						hasText(condition.getUsername()) ? memberTeamView.username.eq(condition.getUsername()) : null,
+						hasText(condition.getTeamName()) ? memberTeamView.teamName.eq(condition.getTeamName()) : null,
+						condition.getAgeGoe() != null ? memberTeamView.age.goe(condition.getAgeGoe()) : null,
+						condition.getAgeLoe() != null ? memberTeamView.age.loe(condition.getAgeLoe()) : null,
+						UsernameSearch.of(condition, memberTeamView.usernameNormalized, memberTeamView.memberId));
+	}
+
+	private String compile(JPQLTemplates templates, MemberSearchCondition condition, boolean readModel) {
+		// offset/limit 으로 나눠 읽으므로 순서가 정해져 있어야 페이지끼리 겹치거나 빠지지 않는다.
+		// (검색 스냅샷 경로와 같은 member.id 순서, count 쿼리는 order by를 쓰지 않는다.)
+		JPAQuery<MemberTeamDto> query = searchQuery(new JPAQuery<Void>(), condition, readModel)
+				.orderBy(readModel ? memberTeamView.memberId.asc() : member.id.asc());
+
+		JPQLSerializer serializer = new JPQLSerializer(templates);
+		serializer.serialize(query.getMetadata(), false, null);
+
+		// 위치 기반 파라미터(?1, ?2 ..) 순서가 parameterValues()와 같아야 한다.
+		if (!serializer.getConstants().equals(parameterValues(condition))) {
+			throw new IllegalStateException("Unexpected query parameters: " + serializer.getConstants());
+		}
+		return serializer.toString();
+	}
+
+	List<Object> parameterValues(MemberSearchCondition condition) {
+		List<Object> values = new ArrayList<>(4);
+		if (hasText(condition.getUsername())) {
+			values.add(condition.getUsername());
+		}
+		if (hasText(condition.getTeamName())) {
+			values.add(condition.getTeamName());
+		}
+		if (condition.getAgeGoe() != null) {
+			values.add(condition.getAgeGoe());
+		}
+		if (condition.getAgeLoe() != null) {
+			values.add(condition.getAgeLoe());
+		}
+		values.addAll(UsernameSearch.parameterValues(condition));
+		return values;
+	}
+
+}
@@ -8,6 +8,7 @@ import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.query.JpaCountQueryCreator;
 import org.springframework.data.repository.support.PageableExecutionUtils;
 
@@ -16,7 +17,10 @@ import com.querydsl.jpa.impl.JPAQuery;
 
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
+import study.querydsl.repository.support.UsernameSearch;
 
 public class MemberTestRepository extends Querydsl4RepositorySupport {
 
@@ -41,7 +45,8 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
 				.where(usernameEq(condition.getUsername()),
 						teamNameEq(condition.getTeamName()),
 						ageGoe(condition.getAgeGoe()),
-						ageLoe(condition.getAgeLoe())
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition)
 				);
 		
 		List<Member> content = getQuerydsl().applyPagination(pageable, query)
@@ -57,7 +62,8 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
 				.where(usernameEq(condition.getUsername()),
 						  teamNameEq(condition.getTeamName()),
 						ageGoe(condition.getAgeGoe()),
-						ageLoe(condition.getAgeLoe())
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition)
 					)
 				);
 	}
@@ -69,7 +75,8 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
 				.where(usernameEq(condition.getUsername()),
 						  teamNameEq(condition.getTeamName()),
 						ageGoe(condition.getAgeGoe()),
-						ageLoe(condition.getAgeLoe())
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition)
 						
 				), countQuery -> countQuery 
 				.select(member.id)
@@ -78,10 +85,36 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
 				.where(usernameEq(condition.getUsername()),
 						teamNameEq(condition.getTeamName()),
 						ageGoe(condition.getAgeGoe()),
-						ageLoe(condition.getAgeLoe()))
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition))
 		);
 	}
 	
+	public CountedPage<Member> applyPagenation(MemberSearchCondition condition, Pageable pageable,
+			CountStrategy countStrategy) {
+		return applyPagination(pageable, countStrategy, query -> query
+				.selectFrom(member)
+				.leftJoin(member.team, team)
+				.where(usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition))
+				);
+	}
+	
+	public Slice<Member> applySlicing(MemberSearchCondition condition, Pageable pageable) {
+		return applySlicing(pageable, query -> query
+				.selectFrom(member)
+				.leftJoin(member.team, team)
+				.where(usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition))
+				);
+	}
+	
 	private BooleanExpression usernameEq(String username) {
 		return hasText(username) ? member.username.eq(username) : null;
 	}
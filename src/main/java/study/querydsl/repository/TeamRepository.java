@@ -0,0 +1,20 @@
+package study.querydsl.repository;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
+import java.util.Optional;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import study.querydsl.entity.Team;
+
+public interface TeamRepository extends JpaRepository<Team, Long> {
+
+	// 쿼리 캐시 사용 (Hibernate로 team 테이블을 변경하면 자동으로 무효화된다.)
+	@QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+	Optional<Team> findByName(String name);
+
+}
@@ -0,0 +1,84 @@
+package study.querydsl.repository.sql;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.ForeignKey;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * SMember is a Querydsl query type for the member table
+ *
+ * 직접 작성한 querydsl-sql 메타 모델 (querydsl-sql 코드 생성기의 출력 형식을 따른다.)
+ * 컬럼은 JPA(ddl-auto)가 만드는 member 테이블과 맞춰야 한다. 엔티티를 바꾸면 같이 바꾼다.
+ */
+public class SMember extends RelationalPathBase<SMember> {
+
+	private static final long serialVersionUID = -1425093733L;
+
+	public static final SMember member = new SMember("member");
+
+	public final NumberPath<Integer> age = createNumber("age", Integer.class);
+
+	public final StringPath createdBy = createString("createdBy");
+
+	public final DateTimePath<LocalDateTime> createdDate = createDateTime("createdDate", LocalDateTime.class);
+
+	public final StringPath lastModifiedBy = createString("lastModifiedBy");
+
+	public final DateTimePath<LocalDateTime> lastModifiedDate = createDateTime("lastModifiedDate", LocalDateTime.class);
+
+	public final NumberPath<Long> memberId = createNumber("memberId", Long.class);
+
+	public final NumberPath<Long> teamId = createNumber("teamId", Long.class);
+
+	public final StringPath username = createString("username");
+
+	public final StringPath usernameNormalized = createString("usernameNormalized");
+
+	public final PrimaryKey<SMember> primary = createPrimaryKey(memberId);
+
+	public final ForeignKey<STeam> teamFk = createForeignKey(teamId, "team_id");
+
+	public SMember(String variable) {
+		super(SMember.class, forVariable(variable), "PUBLIC", "member");
+		addMetadata();
+	}
+
+	public SMember(String variable, String schema, String table) {
+		super(SMember.class, forVariable(variable), schema, table);
+		addMetadata();
+	}
+
+	public SMember(Path<? extends SMember> path) {
+		super(path.getType(), path.getMetadata(), "PUBLIC", "member");
+		addMetadata();
+	}
+
+	public SMember(PathMetadata metadata) {
+		super(SMember.class, metadata, "PUBLIC", "member");
+		addMetadata();
+	}
+
+	public void addMetadata() {
+		addMetadata(memberId, ColumnMetadata.named("member_id").withIndex(1).ofType(Types.BIGINT).withSize(19).notNull());
+		addMetadata(createdDate, ColumnMetadata.named("created_date").withIndex(2).ofType(Types.TIMESTAMP).withSize(26).withDigits(6));
+		addMetadata(lastModifiedDate, ColumnMetadata.named("last_modified_date").withIndex(3).ofType(Types.TIMESTAMP).withSize(26).withDigits(6));
+		addMetadata(createdBy, ColumnMetadata.named("created_by").withIndex(4).ofType(Types.VARCHAR).withSize(255));
+		addMetadata(lastModifiedBy, ColumnMetadata.named("last_modified_by").withIndex(5).ofType(Types.VARCHAR).withSize(255));
+		addMetadata(age, ColumnMetadata.named("age").withIndex(6).ofType(Types.INTEGER).withSize(10).notNull());
+		addMetadata(username, ColumnMetadata.named("username").withIndex(7).ofType(Types.VARCHAR).withSize(255));
+		addMetadata(teamId, ColumnMetadata.named("team_id").withIndex(8).ofType(Types.BIGINT).withSize(19));
+		addMetadata(usernameNormalized, ColumnMetadata.named("username_normalized").withIndex(9).ofType(Types.VARCHAR).withSize(255));
+	}
+
+}
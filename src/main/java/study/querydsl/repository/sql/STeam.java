@@ -0,0 +1,58 @@
+package study.querydsl.repository.sql;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+import java.sql.Types;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+/**
+ * STeam is a Querydsl query type for the team table
+ *
+ * 직접 작성한 querydsl-sql 메타 모델 (querydsl-sql 코드 생성기의 출력 형식을 따른다.)
+ * 컬럼은 JPA(ddl-auto)가 만드는 team 테이블과 맞춰야 한다. 엔티티를 바꾸면 같이 바꾼다.
+ */
+public class STeam extends RelationalPathBase<STeam> {
+
+	private static final long serialVersionUID = 1208318477L;
+
+	public static final STeam team = new STeam("team");
+
+	public final StringPath name = createString("name");
+
+	public final NumberPath<Long> teamId = createNumber("teamId", Long.class);
+
+	public final PrimaryKey<STeam> primary = createPrimaryKey(teamId);
+
+	public STeam(String variable) {
+		super(STeam.class, forVariable(variable), "PUBLIC", "team");
+		addMetadata();
+	}
+
+	public STeam(String variable, String schema, String table) {
+		super(STeam.class, forVariable(variable), schema, table);
+		addMetadata();
+	}
+
+	public STeam(Path<? extends STeam> path) {
+		super(path.getType(), path.getMetadata(), "PUBLIC", "team");
+		addMetadata();
+	}
+
+	public STeam(PathMetadata metadata) {
+		super(STeam.class, metadata, "PUBLIC", "team");
+		addMetadata();
+	}
+
+	public void addMetadata() {
+		addMetadata(teamId, ColumnMetadata.named("team_id").withIndex(1).ofType(Types.BIGINT).withSize(19).notNull());
+		addMetadata(name, ColumnMetadata.named("name").withIndex(2).ofType(Types.VARCHAR).withSize(255));
+	}
+
+}
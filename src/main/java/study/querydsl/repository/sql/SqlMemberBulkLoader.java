@@ -0,0 +1,159 @@
+package study.querydsl.repository.sql;
+
+import static study.querydsl.repository.sql.SMember.member;
+import static study.querydsl.repository.sql.STeam.team;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.auditing.AuditingHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.querydsl.sql.RelationalPath;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.dml.SQLInsertClause;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.listener.MemberTeamBulkInsertedEvent;
+
+/**
+ * 영속성 컨텍스트를 거치지 않고 querydsl-sql로 Team, Member를 대량 저장한다.
+ *
+ * MemberBulkLoader(JPA)는 엔티티마다 영속성 컨텍스트 관리, 엔티티 리스너, 변경 감지 비용이 들지만
+ * 여기서는 batchSize 건씩 multi-row insert(insert ... values (..), (..), ..) 한 문장으로 바로 쓴다.
+ *
+ * - id는 하이버네이트의 시퀀스 생성기(pooled)에서 받아오므로 JPA로 저장하는 id와 겹치지 않는다.
+ * - 엔티티 리스너를 타지 않으므로 저장이 끝나면 저장한 id로 MemberTeamBulkInsertedEvent를 한 번 발행한다.
+ *   캐시, 스냅샷, 통계, 테이블 버전(ETag), username 조각(member_username_gram), 읽기 모델(member_team)은
+ *   엔티티 리스너 이벤트처럼 그 이벤트를 받아서 맞춘다. 하이버네이트 쿼리 캐시만 여기서 비운다.
+ * - 감사 컬럼(created/lastModified Date, By)은 JPA로 저장할 때와 같게 채운다.
+ *   JPA auditing(@EnableJpaAuditing)을 켜면 같은 AuditingHandler로 채우고, 꺼져 있으면 JPA처럼 null로 둔다.
+ * - 저장 후 넘겨준 Team, Member 객체에는 id(와 감사 컬럼)만 채워진다. (영속 상태가 아니다.)
+ */
+@Repository
+public class SqlMemberBulkLoader {
+
+	private final SQLQueryFactory sqlQueryFactory;
+	private final EntityManager em;
+	private final ApplicationEventPublisher publisher;
+	private final ObjectProvider<AuditingHandler> auditingHandler;
+	private final int batchSize;
+
+	public SqlMemberBulkLoader(SQLQueryFactory sqlQueryFactory, EntityManager em,
+			ApplicationEventPublisher publisher, ObjectProvider<AuditingHandler> auditingHandler,
+			@Value("${querydsl.sql-bulk.batch-size:1000}") int batchSize) {
+		this.sqlQueryFactory = sqlQueryFactory;
+		this.em = em;
+		this.publisher = publisher;
+		this.auditingHandler = auditingHandler;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return 저장한 Member 수
+	 */
+	@Transactional
+	public long load(Collection<Team> teams, Iterable<Member> members) {
+		// JPA에서 아직 flush 되지 않은 변경이 있다면 먼저 내보낸다.
+		em.flush();
+
+		SessionImplementor session = em.unwrap(SessionImplementor.class);
+		IdentifierGenerator teamIdGenerator = identifierGenerator(session, Team.class);
+		IdentifierGenerator memberIdGenerator = identifierGenerator(session, Member.class);
+
+		List<Long> teamIds = new ArrayList<>(teams.size());
+		SQLInsertClause teamInsert = newInsert(team);
+		for (Team newTeam : teams) {
+			newTeam.setId((Long) teamIdGenerator.generate(session, newTeam));
+			teamIds.add(newTeam.getId());
+			teamInsert
+				.set(team.teamId, newTeam.getId())
+				.set(team.name, newTeam.getName())
+				.addBatch();
+			teamInsert = executeIfFull(teamInsert, team);
+		}
+		execute(teamInsert);
+
+		List<Long> memberIds = new ArrayList<>();
+		SQLInsertClause memberInsert = newInsert(member);
+		for (Member newMember : members) {
+			newMember.setId((Long) memberIdGenerator.generate(session, newMember));
+			// JPA로 저장할 때처럼 auditing을 켰을 때만 채운다. (꺼져 있으면 JPA와 같이 null)
+			auditingHandler.ifAvailable(handler -> handler.markCreated(newMember));
+			memberInsert
+				.set(member.memberId, newMember.getId())
+				.set(member.username, newMember.getUsername())
+				.set(member.usernameNormalized, newMember.getUsernameNormalized())
+				.set(member.age, newMember.getAge())
+				.set(member.teamId, newMember.getTeam() != null ? newMember.getTeam().getId() : null)
+				.set(member.createdDate, newMember.getCreatedDate())
+				.set(member.lastModifiedDate, newMember.getLastModifiedDate())
+				.set(member.createdBy, newMember.getCreatedBy())
+				.set(member.lastModifiedBy, newMember.getLastModifiedBy())
+				.addBatch();
+			memberInsert = executeIfFull(memberInsert, member);
+			memberIds.add(newMember.getId());
+		}
+		execute(memberInsert);
+
+		// 엔티티 리스너를 타지 않으므로 저장한 id로 한 번에 알린다.
+		publisher.publishEvent(new MemberTeamBulkInsertedEvent(teamIds, memberIds));
+		// 하이버네이트 쿼리 캐시 무효화도 타지 않는다.
+		// 커밋 전에 비우면 그 사이 다른 트랜잭션이 커밋 전 데이터로 쿼리 캐시를 다시 채울 수 있다.
+		afterCommit(() -> session.getFactory().getCache().evictQueryRegions());
+		return memberIds.size();
+	}
+
+	/**
+	 * 트랜잭션 안이면 커밋 후에, 아니면 바로 실행한다.
+	 */
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+
+	private IdentifierGenerator identifierGenerator(SessionImplementor session, Class<?> entityClass) {
+		return session.getFactory().getMetamodel().entityPersister(entityClass).getIdentifierGenerator();
+	}
+
+	private SQLInsertClause newInsert(RelationalPath<?> table) {
+		SQLInsertClause insert = sqlQueryFactory.insert(table);
+		insert.setBatchToBulk(true);
+		return insert;
+	}
+
+	private SQLInsertClause executeIfFull(SQLInsertClause insert, RelationalPath<?> table) {
+		if (insert.getBatchCount() < batchSize) {
+			return insert;
+		}
+		insert.execute();
+		return newInsert(table);
+	}
+
+	private void execute(SQLInsertClause insert) {
+		if (insert.getBatchCount() > 0) {
+			insert.execute();
+		}
+	}
+
+}
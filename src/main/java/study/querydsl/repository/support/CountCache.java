@@ -0,0 +1,267 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.listener.MemberTeamBulkInsertedEvent;
+import study.querydsl.entity.listener.MemberTeamChangedEvent;
+
+/**
+ * 페이징 count 쿼리 결과 캐시
+ *
+ * 같은 검색 조건으로 2..N 페이지를 넘길 때마다 count 쿼리를 다시 실행하지 않도록
+ * 검색 조건(또는 count 쿼리의 JPQL + 파라미터)을 키로 total을 캐시한다.
+ *
+ * - 최대 크기(LRU), TTL을 가진다.
+ * - refresh-ahead 시간이 지난 항목은 캐시 값을 바로 돌려주고 백그라운드에서 다시 읽어온다.
+ *   백그라운드 스레드는 요청의 트랜잭션 밖이므로 읽기 전용 트랜잭션을 따로 열고 loader를 실행한다.
+ *   (loader의 쿼리는 트랜잭션에 묶이는 공유 EntityManager로 만들어야 그 트랜잭션에서 실행된다.)
+ *   loader는 쿼리 타임아웃을 받는다. 요청에서는 요청의 남은 시간을, 다시 읽어올 때는 refresh-timeout을 받는다.
+ *   (처음 요청의 남은 시간을 백그라운드에서 그대로 쓰지 않는다.)
+ * - Member, Team이 변경되면(MemberTeamChangedEvent, MemberTeamBulkInsertedEvent) 전부 무효화한다.
+ *   변경이 있었던 트랜잭션 안에서는 커밋 전 데이터로 계산된 값이 캐시되지 않도록 캐시를 타지 않는다.
+ *   그 밖의 엔티티는 변경을 알 수 없으므로 캐시하면 안 된다. (isInvalidatedBy)
+ */
+@Slf4j
+@Component
+public class CountCache {
+
+	// 변경 이벤트(MemberTeamChangedEvent, MemberTeamBulkInsertedEvent)가 나오는 엔티티
+	private static final Set<Class<?>> INVALIDATED_BY = Set.of(Member.class, Team.class);
+
+	private final int maxSize;
+	private final long ttlNanos;
+	private final long refreshAheadNanos;
+	private final Duration refreshTimeout;
+
+	private final Map<Object, Entry> entries;
+	private final AtomicLong generation = new AtomicLong();
+	private final ThreadPoolExecutor refreshExecutor;
+	private final TransactionTemplate readOnly;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	public CountCache(PlatformTransactionManager transactionManager,
+			@Value("${querydsl.count-cache.max-size:1000}") int maxSize,
+			@Value("${querydsl.count-cache.ttl:60s}") Duration ttl,
+			@Value("${querydsl.count-cache.refresh-ahead:45s}") Duration refreshAhead,
+			@Value("${querydsl.count-cache.refresh-timeout:30s}") Duration refreshTimeout) {
+		this.maxSize = maxSize;
+		this.ttlNanos = ttl.toNanos();
+		this.refreshAheadNanos = refreshAhead.toNanos();
+		this.refreshTimeout = refreshTimeout;
+		this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+				return size() > CountCache.this.maxSize;
+			}
+		};
+		this.refreshExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(maxSize), new CustomizableThreadFactory("count-cache-refresh-"),
+				new ThreadPoolExecutor.DiscardPolicy());
+		this.readOnly = new TransactionTemplate(transactionManager);
+		this.readOnly.setReadOnly(true);
+	}
+
+	/**
+	 * count 쿼리의 JPQL과 바인딩 파라미터로 캐시 키를 만든다.
+	 */
+	public static Object keyOf(JPAQuery<?> countQuery) {
+		QueryMetadata metadata = countQuery.getMetadata();
+		JPQLSerializer serializer = new JPQLSerializer(JPQLTemplates.DEFAULT);
+		serializer.serialize(metadata, true, null);
+		return new QueryKey(serializer.toString(), serializer.getConstants().toArray());
+	}
+
+	/**
+	 * entityType이 바뀌면 이 캐시가 무효화되는지 (아니면 그 엔티티의 count는 캐시하지 않는다.)
+	 */
+	public boolean isInvalidatedBy(Class<?> entityType) {
+		return INVALIDATED_BY.contains(entityType);
+	}
+
+	public long get(Object key, LongSupplier loader) {
+		return get(key, null, timeout -> loader.getAsLong());
+	}
+
+	/**
+	 * @param timeout 이 요청의 쿼리 타임아웃 (없으면 null). 백그라운드에서 다시 읽어올 때는 refresh-timeout을 쓴다.
+	 * @param loader 쿼리 타임아웃을 받아서 count를 구한다.
+	 */
+	public long get(Object key, Duration timeout, ToLongFunction<Duration> loader) {
+		if (isWriteTransaction()) {
+			return loader.applyAsLong(timeout);
+		}
+
+		long now = System.nanoTime();
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+
+		if (entry != null && now - entry.loadedAt < ttlNanos) {
+			hitCount.incrementAndGet();
+			if (now - entry.loadedAt >= refreshAheadNanos && entry.refreshing.compareAndSet(false, true)) {
+				refreshExecutor.execute(() -> refresh(key, () -> loader.applyAsLong(refreshTimeout)));
+			}
+			return entry.value;
+		}
+
+		missCount.incrementAndGet();
+		try {
+			return load(key, () -> loader.applyAsLong(timeout));
+		} catch (RuntimeException e) {
+			log.warn("count query failed. key={}", key, e);
+			throw e;
+		}
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	@EventListener
+	public void onMemberTeamChanged(MemberTeamChangedEvent event) {
+		changed();
+	}
+
+	@EventListener
+	public void onBulkInserted(MemberTeamBulkInsertedEvent event) {
+		changed();
+	}
+
+	/**
+	 * 바로 무효화하고, 트랜잭션 안이면 끝날 때(커밋/롤백) 한 번 더 무효화한다.
+	 * 트랜잭션이 끝날 때까지 그 트랜잭션의 count는 캐시하지 않는다.
+	 * (엔티티 리스너를 타지 않는 변경은 직접 부른다.)
+	 */
+	public void changed() {
+		invalidateAll();
+
+		// 커밋/롤백 모두: 그 사이에 다른 트랜잭션이 읽어간 값도 버린다.
+		TransactionScopedInvalidation.onCompletion(this, status -> invalidateAll());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		refreshExecutor.shutdownNow();
+	}
+
+	private boolean isWriteTransaction() {
+		return TransactionSynchronizationManager.hasResource(this);
+	}
+
+	private void refresh(Object key, LongSupplier loader) {
+		try {
+			readOnly.executeWithoutResult(status -> load(key, loader));
+		} catch (RuntimeException e) {
+			// 다음 요청에서 다시 시도한다.
+			synchronized (entries) {
+				Entry stale = entries.get(key);
+				if (stale != null) {
+					stale.refreshing.set(false);
+				}
+			}
+			log.warn("count refresh failed. key={}", key, e);
+		}
+	}
+
+	private long load(Object key, LongSupplier loader) {
+		long loadGeneration = generation.get();
+		long value = loader.getAsLong();
+
+		// 읽는 도중에 무효화되었다면 캐시하지 않는다.
+		if (generation.get() == loadGeneration) {
+			synchronized (entries) {
+				if (generation.get() == loadGeneration) {
+					entries.put(key, new Entry(value, System.nanoTime()));
+				}
+			}
+		}
+		return value;
+	}
+
+	private static class Entry {
+		private final long value;
+		private final long loadedAt;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		Entry(long value, long loadedAt) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private static class QueryKey {
+		private final String jpql;
+		private final Object[] constants;
+
+		QueryKey(String jpql, Object[] constants) {
+			this.jpql = jpql;
+			this.constants = constants;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof QueryKey)) {
+				return false;
+			}
+			QueryKey other = (QueryKey) o;
+			return jpql.equals(other.jpql) && Arrays.equals(constants, other.constants);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * jpql.hashCode() + Arrays.hashCode(constants);
+		}
+
+		@Override
+		public String toString() {
+			return jpql + " " + Arrays.toString(constants);
+		}
+	}
+
+}
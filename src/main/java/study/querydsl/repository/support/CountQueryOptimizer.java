@@ -0,0 +1,438 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.jpa.QueryHints;
+import org.springframework.stereotype.Component;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.entity.Team;
+
+/**
+ * count 쿼리 최적화
+ *
+ * 1. team.name = ? 조건을 member.team.id in (?) 로 바꾼다. (TeamNameIdCache)
+ *    -> team 테이블을 보지 않고 member.team_id 컬럼만으로 거를 수 있다.
+ * 2. 어디에서도 참조하지 않는 to-one left join을 뺀다.
+ *    -> left join to-one은 row 수를 바꾸지 않으므로 count 결과가 같다.
+ *    (inner join, 컬렉션 join은 row 수가 달라질 수 있으므로 그대로 둔다.)
+ *
+ * 정렬, offset/limit, fetch join은 count에 필요 없으므로 뺀다.
+ * 결과 쿼리는 count 전용이다.
+ *
+ * count(em, contentQuery)는 컨텐츠 쿼리만 주면 위 최적화를 거친 count 쿼리를 만들어 실행한다.
+ * count 쿼리를 따로 작성하지 않아도 된다.
+ * countUpTo(em, contentQuery, limit)는 limit 건까지만 센다. (CountStrategy.CAPPED, limit 건 이상은 읽지 않는다.)
+ */
+@Component
+public class CountQueryOptimizer {
+
+	/** id가 이보다 많으면 in 절이 너무 길어지므로 원래 조건을 쓴다. */
+	static final int MAX_TEAM_IDS = 100;
+
+	private final TeamNameIdCache teamNameIdCache;
+
+	public CountQueryOptimizer(TeamNameIdCache teamNameIdCache) {
+		this.teamNameIdCache = teamNameIdCache;
+	}
+
+	public <T> JPAQuery<T> optimize(EntityManager em, JPAQuery<T> query) {
+		return new JPAQuery<>(em, optimizedMetadata(query.getMetadata(), true));
+	}
+
+	/**
+	 * 컨텐츠 쿼리에서 count 쿼리를 만들어 실행한다.
+	 *
+	 * select 절(DTO 생성자 등)은 버리고 count(루트)를 센다.
+	 * distinct 루트 조회에서 컬렉션 join 때문에 루트가 중복될 때만 count(distinct 루트)를 쓴다.
+	 * group by, 루트가 아닌 distinct 조회는 countRows로 센다.
+	 */
+	public long count(EntityManager em, JPAQuery<?> contentQuery) {
+		return count(em, contentQuery, null);
+	}
+
+	/**
+	 * @param timeout 쿼리 타임아웃 (null이면 없음)
+	 */
+	public long count(EntityManager em, JPAQuery<?> contentQuery, Duration timeout) {
+		QueryMetadata metadata = contentQuery.getMetadata();
+		Path<?> root = root(metadata);
+		if (root == null || !metadata.getGroupBy().isEmpty()
+				|| (metadata.isDistinct() && !root.equals(metadata.getProjection()))) {
+			return countRows(em, metadata, timeout);
+		}
+
+		DefaultQueryMetadata countMetadata = optimizedMetadata(metadata, true);
+		boolean toManyJoin = countMetadata.getJoins().stream()
+				.anyMatch(join -> association(join) instanceof CollectionExpression);
+		countMetadata.setDistinct(false);
+		countMetadata.setProjection(Expressions.numberOperation(Long.class,
+				metadata.isDistinct() && toManyJoin ? Ops.AggOps.COUNT_DISTINCT_AGG : Ops.AggOps.COUNT_AGG, root));
+
+		Long total = withTimeout(new JPAQuery<Long>(em, countMetadata), timeout).fetchOne();
+		return total != null ? total : 0;
+	}
+
+	/**
+	 * group by, 루트가 아닌 distinct 조회의 결과 row 수
+	 *
+	 * group by 식 또는 distinct select 절이 하나이고 having이 없으면 group by를 빼고
+	 * select count(distinct 식) 으로 센다. (Querydsl fetchCount의 group by count와 같은 결과)
+	 * count(distinct 식)은 null을 세지 않으므로 null 그룹이 하나 있으면 1을 더한다.
+	 * having이 있거나 식이 여러 개면 count 한 번으로 셀 수 없으므로 row를 읽어서 센다.
+	 */
+	private long countRows(EntityManager em, QueryMetadata metadata, Duration timeout) {
+		List<Expression<?>> keys = !metadata.getGroupBy().isEmpty() ? metadata.getGroupBy()
+				: metadata.getProjection() instanceof FactoryExpression
+						? ((FactoryExpression<?>) metadata.getProjection()).getArgs()
+						: Collections.singletonList(metadata.getProjection());
+
+		if (keys.size() == 1 && keys.get(0) != null && metadata.getHaving() == null) {
+			Expression<?> key = keys.get(0);
+			DefaultQueryMetadata countMetadata = optimizedMetadata(metadata, false);
+			countMetadata.setDistinct(false);
+			countMetadata.setProjection(Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, key));
+			Long total = withTimeout(new JPAQuery<Long>(em, countMetadata), timeout).fetchOne();
+
+			DefaultQueryMetadata nullMetadata = optimizedMetadata(metadata, false);
+			nullMetadata.setDistinct(false);
+			nullMetadata.addWhere(ExpressionUtils.isNull(key));
+			nullMetadata.setProjection(Expressions.numberTemplate(Integer.class, "1"));
+			nullMetadata.setModifiers(QueryModifiers.limit(1));
+			boolean nullKey = !withTimeout(new JPAQuery<>(em, nullMetadata), timeout).fetch().isEmpty();
+
+			return (total != null ? total : 0) + (nullKey ? 1 : 0);
+		}
+
+		DefaultQueryMetadata rowMetadata = optimizedMetadata(metadata, true);
+		if (!metadata.getGroupBy().isEmpty()) {
+			// 그룹마다 한 row이므로 select 절은 필요 없다.
+			rowMetadata.setProjection(Expressions.numberTemplate(Integer.class, "1"));
+		}
+		return withTimeout(new JPAQuery<>(em, rowMetadata), timeout).fetch().size();
+	}
+
+	/**
+	 * 조건에 맞는 row를 최대 limit 건까지만 센다.
+	 *
+	 * select 1 ... offset limit - 1 limit 1 로 limit 번째 row가 있는지만 본다. (한 row만 가져온다.)
+	 * DB는 limit 건을 지나면 더 찾지 않고 멈추므로 결과가 아무리 많아도 limit 건 이상의 비용이 들지 않는다.
+	 * 없으면 결과가 limit 건보다 적으므로 count(em, contentQuery)로 정확하게 센다.
+	 * (JPQL은 from 절 서브쿼리를 지원하지 않고 서브쿼리의 limit도 무시하므로
+	 *  select count(*) from (... limit ?) 대신 두 쿼리로 나눈다.)
+	 * distinct 루트 조회는 루트 id를, 루트가 아닌 distinct 조회는 select 절을 그대로 읽는다.
+	 *
+	 * @return min(전체 건수, limit)
+	 */
+	public long countUpTo(EntityManager em, JPAQuery<?> contentQuery, long limit) {
+		return countUpTo(em, contentQuery, limit, null);
+	}
+
+	/**
+	 * @param timeout 쿼리 타임아웃 (null이면 없음)
+	 */
+	public long countUpTo(EntityManager em, JPAQuery<?> contentQuery, long limit, Duration timeout) {
+		if (limit <= 0) {
+			return 0;
+		}
+		QueryMetadata metadata = contentQuery.getMetadata();
+		Path<?> root = root(metadata);
+		DefaultQueryMetadata probeMetadata = optimizedMetadata(metadata, true);
+
+		if (!metadata.getGroupBy().isEmpty()) {
+			// 그룹마다 한 row이므로 select 절은 필요 없다.
+			probeMetadata.setProjection(Expressions.numberTemplate(Integer.class, "1"));
+		} else if (root != null) {
+			if (!metadata.isDistinct()) {
+				probeMetadata.setProjection(Expressions.numberTemplate(Integer.class, "1"));
+			} else if (root.equals(metadata.getProjection())) {
+				probeMetadata.setProjection(idPath(em, root));
+			}
+		}
+		probeMetadata.setModifiers(new QueryModifiers(1L, limit - 1));
+		if (!withTimeout(new JPAQuery<>(em, probeMetadata), timeout).fetch().isEmpty()) {
+			return limit;
+		}
+		// 두 쿼리 사이에 저장된 row가 있을 수 있다.
+		return Math.min(count(em, contentQuery, timeout), limit);
+	}
+
+	/**
+	 * 하이버네이트는 힌트(ms)를 초 단위로 반올림하고 0은 제한 없음이므로 최소 1초로 준다.
+	 */
+	private static <T> JPAQuery<T> withTimeout(JPAQuery<T> query, Duration timeout) {
+		if (timeout != null) {
+			query.setHint(QueryHints.SPEC_HINT_TIMEOUT, Math.toIntExact(Math.max(1000, timeout.toMillis())));
+		}
+		return query;
+	}
+
+	private static Path<?> idPath(EntityManager em, Path<?> root) {
+		EntityType<?> entityType = em.getMetamodel().entity(root.getType());
+		String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+		return Expressions.path(entityType.getIdType().getJavaType(), root, idName);
+	}
+
+	/**
+	 * @param groupBy false면 group by, having을 뺀다. (group 수를 count(distinct)로 셀 때)
+	 */
+	private DefaultQueryMetadata optimizedMetadata(QueryMetadata metadata, boolean groupBy) {
+		List<JoinExpression> joins = metadata.getJoins();
+		Path<?> root = root(metadata);
+
+		// join alias -> 연관관계 경로 (team -> member.team)
+		Map<Path<?>, Path<?>> associations = new HashMap<>();
+		for (JoinExpression join : joins) {
+			Path<?> alias = alias(join);
+			Path<?> association = association(join);
+			if (alias != null && association != null) {
+				associations.put(alias, association);
+			}
+		}
+
+		Predicate where = rewrite(metadata.getWhere(), associations);
+
+		// distinct가 아니면 select 절은 count에 영향이 없으므로 루트만 센다.
+		Expression<?> projection = metadata.getProjection();
+		if (!metadata.isDistinct() && root != null) {
+			projection = root;
+		}
+		// distinct 루트 조회는 참조하지 않는 컬렉션 left join도 결과를 바꾸지 않는다.
+		boolean distinctRoot = metadata.isDistinct() && root != null && root.equals(projection);
+
+		Set<Path<?>> referenced = new HashSet<>();
+		collectRoots(where, referenced);
+		collectRoots(metadata.getHaving(), referenced);
+		collectRoots(projection, referenced);
+		for (Expression<?> expr : metadata.getGroupBy()) {
+			collectRoots(expr, referenced);
+		}
+
+		// 뒤의 join부터 보면서 필요한 join이 참조하는 alias도 필요하다고 표시한다.
+		boolean[] keep = new boolean[joins.size()];
+		for (int i = joins.size() - 1; i >= 0; i--) {
+			JoinExpression join = joins.get(i);
+			keep[i] = i == 0 || !removable(join, distinctRoot) || referenced.contains(alias(join));
+			if (keep[i]) {
+				collectRoots(join.getTarget(), referenced);
+				collectRoots(join.getCondition(), referenced);
+			}
+		}
+
+		DefaultQueryMetadata optimized = new DefaultQueryMetadata();
+		optimized.setValidate(false);
+		for (int i = 0; i < joins.size(); i++) {
+			if (!keep[i]) {
+				continue;
+			}
+			JoinExpression join = joins.get(i);
+			optimized.addJoin(join.getType(), join.getTarget());
+			if (join.getCondition() != null) {
+				optimized.addJoinCondition(join.getCondition());
+			}
+			for (JoinFlag flag : join.getFlags()) {
+				if (!flag.equals(JPAQueryMixin.FETCH) && !flag.equals(JPAQueryMixin.FETCH_ALL_PROPERTIES)) {
+					optimized.addJoinFlag(flag);
+				}
+			}
+		}
+		if (where != null) {
+			optimized.addWhere(where);
+		}
+		if (groupBy) {
+			for (Expression<?> expr : metadata.getGroupBy()) {
+				optimized.addGroupBy(expr);
+			}
+			if (metadata.getHaving() != null) {
+				optimized.addHaving(metadata.getHaving());
+			}
+		}
+		optimized.setProjection(projection);
+		optimized.setDistinct(metadata.isDistinct());
+		for (Map.Entry<ParamExpression<?>, Object> param : metadata.getParams().entrySet()) {
+			setParam(optimized, param.getKey(), param.getValue());
+		}
+		for (QueryFlag flag : metadata.getFlags()) {
+			optimized.addFlag(flag);
+		}
+		return optimized;
+	}
+
+	/**
+	 * left join 이면서 to-one 연관관계(컬렉션이 아님)
+	 * distinct 루트 조회라면 컬렉션 left join도 뺄 수 있다.
+	 */
+	private boolean removable(JoinExpression join, boolean distinctRoot) {
+		return join.getType() == JoinType.LEFTJOIN && association(join) != null
+				&& (distinctRoot || !(association(join) instanceof CollectionExpression));
+	}
+
+	private Predicate rewrite(Predicate predicate, Map<Path<?>, Path<?>> associations) {
+		if (!(predicate instanceof Operation)) {
+			return predicate;
+		}
+		Operation<?> operation = (Operation<?>) predicate;
+
+		if (operation.getOperator() == Ops.AND || operation.getOperator() == Ops.OR
+				|| operation.getOperator() == Ops.NOT) {
+			List<Expression<?>> args = new ArrayList<>(operation.getArgs().size());
+			boolean changed = false;
+			for (Expression<?> arg : operation.getArgs()) {
+				Expression<?> rewritten = arg instanceof Predicate ? rewrite((Predicate) arg, associations) : arg;
+				changed |= rewritten != arg;
+				args.add(rewritten);
+			}
+			return changed ? ExpressionUtils.predicate(operation.getOperator(), args.toArray(new Expression<?>[0]))
+					: predicate;
+		}
+
+		if (operation.getOperator() == Ops.EQ && operation.getArg(0) instanceof Path
+				&& operation.getArg(1) instanceof Constant) {
+			Path<?> path = (Path<?>) operation.getArg(0);
+			Path<?> parent = path.getMetadata().getParent();
+			Path<?> association = parent != null ? associations.get(parent) : null;
+			Object value = ((Constant<?>) operation.getArg(1)).getConstant();
+
+			if (association != null && parent.getType() == Team.class && "name".equals(path.getMetadata().getName())
+					&& value instanceof String) {
+				List<Long> teamIds = teamNameIdCache.get((String) value);
+				if (!teamIds.isEmpty() && teamIds.size() <= MAX_TEAM_IDS) {
+					return Expressions.numberPath(Long.class, association, "id").in(teamIds);
+				}
+			}
+		}
+		return predicate;
+	}
+
+	private static Path<?> root(QueryMetadata metadata) {
+		List<JoinExpression> joins = metadata.getJoins();
+		return !joins.isEmpty() && joins.get(0).getTarget() instanceof Path ? (Path<?>) joins.get(0).getTarget() : null;
+	}
+
+	private static Path<?> alias(JoinExpression join) {
+		Expression<?> target = join.getTarget();
+		if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+			Expression<?> alias = ((Operation<?>) target).getArg(1);
+			return alias instanceof Path ? (Path<?>) alias : null;
+		}
+		return target instanceof Path ? (Path<?>) target : null;
+	}
+
+	private static Path<?> association(JoinExpression join) {
+		Expression<?> target = join.getTarget();
+		if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+			Expression<?> association = ((Operation<?>) target).getArg(0);
+			return association instanceof Path ? (Path<?>) association : null;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <P> void setParam(DefaultQueryMetadata metadata, ParamExpression<P> param, Object value) {
+		metadata.setParam(param, (P) value);
+	}
+
+	private static void collectRoots(Expression<?> expr, Set<Path<?>> roots) {
+		if (expr != null) {
+			expr.accept(RootCollector.INSTANCE, roots);
+		}
+	}
+
+	/**
+	 * 표현식에서 참조하는 경로의 루트(alias)를 모은다.
+	 */
+	private static class RootCollector implements Visitor<Void, Set<Path<?>>> {
+
+		static final RootCollector INSTANCE = new RootCollector();
+
+		@Override
+		public Void visit(Constant<?> expr, Set<Path<?>> roots) {
+			return null;
+		}
+
+		@Override
+		public Void visit(FactoryExpression<?> expr, Set<Path<?>> roots) {
+			for (Expression<?> arg : expr.getArgs()) {
+				arg.accept(this, roots);
+			}
+			return null;
+		}
+
+		@Override
+		public Void visit(Operation<?> expr, Set<Path<?>> roots) {
+			for (Expression<?> arg : expr.getArgs()) {
+				arg.accept(this, roots);
+			}
+			return null;
+		}
+
+		@Override
+		public Void visit(ParamExpression<?> expr, Set<Path<?>> roots) {
+			return null;
+		}
+
+		@Override
+		public Void visit(Path<?> expr, Set<Path<?>> roots) {
+			roots.add(expr.getRoot());
+			return null;
+		}
+
+		@Override
+		public Void visit(SubQueryExpression<?> expr, Set<Path<?>> roots) {
+			QueryMetadata metadata = expr.getMetadata();
+			for (JoinExpression join : metadata.getJoins()) {
+				collectRoots(join.getTarget(), roots);
+				collectRoots(join.getCondition(), roots);
+			}
+			collectRoots(metadata.getWhere(), roots);
+			collectRoots(metadata.getHaving(), roots);
+			collectRoots(metadata.getProjection(), roots);
+			return null;
+		}
+
+		@Override
+		public Void visit(TemplateExpression<?> expr, Set<Path<?>> roots) {
+			for (Object arg : expr.getArgs()) {
+				if (arg instanceof Expression) {
+					((Expression<?>) arg).accept(this, roots);
+				}
+			}
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,21 @@
+package study.querydsl.repository.support;
+
+/**
+ * 페이징 조회에서 total(전체 건수)을 구하는 방법
+ *
+ * 결과가 매우 많을 때 정확한 count(*)가 페이징 조회에서 가장 비싼 부분이다.
+ * 화면에서 "10,000+" 정도만 보여준다면 CAPPED, ESTIMATED로 비용을 줄일 수 있다.
+ * 실제로 쓴 방법과 정확한 값인지 여부는 CountedPage에 담긴다.
+ */
+public enum CountStrategy {
+
+	/** count 쿼리로 정확하게 센다. */
+	EXACT,
+
+	/** 최대 querydsl.count.cap 건까지만 센다. 그보다 많으면 total은 cap 이고 정확하지 않다. */
+	CAPPED,
+
+	/** 통계(MemberStatistics 히스토그램)로 추정한다. 추정할 수 없는 조건이거나 통계가 아직 없으면 CAPPED로 센다. */
+	ESTIMATED
+
+}
@@ -0,0 +1,89 @@
+package study.querydsl.repository.support;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * total을 구한 방법(countStrategy)과 정확한 값인지(totalExact)를 함께 담는 Page
+ *
+ * JSON 응답에도 countStrategy, totalExact 가 그대로 나간다.
+ */
+@Getter
+public class CountedPage<T> extends PageImpl<T> {
+
+	private final CountStrategy countStrategy;
+	private final boolean totalExact;
+
+	public CountedPage(List<T> content, Pageable pageable, Total total) {
+		super(content, pageable, total.getValue());
+		this.countStrategy = total.getStrategy();
+		this.totalExact = total.isExact();
+	}
+
+	/**
+	 * PageableExecutionUtils.getPage 와 같이 컨텐츠만으로 total을 알 수 있으면 count를 실행하지 않는다.
+	 * (첫 페이지가 size보다 작거나, 마지막 페이지인 경우 -> 정확한 값)
+	 */
+	public static <T> CountedPage<T> of(List<T> content, Pageable pageable, CountStrategy countStrategy,
+			Supplier<Total> total) {
+		return new CountedPage<>(content, pageable, totalOf(content.size(), pageable, countStrategy, total));
+	}
+
+	/**
+	 * of()와 같지만 컨텐츠 없이 건수만으로 total을 구한다. (컨텐츠를 모으지 않고 바로 응답에 쓰는 경우)
+	 */
+	public static Total totalOf(long contentSize, Pageable pageable, CountStrategy countStrategy,
+			Supplier<Total> total) {
+		if (pageable.isUnpaged() || pageable.getOffset() == 0) {
+			if (pageable.isUnpaged() || pageable.getPageSize() > contentSize) {
+				return Total.exact(contentSize, countStrategy);
+			}
+			return total.get();
+		}
+		if (contentSize != 0 && pageable.getPageSize() > contentSize) {
+			return Total.exact(pageable.getOffset() + contentSize, countStrategy);
+		}
+		return total.get();
+	}
+
+	/**
+	 * count 결과
+	 */
+	@Getter
+	@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+	public static class Total {
+
+		private final long value;
+		private final CountStrategy strategy;
+		private final boolean exact;
+
+		public static Total exact(long value) {
+			return exact(value, CountStrategy.EXACT);
+		}
+
+		static Total exact(long value, CountStrategy strategy) {
+			return new Total(value, strategy, true);
+		}
+
+		/**
+		 * @param counted cap + 1 건까지 센 값
+		 */
+		public static Total capped(long counted, long cap) {
+			return counted > cap ? new Total(cap, CountStrategy.CAPPED, false)
+					: new Total(counted, CountStrategy.CAPPED, true);
+		}
+
+		public static Total estimated(long value) {
+			return new Total(value, CountStrategy.ESTIMATED, false);
+		}
+
+	}
+
+}
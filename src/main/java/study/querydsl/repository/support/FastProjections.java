@@ -0,0 +1,436 @@
+package study.querydsl.repository.support;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.util.ClassUtils;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionException;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * Projections.bean / fields / constructor 대신 쓸 수 있는 프로젝션
+ *
+ * Querydsl의 QBean, ConstructorExpression은 row마다 리플렉션(Method.invoke, Field.set,
+ * Constructor.newInstance)으로 DTO를 채운다. 여기서는 DTO 클래스별로 한 번만
+ * LambdaMetafactory / MethodHandle 로 생성자, setter, 필드 접근자를 만들어 캐시해 두고 재사용한다.
+ *
+ * 별칭 규칙은 Projections와 같다.
+ * - 경로는 마지막 이름 (member.username -> username)
+ * - as()로 준 별칭 (member.username.as("name") -> name)
+ * - bean, fields는 대상 프로퍼티가 없으면 무시하고, null 값은 넣지 않는다.
+ */
+public final class FastProjections {
+
+	/** DTO 클래스에 붙여 두므로 클래스(클래스 로더)가 내려가면 캐시도 같이 사라진다. */
+	private static final ClassValue<Accessors> ACCESSORS = new ClassValue<>() {
+		@Override
+		protected Accessors computeValue(Class<?> type) {
+			return new Accessors(type);
+		}
+	};
+
+	/** 대상 프로퍼티가 없을 때 (Projections와 같이 무시한다.) */
+	private static final BiConsumer<Object, Object> NO_OP = (bean, value) -> {
+	};
+
+	private FastProjections() {
+	}
+
+	/**
+	 * Projections.bean 대체 (setter 사용)
+	 */
+	public static <T> FactoryExpression<T> bean(Class<? extends T> type, Expression<?>... exprs) {
+		return new BeanProjection<>(type, false, exprs);
+	}
+
+	/**
+	 * Projections.fields 대체 (필드에 바로 넣는다.)
+	 */
+	public static <T> FactoryExpression<T> fields(Class<? extends T> type, Expression<?>... exprs) {
+		return new BeanProjection<>(type, true, exprs);
+	}
+
+	/**
+	 * Projections.constructor 대체 (표현식 타입과 맞는 생성자를 찾는다.)
+	 */
+	public static <T> FactoryExpression<T> constructor(Class<? extends T> type, Expression<?>... exprs) {
+		return new ConstructorProjection<>(type, exprs);
+	}
+
+	static class BeanProjection<T> extends FactoryExpressionBase<T> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final boolean fieldAccess;
+		private final List<Expression<?>> args;
+		private final transient Supplier<Object> supplier;
+		private final transient BiConsumer<Object, Object>[] setters;
+
+		@SuppressWarnings("unchecked")
+		BeanProjection(Class<? extends T> type, boolean fieldAccess, Expression<?>... exprs) {
+			super(type);
+			this.fieldAccess = fieldAccess;
+
+			Map<String, Expression<?>> bindings = bindings(exprs);
+			this.args = Collections.unmodifiableList(new ArrayList<>(bindings.values()));
+			Accessors accessors = ACCESSORS.get(type);
+			this.supplier = accessors.supplier();
+			this.setters = new BiConsumer[bindings.size()];
+			int i = 0;
+			for (Map.Entry<String, Expression<?>> entry : bindings.entrySet()) {
+				AccessorKey key = new AccessorKey(type, fieldAccess, entry.getKey(), entry.getValue().getType());
+				setters[i++] = accessors.setters.computeIfAbsent(key, FastProjections::setter);
+			}
+		}
+
+		@Override
+		public List<Expression<?>> getArgs() {
+			return args;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T newInstance(Object... a) {
+			Object bean = supplier.get();
+			for (int i = 0; i < a.length; i++) {
+				if (a[i] != null) {
+					setters[i].accept(bean, a[i]);
+				}
+			}
+			return (T) bean;
+		}
+
+		@Override
+		public <R, C> R accept(Visitor<R, C> v, C context) {
+			return v.visit(this, context);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof BeanProjection)) {
+				return false;
+			}
+			BeanProjection<?> other = (BeanProjection<?>) obj;
+			return getType().equals(other.getType()) && fieldAccess == other.fieldAccess && args.equals(other.args);
+		}
+
+	}
+
+	static class ConstructorProjection<T> extends FactoryExpressionBase<T> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Expression<?>> args;
+		private final transient Function<Object[], Object> constructor;
+
+		ConstructorProjection(Class<? extends T> type, Expression<?>... exprs) {
+			super(type);
+			this.args = Collections.unmodifiableList(Arrays.asList(exprs.clone()));
+
+			Class<?>[] parameterTypes = new Class<?>[exprs.length];
+			for (int i = 0; i < exprs.length; i++) {
+				parameterTypes[i] = exprs[i].getType();
+			}
+			this.constructor = ACCESSORS.get(type).constructors
+					.computeIfAbsent(new AccessorKey(type, false, null, parameterTypes), FastProjections::constructor);
+		}
+
+		@Override
+		public List<Expression<?>> getArgs() {
+			return args;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T newInstance(Object... a) {
+			return (T) constructor.apply(a);
+		}
+
+		@Override
+		public <R, C> R accept(Visitor<R, C> v, C context) {
+			return v.visit(this, context);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof ConstructorProjection)) {
+				return false;
+			}
+			ConstructorProjection<?> other = (ConstructorProjection<?>) obj;
+			return getType().equals(other.getType()) && args.equals(other.args);
+		}
+
+	}
+
+	/**
+	 * QBean과 같은 별칭 규칙으로 프로퍼티 이름 -> 표현식
+	 */
+	private static Map<String, Expression<?>> bindings(Expression<?>... exprs) {
+		Map<String, Expression<?>> bindings = new LinkedHashMap<>(exprs.length);
+		for (Expression<?> expr : exprs) {
+			if (expr instanceof Path) {
+				bindings.put(((Path<?>) expr).getMetadata().getName(), expr);
+			} else if (expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.ALIAS
+					&& ((Operation<?>) expr).getArg(1) instanceof Path) {
+				Operation<?> alias = (Operation<?>) expr;
+				String name = ((Path<?>) alias.getArg(1)).getMetadata().getName();
+				// 중첩 프로젝션은 별칭 없이 그대로 넘긴다.
+				bindings.put(name, alias.getArg(0) instanceof FactoryExpression ? alias.getArg(0) : expr);
+			} else {
+				throw new IllegalArgumentException("Unsupported expression " + expr);
+			}
+		}
+		return bindings;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Supplier<Object> supplier(Class<?> type) {
+		try {
+			MethodHandles.Lookup lookup = lookup(type);
+			MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+			CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+					MethodType.methodType(Object.class), constructor, MethodType.methodType(type));
+			return (Supplier<Object>) site.getTarget().invokeExact();
+		} catch (Throwable e) {
+			throw new ExpressionException("No default constructor for " + type.getName(), e);
+		}
+	}
+
+	private static BiConsumer<Object, Object> setter(AccessorKey key) {
+		try {
+			return key.fieldAccess ? fieldSetter(key) : propertySetter(key);
+		} catch (ExpressionException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new ExpressionException("Cannot access " + key.name + " of " + key.type.getName(), e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> propertySetter(AccessorKey key) throws Throwable {
+		Method writeMethod = null;
+		try {
+			for (PropertyDescriptor property : Introspector.getBeanInfo(key.type).getPropertyDescriptors()) {
+				if (property.getName().equals(key.name)) {
+					writeMethod = property.getWriteMethod();
+				}
+			}
+		} catch (IntrospectionException e) {
+			throw new ExpressionException(e.getMessage(), e);
+		}
+		if (writeMethod == null) {
+			return NO_OP;
+		}
+
+		MethodHandles.Lookup lookup = lookup(key.type);
+		Class<?> valueType = ClassUtils.resolvePrimitiveIfNecessary(writeMethod.getParameterTypes()[0]);
+		CallSite site = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+				MethodType.methodType(void.class, Object.class, Object.class), lookup.unreflect(writeMethod),
+				MethodType.methodType(void.class, key.type, valueType));
+		return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+	}
+
+	private static BiConsumer<Object, Object> fieldSetter(AccessorKey key) throws Throwable {
+		Field field = null;
+		for (Class<?> type = key.type; field == null && type != Object.class; type = type.getSuperclass()) {
+			try {
+				field = type.getDeclaredField(key.name);
+			} catch (NoSuchFieldException e) {
+				// 상위 클래스에서 찾는다.
+			}
+		}
+		if (field == null) {
+			return NO_OP;
+		}
+		if (!ClassUtils.isAssignable(field.getType(), key.valueTypes[0])) {
+			throw new IllegalArgumentException("Type of " + key.name + " (" + field.getType().getName()
+					+ ") does not match expression type " + key.valueTypes[0].getName());
+		}
+
+		// 필드는 LambdaMetafactory로 만들 수 없으므로 MethodHandle을 (Object, Object)void 로 맞춰서 쓴다.
+		MethodHandle setter = lookup(field.getDeclaringClass()).unreflectSetter(field)
+				.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		return (bean, value) -> {
+			try {
+				setter.invokeExact(bean, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new ExpressionException(e.getMessage(), e);
+			}
+		};
+	}
+
+	private static Function<Object[], Object> constructor(AccessorKey key) {
+		Constructor<?> match = null;
+		for (Constructor<?> candidate : key.type.getDeclaredConstructors()) {
+			if (parametersMatch(candidate.getParameterTypes(), key.valueTypes)) {
+				match = candidate;
+				break;
+			}
+		}
+		if (match == null) {
+			throw new ExpressionException("No constructor found for " + key.type + " with parameters: "
+					+ Arrays.toString(key.valueTypes));
+		}
+
+		Class<?>[] parameterTypes = match.getParameterTypes();
+		Object[] defaults = new Object[parameterTypes.length];
+		boolean hasPrimitive = false;
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (parameterTypes[i].isPrimitive()) {
+				// 기본형 파라미터에 null이 오면 기본값을 넣는다.
+				defaults[i] = defaultValue(parameterTypes[i]);
+				hasPrimitive = true;
+			}
+		}
+
+		MethodHandle constructor;
+		try {
+			constructor = lookup(key.type).unreflectConstructor(match)
+					.asSpreader(Object[].class, parameterTypes.length)
+					.asType(MethodType.methodType(Object.class, Object[].class));
+		} catch (IllegalAccessException e) {
+			throw new ExpressionException(e.getMessage(), e);
+		}
+
+		boolean replaceNulls = hasPrimitive;
+		return a -> {
+			Object[] values = a;
+			if (replaceNulls) {
+				for (int i = 0; i < a.length; i++) {
+					if (a[i] == null && defaults[i] != null) {
+						if (values == a) {
+							values = a.clone();
+						}
+						values[i] = defaults[i];
+					}
+				}
+			}
+			try {
+				return constructor.invokeExact(values);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new ExpressionException(e.getMessage(), e);
+			}
+		};
+	}
+
+	private static boolean parametersMatch(Class<?>[] parameterTypes, Class<?>[] valueTypes) {
+		if (parameterTypes.length != valueTypes.length) {
+			return false;
+		}
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (!ClassUtils.isAssignable(parameterTypes[i], valueTypes[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Object defaultValue(Class<?> primitiveType) {
+		return Array.get(Array.newInstance(primitiveType, 1), 0);
+	}
+
+	private static MethodHandles.Lookup lookup(Class<?> type) throws IllegalAccessException {
+		// DTO 클래스 기준 lookup이라 private 생성자, 필드에도 접근할 수 있다.
+		return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+	}
+
+	/**
+	 * DTO 클래스 하나의 생성자, setter, 필드 접근자
+	 */
+	private static final class Accessors {
+
+		private final Class<?> type;
+		private final ConcurrentMap<AccessorKey, BiConsumer<Object, Object>> setters = new ConcurrentHashMap<>();
+		private final ConcurrentMap<AccessorKey, Function<Object[], Object>> constructors = new ConcurrentHashMap<>();
+		private volatile Supplier<Object> supplier;
+
+		private Accessors(Class<?> type) {
+			this.type = type;
+		}
+
+		/**
+		 * 기본 생성자가 없는 DTO도 있으므로(constructor 프로젝션) 처음 쓸 때 만든다.
+		 */
+		Supplier<Object> supplier() {
+			Supplier<Object> result = supplier;
+			if (result == null) {
+				// 동시에 만들어도 같은 생성자를 가리키므로 하나만 남으면 된다.
+				result = FastProjections.supplier(type);
+				supplier = result;
+			}
+			return result;
+		}
+
+	}
+
+	private static final class AccessorKey {
+
+		private final Class<?> type;
+		private final boolean fieldAccess;
+		private final String name;
+		private final Class<?>[] valueTypes;
+
+		private AccessorKey(Class<?> type, boolean fieldAccess, String name, Class<?>... valueTypes) {
+			this.type = type;
+			this.fieldAccess = fieldAccess;
+			this.name = name;
+			this.valueTypes = valueTypes;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof AccessorKey)) {
+				return false;
+			}
+			AccessorKey other = (AccessorKey) obj;
+			return type == other.type && fieldAccess == other.fieldAccess && Objects.equals(name, other.name)
+					&& Arrays.equals(valueTypes, other.valueTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, fieldAccess, name, Arrays.hashCode(valueTypes));
+		}
+
+	}
+
+}
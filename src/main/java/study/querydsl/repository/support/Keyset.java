@@ -0,0 +1,140 @@
+package study.querydsl.repository.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.util.Assert;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQuery;
+
+/**
+ * offset 대신 마지막으로 읽은 키 이후부터 읽어오는 keyset(seek) 페이징
+ *
+ * offset 방식은 page가 뒤로 갈수록 DB가 앞의 row를 모두 읽고 버려야 하지만
+ * keyset 방식은 (정렬키, id) > (마지막 정렬키, 마지막 id) 조건으로 바로 찾아가므로
+ * 몇 번째 페이지든 비용이 일정하다.
+ *
+ * 컨텐츠 쿼리에는 orderBy, offset, limit을 지정하지 않는다. (여기서 붙여준다.)
+ * 정렬키는 null이 아니어야 한다.
+ */
+public class Keyset<T, K extends Comparable<? super K>> {
+
+	private static final String SEPARATOR = ":";
+
+	private final Expression<K> sortKey;
+	private final Function<String, K> sortKeyParser;
+	private final Function<T, K> sortKeyExtractor;
+	private final NumberPath<Long> id;
+	private final Function<T, Long> idExtractor;
+
+	private Keyset(Expression<K> sortKey, Function<String, K> sortKeyParser, Function<T, K> sortKeyExtractor,
+			NumberPath<Long> id, Function<T, Long> idExtractor) {
+		Assert.notNull(id, "Id path must not be null!");
+		Assert.notNull(idExtractor, "Id extractor must not be null!");
+		this.sortKey = sortKey;
+		this.sortKeyParser = sortKeyParser;
+		this.sortKeyExtractor = sortKeyExtractor;
+		this.id = id;
+		this.idExtractor = idExtractor;
+	}
+
+	/**
+	 * id 오름차순으로 seek
+	 */
+	public static <T> Keyset<T, Long> byId(NumberPath<Long> id, Function<T, Long> idExtractor) {
+		return new Keyset<>(null, null, null, id, idExtractor);
+	}
+
+	/**
+	 * (정렬키, id) 오름차순으로 seek
+	 * 정렬키가 같은 row는 id로 순서를 정한다.
+	 */
+	public static <T, K extends Comparable<? super K>> Keyset<T, K> by(Expression<K> sortKey,
+			Function<String, K> sortKeyParser, Function<T, K> sortKeyExtractor,
+			NumberPath<Long> id, Function<T, Long> idExtractor) {
+		Assert.notNull(sortKey, "Sort key must not be null!");
+		Assert.notNull(sortKeyParser, "Sort key parser must not be null!");
+		Assert.notNull(sortKeyExtractor, "Sort key extractor must not be null!");
+		return new Keyset<>(sortKey, sortKeyParser, sortKeyExtractor, id, idExtractor);
+	}
+
+	public KeysetSlice<T> fetch(JPAQuery<T> query, String cursor, int size) {
+		Assert.isTrue(size > 0, "Size must be greater than zero!");
+
+		if (cursor != null && !cursor.isEmpty()) {
+			query.where(seek(cursor));
+		}
+		if (sortKey != null) {
+			query.orderBy(new OrderSpecifier<>(Order.ASC, sortKey));
+		}
+
+		// 다음 페이지가 있는지 알기 위해 한 건 더 가져온다.
+		List<T> rows = query
+				.orderBy(id.asc())
+				.limit(size + 1)
+				.fetch();
+
+		if (rows.size() <= size) {
+			return new KeysetSlice<>(rows, size, null);
+		}
+
+		List<T> content = new ArrayList<>(rows.subList(0, size));
+		return new KeysetSlice<>(content, size, encode(content.get(size - 1)));
+	}
+
+	private Predicate seek(String cursor) {
+		String[] values = decode(cursor);
+		Long lastId = parse(cursor, values[0], Long::valueOf);
+
+		if (sortKey == null) {
+			return id.gt(lastId);
+		}
+
+		Assert.isTrue(values.length == 2, "Invalid cursor: " + cursor);
+		Expression<K> lastKey = Expressions.constant(parse(cursor, values[1], sortKeyParser));
+
+		// sortKey > lastKey or (sortKey = lastKey and id > lastId)
+		return Expressions.predicate(Ops.GT, sortKey, lastKey)
+				.or(Expressions.predicate(Ops.EQ, sortKey, lastKey).and(id.gt(lastId)));
+	}
+
+	private String encode(T last) {
+		String raw = String.valueOf(idExtractor.apply(last));
+		if (sortKey != null) {
+			raw += SEPARATOR + sortKeyExtractor.apply(last);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * 클라이언트가 보낸 값이므로 숫자, 정렬키 형식 오류(NumberFormatException, DateTimeParseException 등)도
+	 * IllegalArgumentException으로 바꿔서 잘못된 요청(400)으로 응답하게 한다.
+	 */
+	private static <V> V parse(String cursor, String value, Function<String, V> parser) {
+		try {
+			return parser.apply(value);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+		}
+	}
+
+	private String[] decode(String cursor) {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			return raw.split(SEPARATOR, 2);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package study.querydsl.repository.support;
+
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * 커서(keyset) 기반 페이징 결과
+ * nextCursor를 그대로 다음 요청의 cursor로 넘기면 된다.
+ */
+@Getter
+public class KeysetSlice<T> {
+	
+	private final List<T> content;
+	private final int size;
+	private final boolean hasNext;
+	private final String nextCursor;
+	
+	public KeysetSlice(List<T> content, int size, String nextCursor) {
+		this.content = content;
+		this.size = size;
+		this.hasNext = nextCursor != null;
+		this.nextCursor = nextCursor;
+	}
+
+}
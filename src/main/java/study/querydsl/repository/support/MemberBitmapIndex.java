@@ -0,0 +1,157 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * MemberSnapshot 행 번호(member id 순서) 위의 bitmap 인덱스
+ *
+ * - 팀별, 나이 구간(AGE_BUCKET_WIDTH살)별, username / username_normalized hashCode 구간별 bitmap
+ * - 조건마다 bitmap을 OR(같은 조건의 여러 값) / AND(조건 사이) 해서 후보 행을 구한다.
+ *   팀 조건과 구간 경계에 맞는 나이 조건만 있으면 후보가 곧 결과이므로 cardinality()가 정확한 count다.
+ *   나머지는 후보 행만 실제 값으로 확인한다.
+ *
+ * 행 번호는 빈틈이 거의 없으므로(삭제된 행만 빈다) 압축하지 않은 java.util.BitSet을 쓴다.
+ * bitmap 하나는 최대 (행 수 / 8) 바이트이고 팀 수만큼 늘어난다.
+ */
+final class MemberBitmapIndex {
+
+	static final int AGE_BUCKET_WIDTH = 10;
+	// 0 ~ 9살, 10 ~ 19살, ... 150살 이상 (음수는 첫 구간)
+	static final int AGE_BUCKETS = 16;
+	static final int USERNAME_BUCKETS = 64;
+
+	private final BitSet live = new BitSet();
+	private final List<BitSet> teams = new ArrayList<>();
+	private final BitSet[] ages = newBitSets(AGE_BUCKETS);
+	private final BitSet[] usernames = newBitSets(USERNAME_BUCKETS);
+	private final BitSet[] normalizedUsernames = newBitSets(USERNAME_BUCKETS);
+
+	void add(int row, int team, int age, int usernameHash, int normalizedHash) {
+		set(row, team, age, usernameHash, normalizedHash, true);
+	}
+
+	void remove(int row, int team, int age, int usernameHash, int normalizedHash) {
+		set(row, team, age, usernameHash, normalizedHash, false);
+	}
+
+	/**
+	 * row 자리에 빈 행을 끼워 넣는다. (row 이후 행 번호가 1씩 밀린다.)
+	 */
+	void insert(int row) {
+		shift(live, row);
+		for (BitSet team : teams) {
+			shift(team, row);
+		}
+		for (BitSet bitSet : ages) {
+			shift(bitSet, row);
+		}
+		for (BitSet bitSet : usernames) {
+			shift(bitSet, row);
+		}
+		for (BitSet bitSet : normalizedUsernames) {
+			shift(bitSet, row);
+		}
+	}
+
+	boolean isLive(int row) {
+		return live.get(row);
+	}
+
+	/**
+	 * @param teamMatches 팀 번호별 일치 여부 (팀 조건이 없으면 null)
+	 * @param ageGoe 나이 하한 (없으면 Integer.MIN_VALUE)
+	 * @param ageLoe 나이 상한 (없으면 Integer.MAX_VALUE)
+	 * @param usernameHash username 등호 조건의 hashCode (없으면 null)
+	 * @param normalizedHash usernameIgnoreCase 조건의 hashCode (없으면 null)
+	 * @return 후보 행 (새 BitSet)
+	 */
+	BitSet candidates(boolean[] teamMatches, int ageGoe, int ageLoe, Integer usernameHash,
+			Integer normalizedHash) {
+		BitSet rows = (BitSet) live.clone();
+		if (usernameHash != null) {
+			rows.and(usernames[usernameBucket(usernameHash)]);
+		}
+		if (normalizedHash != null) {
+			rows.and(normalizedUsernames[usernameBucket(normalizedHash)]);
+		}
+		if (teamMatches != null) {
+			BitSet teamRows = new BitSet();
+			for (int team = 0; team < teamMatches.length && team < teams.size(); team++) {
+				if (teamMatches[team]) {
+					teamRows.or(teams.get(team));
+				}
+			}
+			rows.and(teamRows);
+		}
+		if (ageGoe != Integer.MIN_VALUE || ageLoe != Integer.MAX_VALUE) {
+			if (ageGoe > ageLoe) {
+				return new BitSet();
+			}
+			BitSet ageRows = new BitSet();
+			for (int bucket = ageBucket(ageGoe); bucket <= ageBucket(ageLoe); bucket++) {
+				ageRows.or(ages[bucket]);
+			}
+			rows.and(ageRows);
+		}
+		return rows;
+	}
+
+	/**
+	 * @return 나이 조건이 구간 경계와 맞아서 bitmap만으로 정확한지
+	 */
+	static boolean isAgeExact(int ageGoe, int ageLoe) {
+		int last = (AGE_BUCKETS - 1) * AGE_BUCKET_WIDTH;
+		boolean goeExact = ageGoe == Integer.MIN_VALUE
+				|| (ageGoe > 0 && ageGoe <= last && ageGoe % AGE_BUCKET_WIDTH == 0);
+		boolean loeExact = ageLoe == Integer.MAX_VALUE
+				|| (ageLoe >= 0 && ageLoe < last && (ageLoe + 1) % AGE_BUCKET_WIDTH == 0);
+		return goeExact && loeExact;
+	}
+
+	private void set(int row, int team, int age, int usernameHash, int normalizedHash, boolean value) {
+		live.set(row, value);
+		if (team >= 0) {
+			while (teams.size() <= team) {
+				teams.add(new BitSet());
+			}
+			teams.get(team).set(row, value);
+		}
+		ages[ageBucket(age)].set(row, value);
+		usernames[usernameBucket(usernameHash)].set(row, value);
+		normalizedUsernames[usernameBucket(normalizedHash)].set(row, value);
+	}
+
+	private static void shift(BitSet bitSet, int from) {
+		int length = bitSet.length();
+		if (length <= from) {
+			return;
+		}
+		BitSet tail = bitSet.get(from, length);
+		bitSet.clear(from, length);
+		for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+			bitSet.set(from + 1 + i);
+		}
+	}
+
+	private static int ageBucket(int age) {
+		if (age < 0) {
+			return 0;
+		}
+		return Math.min(age / AGE_BUCKET_WIDTH, AGE_BUCKETS - 1);
+	}
+
+	private static int usernameBucket(int hash) {
+		return (hash ^ (hash >>> 16)) & (USERNAME_BUCKETS - 1);
+	}
+
+	private static BitSet[] newBitSets(int size) {
+		BitSet[] bitSets = new BitSet[size];
+		for (int i = 0; i < size; i++) {
+			bitSets[i] = new BitSet();
+		}
+		return bitSets;
+	}
+
+}
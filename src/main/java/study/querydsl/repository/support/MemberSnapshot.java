@@ -0,0 +1,629 @@
+package study.querydsl.repository.support;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberUsernameGram;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.listener.MemberTeamBulkInsertedEvent;
+import study.querydsl.entity.listener.MemberTeamChangedEvent;
+import study.querydsl.entity.listener.MemberTeamChangedEvent.Type;
+
+/**
+ * 검색(MemberRepositoryCustom.search)용 메모리 컬럼 스냅샷 (querydsl.snapshot.enabled=true 일 때)
+ *
+ * 회원을 member id 순서의 배열(컬럼)로 들고 있다가 MemberSearchCondition을 배열 루프로 바로 평가한다.
+ * - age는 int[], 팀은 팀 사전(team id, 이름)의 번호(int[])로 둔다. 팀 이름 변경은 사전 한 칸만 바꾼다.
+ * - username_normalized가 username과 같으면 같은 String을 가리킨다.
+ * - 행마다 객체를 만들지 않는다. 결과 MemberTeamDto만 만든다.
+ * - 팀, 나이 구간, username hashCode 구간별 bitmap(MemberBitmapIndex)으로 후보 행을 먼저 좁힌다.
+ *   searchPageComplex는 bitmap으로 정확한 count와 페이지의 member id만 구하고 행은 DB에서 읽는다. (page())
+ *
+ * 변경은 MemberTeamChangedEvent를 트랜잭션별로 모아 두었다가 커밋된 뒤에만 반영한다. (롤백되면 버린다.)
+ * 다음 경우에는 fallback(DB 조회)을 쓴다.
+ * - 아직 읽어오지 않았거나, 반영할 수 없는 변경(모르는 팀)이나 invalidate()로 버려졌을 때
+ * - 마지막으로 읽어온 지 max-age가 지났을 때 (엔티티 리스너를 타지 않는 변경 대비)
+ * - Member, Team을 바꾼 트랜잭션 안일 때 (커밋 전 변경을 보여야 하므로)
+ * - usernameContains가 3글자보다 짧을 때 (DB 쪽 검증 오류를 그대로 낸다.)
+ * 버려지거나 오래되면 백그라운드에서 다시 읽어온다.
+ */
+@Slf4j
+@Component
+public class MemberSnapshot {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final long maxAgeNanos;
+	private final ThreadPoolExecutor reloadExecutor;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final AtomicBoolean reloading = new AtomicBoolean();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong fallbackCount = new AtomicLong();
+
+	private volatile boolean enabled;
+
+	// lock으로 보호
+	private Columns columns;
+	private long loadedAt;
+	// 읽어오는 동안 커밋된 변경 (읽어온 뒤 다시 반영한다.)
+	private List<Change> replay;
+
+	public MemberSnapshot(JdbcTemplate jdbcTemplate,
+			@Value("${querydsl.snapshot.enabled:false}") boolean enabled,
+			@Value("${querydsl.snapshot.max-age:10m}") Duration maxAge) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.enabled = enabled;
+		this.maxAgeNanos = maxAge.toNanos();
+		this.reloadExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(1), new CustomizableThreadFactory("member-snapshot-"),
+				new ThreadPoolExecutor.DiscardPolicy());
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		// 꺼져 있는 동안의 변경은 반영하지 않았으므로 켤 때도 다시 읽는다.
+		invalidate();
+	}
+
+	/**
+	 * @param fallback 스냅샷으로 답할 수 없을 때 실행할 DB 조회
+	 */
+	public List<MemberTeamDto> search(MemberSearchCondition condition, Supplier<List<MemberTeamDto>> fallback) {
+		List<MemberTeamDto> result = read(condition, columns -> columns.search(condition));
+		return result != null ? result : fallback.get();
+	}
+
+	/**
+	 * bitmap 인덱스로 검색 결과의 전체 건수(정확한 값)와 한 페이지의 member id를 구한다.
+	 * 행 데이터는 호출하는 쪽에서 id로 DB에서 읽는다.
+	 *
+	 * @return 스냅샷으로 답할 수 없으면 null
+	 */
+	public IdPage page(MemberSearchCondition condition, long offset, int limit) {
+		return read(condition, columns -> columns.page(condition, offset, limit));
+	}
+
+	private <T> T read(MemberSearchCondition condition, Function<Columns, T> reader) {
+		if (!enabled || isWriteTransaction() || tooShortContains(condition)) {
+			return null;
+		}
+
+		lock.readLock().lock();
+		try {
+			if (columns != null && System.nanoTime() - loadedAt < maxAgeNanos) {
+				hitCount.incrementAndGet();
+				return reader.apply(columns);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		fallbackCount.incrementAndGet();
+		reloadAsync();
+		return null;
+	}
+
+	/**
+	 * member, team 을 모두 읽어서 스냅샷을 새로 만든다.
+	 *
+	 * @return 읽어온 Member 수
+	 */
+	public synchronized long reload() {
+		lock.writeLock().lock();
+		try {
+			replay = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		Columns loaded = new Columns();
+		try {
+			jdbcTemplate.query("select team_id, name from team order by team_id",
+					rs -> {
+						loaded.putTeam(rs.getLong(1), rs.getString(2));
+					});
+			// 팀을 읽은 뒤에 저장된 팀도 있을 수 있으므로 팀 이름을 같이 읽는다.
+			jdbcTemplate.query("select m.member_id, m.username, m.username_normalized, m.age, m.team_id, t.name"
+					+ " from member m left join team t on t.team_id = m.team_id order by m.member_id",
+					rs -> {
+						Long teamId = rs.getLong(5);
+						if (rs.wasNull()) {
+							teamId = null;
+						} else if (!loaded.teamCodes.containsKey(teamId)) {
+							loaded.putTeam(teamId, rs.getString(6));
+						}
+						loaded.put(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4), teamId);
+					});
+		} catch (RuntimeException e) {
+			lock.writeLock().lock();
+			try {
+				replay = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+			throw e;
+		}
+
+		lock.writeLock().lock();
+		try {
+			boolean applied = loaded.applyAll(replay);
+			replay = null;
+			columns = applied && enabled ? loaded : null;
+			loadedAt = System.nanoTime();
+			return applied ? loaded.size : 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 스냅샷을 버린다. 다음 검색부터 DB로 조회하면서 백그라운드에서 다시 읽어온다.
+	 * (엔티티 리스너를 타지 않는 벌크 변경 후 호출한다.)
+	 */
+	public void invalidate() {
+		lock.writeLock().lock();
+		try {
+			columns = null;
+			if (replay != null) {
+				// 읽어오는 중인 스냅샷도 믿을 수 없다.
+				replay.add(Change.INVALID);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public boolean isReady() {
+		lock.readLock().lock();
+		try {
+			return columns != null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getFallbackCount() {
+		return fallbackCount.get();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		if (enabled) {
+			reloadAsync();
+		}
+	}
+
+	@EventListener
+	public void onMemberTeamChanged(MemberTeamChangedEvent event) {
+		if (!enabled) {
+			return;
+		}
+		Change change = Change.of(event);
+		if (change == null) {
+			return;
+		}
+		changed(change);
+	}
+
+	/**
+	 * 엔티티 리스너를 거치지 않은 대량 저장은 행 단위로 반영하지 않고 커밋된 뒤 스냅샷을 버린다. (다시 읽어온다.)
+	 */
+	@EventListener
+	public void onBulkInserted(MemberTeamBulkInsertedEvent event) {
+		if (!enabled) {
+			return;
+		}
+		changed(Change.INVALID);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		reloadExecutor.shutdownNow();
+	}
+
+	private void changed(Change change) {
+		List<Change> pending = TransactionScopedInvalidation.onCompletion(this, ArrayList::new, (changes, status) -> {
+			// 커밋에만, 트랜잭션에서 모은 변경을 한 번에 반영한다.
+			if (status == TransactionSynchronization.STATUS_COMMITTED) {
+				apply(changes);
+			}
+		});
+		if (pending == null) {
+			apply(List.of(change));
+			return;
+		}
+		pending.add(change);
+	}
+
+	private void apply(List<Change> changes) {
+		boolean applied;
+		lock.writeLock().lock();
+		try {
+			if (replay != null) {
+				replay.addAll(changes);
+			}
+			if (columns == null) {
+				return;
+			}
+			applied = columns.applyAll(changes);
+			if (!applied) {
+				columns = null;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		if (!applied) {
+			log.info("member snapshot: change cannot be applied, reloading");
+			reloadAsync();
+		}
+	}
+
+	private void reloadAsync() {
+		if (!reloading.compareAndSet(false, true)) {
+			return;
+		}
+		reloadExecutor.execute(() -> {
+			try {
+				long count = reload();
+				log.info("member snapshot: loaded {} members", count);
+			} catch (RuntimeException e) {
+				log.warn("member snapshot: reload failed", e);
+			} finally {
+				reloading.set(false);
+			}
+		});
+	}
+
+	private boolean isWriteTransaction() {
+		return TransactionSynchronizationManager.hasResource(this);
+	}
+
+	private static boolean tooShortContains(MemberSearchCondition condition) {
+		return hasText(condition.getUsernameContains())
+				&& MemberUsernameGram.normalize(condition.getUsernameContains()).length()
+						< MemberUsernameGram.GRAM_LENGTH;
+	}
+
+	/**
+	 * 커밋된 Member, Team 변경 (이벤트 시점의 값)
+	 */
+	private static final class Change {
+
+		static final Change INVALID = new Change(false, null, 0, null, null, 0, null);
+
+		final boolean team;
+		final Type type;
+		final long id;
+		final String name;
+		final String normalized;
+		final int age;
+		final Long teamId;
+
+		Change(boolean team, Type type, long id, String name, String normalized, int age, Long teamId) {
+			this.team = team;
+			this.type = type;
+			this.id = id;
+			this.name = name;
+			this.normalized = normalized;
+			this.age = age;
+			this.teamId = teamId;
+		}
+
+		static Change of(MemberTeamChangedEvent event) {
+			if (event.getEntity() instanceof Member) {
+				Member member = (Member) event.getEntity();
+				// 지연 로딩 프록시여도 id는 초기화 없이 읽는다.
+				Long teamId = member.getTeam() == null ? null : member.getTeam().getId();
+				return new Change(false, event.getType(), member.getId(), member.getUsername(),
+						member.getUsernameNormalized(), member.getAge(), teamId);
+			}
+			if (event.getEntity() instanceof Team) {
+				Team team = (Team) event.getEntity();
+				return new Change(true, event.getType(), team.getId(), team.getName(), null, 0, null);
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * member id 순서로 정렬된 컬럼 배열과 팀 사전
+	 */
+	private static final class Columns {
+
+		private static final int NO_TEAM = -1;
+
+		long[] ids = new long[1024];
+		int[] ages = new int[1024];
+		int[] teams = new int[1024];
+		String[] usernames = new String[1024];
+		String[] normalized = new String[1024];
+		int[] usernameHashes = new int[1024];
+		int[] normalizedHashes = new int[1024];
+		int size;
+		// 삭제된 행은 bitmap에서만 뺀다.
+		final MemberBitmapIndex bitmaps = new MemberBitmapIndex();
+
+		long[] teamIds = new long[64];
+		String[] teamNames = new String[64];
+		int teamCount;
+		final Map<Long, Integer> teamCodes = new HashMap<>();
+
+		List<MemberTeamDto> search(MemberSearchCondition condition) {
+			Filter filter = new Filter(condition, this);
+			BitSet rows = candidates(filter);
+			List<MemberTeamDto> result = new ArrayList<>();
+			for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+				if (filter.exact || matches(filter, i)) {
+					result.add(dto(i));
+				}
+			}
+			return result;
+		}
+
+		IdPage page(MemberSearchCondition condition, long offset, int limit) {
+			Filter filter = new Filter(condition, this);
+			BitSet rows = candidates(filter);
+			List<Long> pageIds = new ArrayList<>(limit);
+			long total = 0;
+			for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+				if (filter.exact || matches(filter, i)) {
+					if (total >= offset && pageIds.size() < limit) {
+						pageIds.add(ids[i]);
+					}
+					total++;
+					// 후보가 곧 결과이면 나머지는 셀 필요가 없다.
+					if (filter.exact && pageIds.size() == limit) {
+						total = rows.cardinality();
+						break;
+					}
+				}
+			}
+			return new IdPage(total, pageIds);
+		}
+
+		private BitSet candidates(Filter filter) {
+			return bitmaps.candidates(filter.teamMatches, filter.ageGoe, filter.ageLoe,
+					filter.username != null ? filter.username.hashCode() : null,
+					filter.ignoreCase != null ? filter.ignoreCase.hashCode() : null);
+		}
+
+		private boolean matches(Filter filter, int i) {
+			int age = ages[i];
+			if (age < filter.ageGoe || age > filter.ageLoe) {
+				return false;
+			}
+			if (filter.username != null && !filter.username.equals(usernames[i])) {
+				return false;
+			}
+			String name = normalized[i];
+			if (filter.ignoreCase != null && !filter.ignoreCase.equals(name)) {
+				return false;
+			}
+			return (filter.prefix == null || (name != null && name.startsWith(filter.prefix)))
+					&& (filter.contains == null || (name != null && name.contains(filter.contains)));
+		}
+
+		private MemberTeamDto dto(int i) {
+			int team = teams[i];
+			return new MemberTeamDto(ids[i], usernames[i], ages[i],
+					team == NO_TEAM ? null : teamIds[team],
+					team == NO_TEAM ? null : teamNames[team]);
+		}
+
+		/**
+		 * @return 팀 번호별 이름 일치 여부
+		 */
+		boolean[] teamsNamed(String teamName) {
+			boolean[] matches = new boolean[teamCount];
+			for (int t = 0; t < teamCount; t++) {
+				matches[t] = teamName.equals(teamNames[t]);
+			}
+			return matches;
+		}
+
+		void putTeam(long teamId, String name) {
+			Integer code = teamCodes.get(teamId);
+			if (code != null) {
+				teamNames[code] = name;
+				return;
+			}
+			if (teamCount == teamIds.length) {
+				teamIds = Arrays.copyOf(teamIds, teamCount * 2);
+				teamNames = Arrays.copyOf(teamNames, teamCount * 2);
+			}
+			teamIds[teamCount] = teamId;
+			teamNames[teamCount] = name;
+			teamCodes.put(teamId, teamCount++);
+		}
+
+		/**
+		 * 마지막 id보다 작은 새 id(id를 먼저 받은 트랜잭션이 나중에 커밋된 경우)는 id 순서 자리에 끼워 넣는다.
+		 *
+		 * @return 반영하지 못하면 false (모르는 팀)
+		 */
+		boolean put(long id, String username, String usernameNormalized, int age, Long teamId) {
+			int team = NO_TEAM;
+			if (teamId != null) {
+				Integer code = teamCodes.get(teamId);
+				if (code == null) {
+					return false;
+				}
+				team = code;
+			}
+
+			int row = Arrays.binarySearch(ids, 0, size, id);
+			if (row < 0) {
+				row = -row - 1;
+				if (size == ids.length) {
+					grow();
+				}
+				if (row < size) {
+					insertAt(row);
+				}
+				size++;
+				ids[row] = id;
+			} else if (bitmaps.isLive(row)) {
+				bitmaps.remove(row, teams[row], ages[row], usernameHashes[row], normalizedHashes[row]);
+			}
+			ages[row] = age;
+			teams[row] = team;
+			usernames[row] = username;
+			if (usernameNormalized == null) {
+				usernameNormalized = MemberUsernameGram.normalize(username);
+			}
+			// 대부분 같은 문자열이므로 따로 들고 있지 않는다.
+			normalized[row] = usernameNormalized == null || usernameNormalized.equals(username)
+					? username
+					: usernameNormalized;
+			usernameHashes[row] = username == null ? 0 : username.hashCode();
+			normalizedHashes[row] = usernameNormalized == null ? 0 : usernameNormalized.hashCode();
+			bitmaps.add(row, team, age, usernameHashes[row], normalizedHashes[row]);
+			return true;
+		}
+
+		boolean applyAll(List<Change> changes) {
+			for (Change change : changes) {
+				if (!apply(change)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean apply(Change change) {
+			if (change == Change.INVALID) {
+				return false;
+			}
+			if (change.team) {
+				// 회원이 있는 팀은 지울 수 없으므로(FK) 삭제는 사전에 남겨둔다.
+				if (change.type != Type.REMOVE) {
+					putTeam(change.id, change.name);
+				}
+				return true;
+			}
+			if (change.type == Type.REMOVE) {
+				int row = Arrays.binarySearch(ids, 0, size, change.id);
+				if (row >= 0 && bitmaps.isLive(row)) {
+					bitmaps.remove(row, teams[row], ages[row], usernameHashes[row], normalizedHashes[row]);
+				}
+				return true;
+			}
+			return put(change.id, change.name, change.normalized, change.age, change.teamId);
+		}
+
+		/**
+		 * row 이후 행을 한 칸씩 뒤로 민다. (뒤쪽 행만 옮기므로 다시 읽어오는 것보다 훨씬 싸다.)
+		 */
+		private void insertAt(int row) {
+			int moved = size - row;
+			System.arraycopy(ids, row, ids, row + 1, moved);
+			System.arraycopy(ages, row, ages, row + 1, moved);
+			System.arraycopy(teams, row, teams, row + 1, moved);
+			System.arraycopy(usernames, row, usernames, row + 1, moved);
+			System.arraycopy(normalized, row, normalized, row + 1, moved);
+			System.arraycopy(usernameHashes, row, usernameHashes, row + 1, moved);
+			System.arraycopy(normalizedHashes, row, normalizedHashes, row + 1, moved);
+			bitmaps.insert(row);
+		}
+
+		private void grow() {
+			int capacity = size + (size >> 1);
+			ids = Arrays.copyOf(ids, capacity);
+			ages = Arrays.copyOf(ages, capacity);
+			teams = Arrays.copyOf(teams, capacity);
+			usernames = Arrays.copyOf(usernames, capacity);
+			normalized = Arrays.copyOf(normalized, capacity);
+			usernameHashes = Arrays.copyOf(usernameHashes, capacity);
+			normalizedHashes = Arrays.copyOf(normalizedHashes, capacity);
+		}
+
+	}
+
+	/**
+	 * 검색 조건 (검색마다 한 번 만든다.)
+	 */
+	private static final class Filter {
+
+		final String username;
+		final boolean[] teamMatches;
+		final int ageGoe;
+		final int ageLoe;
+		final String ignoreCase;
+		final String prefix;
+		final String contains;
+		// bitmap 후보가 곧 결과인지 (행마다 확인하지 않는다.)
+		final boolean exact;
+
+		Filter(MemberSearchCondition condition, Columns columns) {
+			username = hasText(condition.getUsername()) ? condition.getUsername() : null;
+			teamMatches = hasText(condition.getTeamName()) ? columns.teamsNamed(condition.getTeamName()) : null;
+			ageGoe = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+			ageLoe = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+			ignoreCase = normalizedOrNull(condition.getUsernameIgnoreCase());
+			prefix = normalizedOrNull(condition.getUsernameStartsWith());
+			contains = normalizedOrNull(condition.getUsernameContains());
+			exact = username == null && ignoreCase == null && prefix == null && contains == null
+					&& MemberBitmapIndex.isAgeExact(ageGoe, ageLoe);
+		}
+
+		private static String normalizedOrNull(String value) {
+			return hasText(value) ? MemberUsernameGram.normalize(value) : null;
+		}
+
+	}
+
+	/**
+	 * 검색 결과 중 한 페이지의 member id와 전체 건수
+	 */
+	@Getter
+	@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+	public static class IdPage {
+
+		private final long total;
+		private final List<Long> ids;
+
+	}
+
+}
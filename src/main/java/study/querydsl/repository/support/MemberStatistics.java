@@ -0,0 +1,382 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.listener.MemberTeamBulkInsertedEvent;
+
+/**
+ * Member 통계 (CountStrategy.ESTIMATED 에서 사용)
+ *
+ * member.age 히스토그램, 팀별 인원 수, username 종류 수를 모아두고
+ * 조건마다 선택도를 곱해서(조건끼리 독립이라고 가정) 결과 건수를 추정한다.
+ *
+ * - 통계는 querydsl.statistics.ttl 마다 group by 쿼리 몇 개로 다시 만든다. (변경마다 갱신하지 않는다.)
+ *   대량 저장(MemberTeamBulkInsertedEvent)이 커밋되면 버리고 다시 만든다.
+ *   다시 만드는 쿼리는 전체 테이블을 읽으므로 요청 스레드가 아닌 백그라운드에서 읽기 전용 트랜잭션으로 실행하고
+ *   그동안은 이전 통계로 추정한다. 아직 통계가 없으면 추정하지 않는다. (PageCounter는 CAPPED로 센다.)
+ * - 추정할 수 있는 조건: member.age 비교(=, >=, >, <=, <, between), team.name =, team.id =/in, member.username =
+ *   그 밖의 조건, inner join, 컬렉션 join, group by가 있으면 추정하지 않는다. (OptionalLong.empty())
+ */
+@Slf4j
+@Component
+public class MemberStatistics {
+
+	private final EntityManager em;
+	private final Duration ttl;
+	private final TransactionTemplate readOnly;
+	private final ThreadPoolExecutor refreshExecutor;
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private volatile Snapshot snapshot;
+
+	public MemberStatistics(EntityManager em, PlatformTransactionManager transactionManager,
+			@Value("${querydsl.statistics.ttl:5m}") Duration ttl) {
+		this.em = em;
+		this.ttl = ttl;
+		this.readOnly = new TransactionTemplate(transactionManager);
+		this.readOnly.setReadOnly(true);
+		this.refreshExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(1), new CustomizableThreadFactory("member-statistics-"),
+				new ThreadPoolExecutor.DiscardPolicy());
+	}
+
+	/**
+	 * @return Member를 루트로 하는 쿼리의 결과 건수 추정치 (추정할 수 없으면 empty)
+	 */
+	public OptionalLong estimate(QueryMetadata metadata) {
+		List<JoinExpression> joins = metadata.getJoins();
+		if (joins.isEmpty() || joins.get(0).getTarget().getType() != Member.class
+				|| !metadata.getGroupBy().isEmpty() || metadata.getHaving() != null
+				|| (metadata.isDistinct() && !joins.get(0).getTarget().equals(metadata.getProjection()))) {
+			return OptionalLong.empty();
+		}
+		// left join to-one만 row 수를 바꾸지 않는다.
+		for (JoinExpression join : joins.subList(1, joins.size())) {
+			if (join.getType() != JoinType.LEFTJOIN || join.getCondition() != null || isCollectionJoin(join)) {
+				return OptionalLong.empty();
+			}
+		}
+
+		Selectivity selectivity = new Selectivity();
+		List<Expression<?>> conditions = new ArrayList<>();
+		flattenAnd(metadata.getWhere(), conditions);
+		for (Expression<?> condition : conditions) {
+			if (!selectivity.add(condition)) {
+				return OptionalLong.empty();
+			}
+		}
+
+		Snapshot current = snapshot;
+		if (current == null || current.isExpired(ttl)) {
+			refreshAsync();
+		}
+		return current != null ? OptionalLong.of(selectivity.estimate(current)) : OptionalLong.empty();
+	}
+
+	/**
+	 * 통계를 호출한 스레드에서 바로 다시 만든다.
+	 */
+	public synchronized void refresh() {
+		snapshot = load();
+	}
+
+	/**
+	 * 통계를 버린다. 다음 추정 요청부터 백그라운드에서 다시 만든다.
+	 */
+	public void invalidate() {
+		snapshot = null;
+	}
+
+	/**
+	 * 대량 저장은 분포를 크게 바꿀 수 있으므로 커밋된 뒤 통계를 버린다.
+	 */
+	@EventListener
+	public void onBulkInserted(MemberTeamBulkInsertedEvent event) {
+		boolean registered = TransactionScopedInvalidation.onCompletion(this, status -> {
+			// 커밋에만
+			if (status == TransactionSynchronization.STATUS_COMMITTED) {
+				invalidate();
+			}
+		});
+		if (!registered) {
+			invalidate();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		refreshExecutor.shutdownNow();
+	}
+
+	private void refreshAsync() {
+		if (!refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		refreshExecutor.execute(() -> {
+			try {
+				readOnly.executeWithoutResult(status -> refresh());
+			} catch (RuntimeException e) {
+				log.warn("member statistics: refresh failed", e);
+			} finally {
+				refreshing.set(false);
+			}
+		});
+	}
+
+	private Snapshot load() {
+		NavigableMap<Integer, Long> ages = new TreeMap<>();
+		for (Object[] row : em.createQuery(
+				"select m.age, count(m) from Member m group by m.age", Object[].class).getResultList()) {
+			ages.put((Integer) row[0], (Long) row[1]);
+		}
+
+		Map<Long, Long> teamSizes = new HashMap<>();
+		for (Object[] row : em.createQuery(
+				"select m.team.id, count(m) from Member m where m.team is not null group by m.team.id", Object[].class)
+				.getResultList()) {
+			teamSizes.put((Long) row[0], (Long) row[1]);
+		}
+
+		Map<String, List<Long>> teamIds = new HashMap<>();
+		for (Object[] row : em.createQuery("select t.id, t.name from Team t", Object[].class).getResultList()) {
+			teamIds.computeIfAbsent((String) row[1], name -> new ArrayList<>()).add((Long) row[0]);
+		}
+
+		Long usernames = em.createQuery("select count(distinct m.username) from Member m", Long.class)
+				.getSingleResult();
+		return new Snapshot(ages, teamSizes, teamIds, usernames != null ? usernames : 0, System.nanoTime());
+	}
+
+	private static boolean isCollectionJoin(JoinExpression join) {
+		Expression<?> target = join.getTarget();
+		return target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS
+				&& ((Operation<?>) target).getArg(0) instanceof CollectionExpression;
+	}
+
+	private static void flattenAnd(Expression<?> expr, List<Expression<?>> conditions) {
+		if (expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.AND) {
+			for (Expression<?> arg : ((Operation<?>) expr).getArgs()) {
+				flattenAnd(arg, conditions);
+			}
+		} else if (expr != null) {
+			conditions.add(expr);
+		}
+	}
+
+	/**
+	 * 조건 하나하나를 age 범위, 팀 id 집합, username 일치 여부로 모은다.
+	 */
+	private static class Selectivity {
+
+		int minAge = Integer.MIN_VALUE;
+		int maxAge = Integer.MAX_VALUE;
+		Set<Long> teamIds;
+		Set<String> teamNames;
+		boolean usernameEq;
+
+		boolean add(Expression<?> condition) {
+			if (!(condition instanceof Operation)) {
+				return false;
+			}
+			Operation<?> operation = (Operation<?>) condition;
+			if (operation.getArgs().isEmpty() || !(operation.getArg(0) instanceof Path)) {
+				return false;
+			}
+			Path<?> path = (Path<?>) operation.getArg(0);
+			Path<?> parent = path.getMetadata().getParent();
+			if (parent == null) {
+				return false;
+			}
+			String name = path.getMetadata().getName();
+			List<Object> values = constants(operation);
+			if (values == null) {
+				return false;
+			}
+
+			if (parent.getType() == Member.class && "age".equals(name)) {
+				return addAge(operation.getOperator(), values);
+			}
+			if (parent.getType() == Member.class && ("username".equals(name) || "usernameNormalized".equals(name))) {
+				usernameEq = operation.getOperator() == Ops.EQ;
+				return usernameEq;
+			}
+			if (parent.getType() == Team.class && "name".equals(name) && operation.getOperator() == Ops.EQ) {
+				teamNames = retain(teamNames, values.get(0));
+				return true;
+			}
+			if (parent.getType() == Team.class && "id".equals(name)
+					&& (operation.getOperator() == Ops.EQ || operation.getOperator() == Ops.IN)) {
+				Set<Long> ids = new HashSet<>();
+				for (Object value : values) {
+					ids.add(((Number) value).longValue());
+				}
+				teamIds = teamIds == null ? ids : retainAll(teamIds, ids);
+				return true;
+			}
+			return false;
+		}
+
+		private boolean addAge(Operator operator, List<Object> values) {
+			if (!(operator instanceof Ops)) {
+				return false;
+			}
+			int value = ((Number) values.get(0)).intValue();
+			switch ((Ops) operator) {
+			case EQ:
+				minAge = Math.max(minAge, value);
+				maxAge = Math.min(maxAge, value);
+				return true;
+			case GOE:
+				minAge = Math.max(minAge, value);
+				return true;
+			case GT:
+				minAge = Math.max(minAge, value + 1);
+				return true;
+			case LOE:
+				maxAge = Math.min(maxAge, value);
+				return true;
+			case LT:
+				maxAge = Math.min(maxAge, value - 1);
+				return true;
+			case BETWEEN:
+				minAge = Math.max(minAge, value);
+				maxAge = Math.min(maxAge, ((Number) values.get(1)).intValue());
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		long estimate(Snapshot snapshot) {
+			if (snapshot.total == 0 || minAge > maxAge) {
+				return 0;
+			}
+			double rows = 0;
+			for (long count : snapshot.ages.subMap(minAge, true, maxAge, true).values()) {
+				rows += count;
+			}
+			if (teamIds != null || teamNames != null) {
+				rows *= (double) teamSize(snapshot) / snapshot.total;
+			}
+			if (usernameEq) {
+				rows /= Math.max(1, snapshot.usernames);
+			}
+			return Math.round(rows);
+		}
+
+		private long teamSize(Snapshot snapshot) {
+			Set<Long> ids = teamIds;
+			if (teamNames != null) {
+				Set<Long> named = new HashSet<>();
+				for (String teamName : teamNames) {
+					named.addAll(snapshot.teamIds.getOrDefault(teamName, Collections.emptyList()));
+				}
+				ids = ids == null ? named : retainAll(ids, named);
+			}
+			long size = 0;
+			for (Long id : ids) {
+				size += snapshot.teamSizes.getOrDefault(id, 0L);
+			}
+			return size;
+		}
+
+		private static Set<String> retain(Set<String> names, Object value) {
+			Set<String> result = new HashSet<>();
+			if (names == null || names.contains(value)) {
+				result.add((String) value);
+			}
+			return result;
+		}
+
+		private static Set<Long> retainAll(Set<Long> ids, Set<Long> other) {
+			Set<Long> result = new HashSet<>(ids);
+			result.retainAll(other);
+			return result;
+		}
+
+		/**
+		 * @return 첫 번째 인자(경로) 뒤의 상수 값들 (상수가 아니면 null)
+		 */
+		private static List<Object> constants(Operation<?> operation) {
+			List<Object> values = new ArrayList<>();
+			for (Expression<?> arg : operation.getArgs().subList(1, operation.getArgs().size())) {
+				if (!(arg instanceof Constant)) {
+					return null;
+				}
+				Object value = ((Constant<?>) arg).getConstant();
+				if (value instanceof Collection) {
+					values.addAll((Collection<?>) value);
+				} else if (value != null) {
+					values.add(value);
+				}
+			}
+			return values.isEmpty() ? null : values;
+		}
+
+	}
+
+	private static class Snapshot {
+
+		final NavigableMap<Integer, Long> ages;
+		final Map<Long, Long> teamSizes;
+		final Map<String, List<Long>> teamIds;
+		final long usernames;
+		final long total;
+		final long loadedAt;
+
+		Snapshot(NavigableMap<Integer, Long> ages, Map<Long, Long> teamSizes, Map<String, List<Long>> teamIds,
+				long usernames, long loadedAt) {
+			this.ages = ages;
+			this.teamSizes = teamSizes;
+			this.teamIds = teamIds;
+			this.usernames = usernames;
+			this.total = ages.values().stream().mapToLong(Long::longValue).sum();
+			this.loadedAt = loadedAt;
+		}
+
+		boolean isExpired(Duration ttl) {
+			return System.nanoTime() - loadedAt >= ttl.toNanos();
+		}
+
+	}
+
+}
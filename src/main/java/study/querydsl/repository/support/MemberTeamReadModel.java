@@ -0,0 +1,175 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import study.querydsl.dto.ReadModelCheckDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.listener.MemberTeamBulkInsertedEvent;
+import study.querydsl.entity.listener.MemberTeamChangedEvent;
+
+/**
+ * member_team 읽기 모델(MemberTeamView)을 member, team 에 맞춰준다.
+ *
+ * - MemberTeamChangeListener가 보내는 이벤트로 같은 트랜잭션(커넥션)의 JDBC로 쓴다. (UsernameGramIndex와 같은 방식)
+ *   Member 저장/수정(changeTeam 포함)/삭제는 그 회원 row를, Team 이름 변경/삭제는 그 팀 회원 row 전체를 맞춘다.
+ * - 엔티티 리스너를 타지 않는 대량 저장(SqlMemberBulkLoader)은 MemberTeamBulkInsertedEvent로 받아서 넣는다.
+ * - 엔티티 리스너를 타지 않는 벌크 update, 직접 실행한 SQL로 어긋났다면 check()로 확인하고 rebuild()로 다시 만든다.
+ */
+@Component
+public class MemberTeamReadModel {
+
+	private static final String INSERT = "insert into member_team"
+			+ " (member_id, username, username_normalized, age, team_id, team_name) values (?, ?, ?, ?, ?, ?)";
+	private static final String INSERT_SELECT = "insert into member_team"
+			+ " (member_id, username, username_normalized, age, team_id, team_name)"
+			+ " select m.member_id, m.username, m.username_normalized, m.age, m.team_id, t.name"
+			+ " from member m left join team t on t.team_id = m.team_id";
+	private static final String UPDATE = "update member_team"
+			+ " set username = ?, username_normalized = ?, age = ?, team_id = ?, team_name = ? where member_id = ?";
+	private static final String MISMATCHED = " from member m"
+			+ " join member_team v on v.member_id = m.member_id"
+			+ " left join team t on t.team_id = m.team_id"
+			+ " where v.username is distinct from m.username"
+			+ " or v.username_normalized is distinct from m.username_normalized"
+			+ " or v.age <> m.age"
+			+ " or v.team_id is distinct from m.team_id"
+			+ " or v.team_name is distinct from t.name";
+	private static final String MISSING = " from member m"
+			+ " where not exists (select 1 from member_team v where v.member_id = m.member_id)";
+	private static final String ORPHANED = " from member_team v"
+			+ " where not exists (select 1 from member m where m.member_id = v.member_id)";
+	private static final int SAMPLE_SIZE = 10;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final int batchSize;
+
+	public MemberTeamReadModel(JdbcTemplate jdbcTemplate,
+			@Value("${querydsl.sql-bulk.batch-size:1000}") int batchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.batchSize = batchSize;
+	}
+
+	@EventListener
+	public void onMemberTeamChanged(MemberTeamChangedEvent event) {
+		if (event.getEntity() instanceof Member) {
+			Member member = (Member) event.getEntity();
+			switch (event.getType()) {
+			case PERSIST:
+				jdbcTemplate.update(INSERT, insertValues(member));
+				break;
+			case UPDATE:
+				Object[] row = insertValues(member);
+				if (jdbcTemplate.update(UPDATE, row[1], row[2], row[3], row[4], row[5], row[0]) == 0) {
+					jdbcTemplate.update(INSERT, row);
+				}
+				break;
+			case REMOVE:
+				jdbcTemplate.update("delete from member_team where member_id = ?", member.getId());
+				break;
+			}
+		} else if (event.getEntity() instanceof Team) {
+			Team team = (Team) event.getEntity();
+			switch (event.getType()) {
+			case UPDATE:
+				jdbcTemplate.update("update member_team set team_name = ? where team_id = ?", team.getName(),
+						team.getId());
+				break;
+			case REMOVE:
+				jdbcTemplate.update("update member_team set team_id = null, team_name = null where team_id = ?",
+						team.getId());
+				break;
+			default:
+				// 새 팀에는 아직 회원이 없다.
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 엔티티 리스너를 거치지 않고 대량 저장한 회원들의 row를 넣는다. (SqlMemberBulkLoader)
+	 * 저장한 트랜잭션 안에서 batchSize 건씩 member, team 에서 바로 넣는다.
+	 */
+	@EventListener
+	public void onBulkInserted(MemberTeamBulkInsertedEvent event) {
+		List<Long> memberIds = event.getMemberIds();
+		for (int from = 0; from < memberIds.size(); from += batchSize) {
+			List<Long> chunk = memberIds.subList(from, Math.min(from + batchSize, memberIds.size()));
+			jdbcTemplate.update(INSERT_SELECT + " where m.member_id in ("
+					+ String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")", chunk.toArray());
+		}
+	}
+
+	/**
+	 * member, team 으로 member_team 전체를 다시 만든다.
+	 *
+	 * @return 넣은 row 수
+	 */
+	@Transactional
+	public long rebuild() {
+		jdbcTemplate.update("delete from member_team");
+		return jdbcTemplate.update(INSERT_SELECT);
+	}
+
+	/**
+	 * member_team 이 member, team 과 같은지 확인한다.
+	 */
+	@Transactional(readOnly = true)
+	public ReadModelCheckDto check() {
+		ReadModelCheckDto dto = new ReadModelCheckDto();
+		dto.setMembers(count("select count(*) from member"));
+		dto.setRows(count("select count(*) from member_team"));
+		dto.setMissing(count("select count(*)" + MISSING));
+		dto.setOrphaned(count("select count(*)" + ORPHANED));
+		dto.setMismatched(count("select count(*)" + MISMATCHED));
+
+		Set<Long> samples = new LinkedHashSet<>();
+		for (String from : List.of(MISSING, ORPHANED, MISMATCHED)) {
+			int limit = SAMPLE_SIZE - samples.size();
+			if (limit <= 0) {
+				break;
+			}
+			String id = from == ORPHANED ? "v.member_id" : "m.member_id";
+			samples.addAll(jdbcTemplate.queryForList(
+					"select " + id + from + " order by " + id + " limit " + limit, Long.class));
+		}
+		dto.setSampleMemberIds(new ArrayList<>(samples));
+		return dto;
+	}
+
+	private long count(String sql) {
+		Long count = jdbcTemplate.queryForObject(sql, Long.class);
+		return count == null ? 0 : count;
+	}
+
+	private Object[] insertValues(Member member) {
+		Team team = member.getTeam();
+		return new Object[] { member.getId(), member.getUsername(), member.getUsernameNormalized(), member.getAge(),
+				team == null ? null : team.getId(), teamName(team) };
+	}
+
+	/**
+	 * 지연 로딩 프록시는 초기화하지 않고 이름만 읽는다. (flush 도중이라 프록시 초기화를 피한다.)
+	 */
+	private String teamName(Team team) {
+		if (team == null) {
+			return null;
+		}
+		if (Hibernate.isInitialized(team)) {
+			return team.getName();
+		}
+		return jdbcTemplate.queryForObject("select name from team where team_id = ?", String.class, team.getId());
+	}
+
+}
@@ -0,0 +1,112 @@
+package study.querydsl.repository.support;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.entity.listener.MemberTeamBulkInsertedEvent;
+import study.querydsl.entity.listener.MemberTeamChangedEvent;
+
+/**
+ * member, team 테이블 버전 (조건부 GET의 ETag 용)
+ *
+ * Member, Team이 변경된 트랜잭션이 커밋되면(MemberTeamChangedEvent) 1 올린다.
+ * 트랜잭션 밖의 변경은 바로 올린다.
+ *
+ * - 버전은 data_version 테이블(DataVersion)의 한 행이므로 서버가 여러 대여도 다른 서버에서 커밋된 변경을 본다.
+ *   ETag를 만들 때마다 PK로 한 번 읽는다.
+ * - 버전은 조회 쿼리보다 먼저 읽으므로 커밋 전 데이터로 만든 응답은 이전 버전의 ETag를 가진다.
+ * - 엔티티 리스너를 타지 않는 대량 저장(SqlMemberBulkLoader)은 MemberTeamBulkInsertedEvent로 받는다. 그 밖의 변경은 changed()를 직접 부른다.
+ * - 행이 없으면(테이블을 새로 만든 경우) 현재 시각(epoch millis)에서 시작해서 이전에 내준 ETag와 겹치지 않게 한다.
+ */
+@Component
+public class MemberTeamVersion {
+
+	static final String NAME = "member_team";
+
+	private final JdbcTemplate jdbcTemplate;
+	// 커밋이 끝난 뒤(afterCompletion)에 올리므로 새 트랜잭션에서 실행한다.
+	private final TransactionTemplate requiresNew;
+
+	public MemberTeamVersion(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.requiresNew = new TransactionTemplate(transactionManager);
+		this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	public long get() {
+		List<Long> versions = jdbcTemplate.queryForList("select version from data_version where name = ?",
+				Long.class, NAME);
+		return versions.isEmpty() ? 0 : versions.get(0);
+	}
+
+	/**
+	 * 검색 조건, 페이지 등 응답을 구분하는 값마다 다른 ETag (weak: 같은 버전이면 같은 결과지만 바이트까지 같지는 않다.)
+	 */
+	public String etag(Object... keys) {
+		StringJoiner key = new StringJoiner("|");
+		for (Object k : keys) {
+			key.add(String.valueOf(k));
+		}
+		return "W/\"" + Long.toString(get(), 36) + "-" + Integer.toHexString(key.toString().hashCode()) + "\"";
+	}
+
+	/**
+	 * 트랜잭션 안이면 커밋 후에, 아니면 바로 버전을 올린다.
+	 */
+	public void changed() {
+		boolean registered = TransactionScopedInvalidation.onCompletion(this, status -> {
+			// 커밋에만
+			if (status == TransactionSynchronization.STATUS_COMMITTED) {
+				increment();
+			}
+		});
+		if (!registered) {
+			increment();
+		}
+	}
+
+	@EventListener
+	public void onMemberTeamChanged(MemberTeamChangedEvent event) {
+		changed();
+	}
+
+	@EventListener
+	public void onBulkInserted(MemberTeamBulkInsertedEvent event) {
+		changed();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		if (get() == 0) {
+			insert();
+		}
+	}
+
+	private void increment() {
+		Integer updated = requiresNew.execute(status -> jdbcTemplate.update(
+				"update data_version set version = version + 1 where name = ?", NAME));
+		if (updated == null || updated == 0) {
+			insert();
+		}
+	}
+
+	private void insert() {
+		try {
+			requiresNew.executeWithoutResult(status -> jdbcTemplate.update(
+					"insert into data_version (name, version) values (?, ?)", NAME, System.currentTimeMillis()));
+		} catch (DuplicateKeyException e) {
+			// 다른 서버가 먼저 만들었다.
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.repository.support.CountedPage.Total;
+
+/**
+ * CountStrategy에 따라 컨텐츠 쿼리의 total을 구한다.
+ *
+ * - EXACT: CountQueryOptimizer.count
+ * - CAPPED: CountQueryOptimizer.countUpTo 로 querydsl.count.cap + 1 건까지만 센다.
+ * - ESTIMATED: MemberStatistics로 추정한다. 추정할 수 없으면 CAPPED로 센다.
+ *
+ * cacheKey가 있으면 EXACT, CAPPED 결과는 CountCache에 캐시한다. (ESTIMATED는 통계에서 바로 계산하므로 캐시하지 않는다.)
+ */
+@Component
+public class PageCounter {
+
+	private final CountCache countCache;
+	private final CountQueryOptimizer countQueryOptimizer;
+	private final MemberStatistics memberStatistics;
+	private final long cap;
+
+	public PageCounter(CountCache countCache, CountQueryOptimizer countQueryOptimizer,
+			MemberStatistics memberStatistics, @Value("${querydsl.count.cap:10000}") long cap) {
+		this.countCache = countCache;
+		this.countQueryOptimizer = countQueryOptimizer;
+		this.memberStatistics = memberStatistics;
+		this.cap = cap;
+	}
+
+	public Total count(EntityManager em, JPAQuery<?> contentQuery, CountStrategy countStrategy, Object cacheKey) {
+		return count(em, contentQuery, countStrategy, cacheKey, null);
+	}
+
+	/**
+	 * @param timeout count 쿼리 타임아웃 (null이면 없음)
+	 */
+	public Total count(EntityManager em, JPAQuery<?> contentQuery, CountStrategy countStrategy, Object cacheKey,
+			Duration timeout) {
+		switch (countStrategy) {
+		case ESTIMATED:
+			OptionalLong estimated = memberStatistics.estimate(contentQuery.getMetadata());
+			if (estimated.isPresent()) {
+				return Total.estimated(estimated.getAsLong());
+			}
+			return capped(em, contentQuery, cacheKey, timeout);
+		case CAPPED:
+			return capped(em, contentQuery, cacheKey, timeout);
+		default:
+			if (cacheKey == null) {
+				return Total.exact(countQueryOptimizer.count(em, contentQuery, timeout));
+			}
+			return Total.exact(countCache.get(cacheKey, timeout,
+					countTimeout -> countQueryOptimizer.count(em, contentQuery, countTimeout)));
+		}
+	}
+
+	/**
+	 * 이미 정확한 건수를 알 때(검색 스냅샷의 bitmap count) 요청한 방법의 total로 바꾼다.
+	 * CAPPED는 DB로 셀 때와 같게 cap에서 자르고, EXACT, ESTIMATED는 정확한 값이다.
+	 * (CountedPage.totalOf와 같이 요청한 방법을 그대로 담으므로 스냅샷 여부에 따라 응답이 달라지지 않는다.)
+	 */
+	public Total of(long exactTotal, CountStrategy countStrategy) {
+		if (countStrategy == CountStrategy.CAPPED) {
+			return Total.capped(Math.min(exactTotal, cap + 1), cap);
+		}
+		return Total.exact(exactTotal, countStrategy);
+	}
+
+	public long getCap() {
+		return cap;
+	}
+
+	private Total capped(EntityManager em, JPAQuery<?> contentQuery, Object cacheKey, Duration timeout) {
+		if (cacheKey == null) {
+			return Total.capped(countQueryOptimizer.countUpTo(em, contentQuery, cap + 1, timeout), cap);
+		}
+		long counted = countCache.get(Arrays.asList(CountStrategy.CAPPED, cap, cacheKey), timeout,
+				countTimeout -> countQueryOptimizer.countUpTo(em, contentQuery, cap + 1, countTimeout));
+		return Total.capped(counted, cap);
+	}
+
+}
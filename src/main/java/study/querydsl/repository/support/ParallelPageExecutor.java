@@ -0,0 +1,164 @@
+package study.querydsl.repository.support;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 페이징 조회의 컨텐츠 쿼리와 count 쿼리를 동시에 실행한다. (querydsl.parallel-count.enabled=true 일 때만)
+ *
+ * 컨텐츠 쿼리는 호출한 스레드(요청 스레드의 EntityManager, OSIV)에서 실행하고
+ * count 쿼리는 크기가 정해진 스레드 풀에서 별도 커넥션, 읽기 전용 트랜잭션으로 실행한다.
+ *
+ * 트랜잭션, 읽기 일관성
+ * - 호출한 스레드에 쓰기 트랜잭션이 있으면 병렬로 실행하지 않는다.
+ *   count가 다른 커넥션에서 실행되면 같은 트랜잭션에서 아직 커밋하지 않은 변경을 볼 수 없기 때문이다.
+ *   (읽기 전용 트랜잭션에는 커밋하지 않은 변경이 없으므로 병렬로 실행한다.)
+ * - 병렬로 실행하면 두 쿼리는 서로 다른 커넥션(스냅샷)에서 실행되므로,
+ *   그 사이에 커밋된 변경 때문에 total과 컨텐츠가 조금 어긋날 수 있다. (count 캐시와 같은 수준의 허용)
+ * - 풀과 대기열이 가득 차면 호출한 스레드에서 순서대로 실행한다.
+ *
+ * 시간 제한 (enabled 일 때)
+ * - 컨텐츠 쿼리는 호출하는 쪽에서 getTimeout() 으로 쿼리 타임아웃 힌트를 준다.
+ * - count 함수에는 timeout 중 남은 시간을 넘긴다. count 쿼리는 이 값을 쿼리 타임아웃 힌트로 줘서
+ *   DB에서도 멈추게 해야 한다. (스레드 interrupt로는 실행 중인 JDBC 문장이 멈추지 않는다.)
+ * - timeout 안에 count를 받지 못하면 기다리지 않고 QueryTimeoutException을 던진다.
+ *   남은 시간이 없을 때 시작하는 count는 실행하지 않는다.
+ * - enabled=false 이면 count 함수에 null(제한 없음)을 넘긴다.
+ */
+@Slf4j
+@Component
+public class ParallelPageExecutor {
+
+	private final boolean enabled;
+	private final Duration timeout;
+	private final TransactionTemplate readOnlyTransaction;
+	private final ThreadPoolExecutor executor;
+
+	public ParallelPageExecutor(PlatformTransactionManager transactionManager,
+			@Value("${querydsl.parallel-count.enabled:false}") boolean enabled,
+			@Value("${querydsl.parallel-count.pool-size:4}") int poolSize,
+			@Value("${querydsl.parallel-count.queue-capacity:32}") int queueCapacity,
+			@Value("${querydsl.parallel-count.timeout:3s}") Duration timeout) {
+		this.enabled = enabled;
+		this.timeout = timeout;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("parallel-count-"),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Duration getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @param count 남은 시간(제한이 없으면 null)을 받아 total을 구한다.
+	 */
+	public <T> Page<T> getPage(Supplier<List<T>> content, Pageable pageable, ToLongFunction<Duration> count) {
+		return execute(content, remaining -> count.applyAsLong(remaining),
+				(list, total) -> PageableExecutionUtils.getPage(list, pageable, total::get));
+	}
+
+	/**
+	 * @param count 남은 시간(제한이 없으면 null)을 받아 total을 구한다.
+	 */
+	public <T> CountedPage<T> getPage(Supplier<List<T>> content, Pageable pageable, CountStrategy countStrategy,
+			Function<Duration, CountedPage.Total> count) {
+		return execute(content, count, (list, total) -> CountedPage.of(list, pageable, countStrategy, total));
+	}
+
+	/**
+	 * @param page 컨텐츠와 count를 받아 Page를 만든다. (count가 필요 없으면 꺼내지 않는다.)
+	 */
+	private <T, C, P> P execute(Supplier<List<T>> content, Function<Duration, C> count,
+			BiFunction<List<T>, Supplier<C>, P> page) {
+		if (!enabled) {
+			return page.apply(content.get(), () -> count.apply(null));
+		}
+
+		long deadline = System.nanoTime() + timeout.toNanos();
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return page.apply(content.get(), () -> count.apply(remaining(deadline)));
+		}
+
+		Future<C> countFuture;
+		try {
+			countFuture = executor.submit(() -> readOnlyTransaction.execute(status -> count.apply(remaining(deadline))));
+		} catch (RejectedExecutionException e) {
+			log.debug("count executor is full, running sequentially");
+			return page.apply(content.get(), () -> count.apply(remaining(deadline)));
+		}
+
+		try {
+			return page.apply(content.get(), () -> await(countFuture, deadline));
+		} finally {
+			// 첫 페이지가 size보다 작아서 count가 필요 없었던 경우 등
+			countFuture.cancel(true);
+		}
+	}
+
+	private Duration remaining(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		if (remaining <= 0) {
+			throw new QueryTimeoutException("Count query did not start within " + timeout.toMillis() + "ms");
+		}
+		return Duration.ofNanos(remaining);
+	}
+
+	private <C> C await(Future<C> countFuture, long deadline) {
+		try {
+			return countFuture.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			throw new QueryTimeoutException("Count query did not finish within " + timeout.toMillis() + "ms", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new QueryTimeoutException("Interrupted while waiting for count query", e);
+		} catch (CancellationException e) {
+			throw new QueryTimeoutException("Count query was cancelled", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+}
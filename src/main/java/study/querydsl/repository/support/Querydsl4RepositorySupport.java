@@ -5,20 +5,25 @@ import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
 import org.springframework.data.querydsl.SimpleEntityPathResolver;
-import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
+import study.querydsl.metrics.RepositoryMetrics;
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
-import java.util.List;
+import java.time.Duration;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
@@ -33,6 +38,11 @@ public abstract class Querydsl4RepositorySupport {
 	private Querydsl querydsl;
 	private EntityManager entityManager;
 	private JPAQueryFactory queryFactory;
+	private CountCache countCache;
+	private CountQueryOptimizer countQueryOptimizer;
+	private ParallelPageExecutor parallelPageExecutor;
+	private PageCounter pageCounter;
+	private RepositoryMetrics repositoryMetrics;
 
 	public Querydsl4RepositorySupport(Class<?> domainClass) {
 		Assert.notNull(domainClass, "Domain class must not be null!");
@@ -51,6 +61,31 @@ public abstract class Querydsl4RepositorySupport {
 		this.queryFactory = new JPAQueryFactory(entityManager);
 	}
 
+	@Autowired(required = false)
+	public void setCountCache(CountCache countCache) {
+		this.countCache = countCache;
+	}
+
+	@Autowired(required = false)
+	public void setCountQueryOptimizer(CountQueryOptimizer countQueryOptimizer) {
+		this.countQueryOptimizer = countQueryOptimizer;
+	}
+
+	@Autowired(required = false)
+	public void setParallelPageExecutor(ParallelPageExecutor parallelPageExecutor) {
+		this.parallelPageExecutor = parallelPageExecutor;
+	}
+
+	@Autowired(required = false)
+	public void setPageCounter(PageCounter pageCounter) {
+		this.pageCounter = pageCounter;
+	}
+
+	@Autowired(required = false)
+	public void setRepositoryMetrics(RepositoryMetrics repositoryMetrics) {
+		this.repositoryMetrics = repositoryMetrics;
+	}
+
 	@PostConstruct
 	public void validate() {
 		Assert.notNull(entityManager, "EntityManager must not be null!");
@@ -80,15 +115,107 @@ public abstract class Querydsl4RepositorySupport {
 
 	protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery) {
 		JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
-		List<T> content = getQuerydsl().applyPagination(pageable, jpaQuery).fetch();
-		return PageableExecutionUtils.getPage(content, pageable, jpaQuery::fetchCount);
+		JPAQuery<T> pagedQuery = (JPAQuery<T>) getQuerydsl().applyPagination(pageable, jpaQuery);
+		return recorded("applyPagination", jpaQuery, () -> page(pagedQuery, pageable, timeout -> cachedCount(jpaQuery, timeout)));
 	}
 
 	protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
 			Function<JPAQueryFactory, JPAQuery> countQuery) {
 		JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-		List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
+		JPAQuery<T> pagedQuery = (JPAQuery<T>) getQuerydsl().applyPagination(pageable, jpaContentQuery);
 		JPAQuery countResult = countQuery.apply(getQueryFactory());
-		return PageableExecutionUtils.getPage(content, pageable, countResult::fetchCount);
+		return recorded("applyPagination", jpaContentQuery,
+				() -> page(pagedQuery, pageable, timeout -> cachedCount(countResult, timeout)));
+	}
+
+	/**
+	 * total을 countStrategy(EXACT, CAPPED, ESTIMATED)로 구한다.
+	 * 실제로 쓴 방법과 정확한 값인지 여부는 CountedPage에 담긴다.
+	 */
+	protected <T> CountedPage<T> applyPagination(Pageable pageable, CountStrategy countStrategy,
+			Function<JPAQueryFactory, JPAQuery> contentQuery) {
+		JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+		JPAQuery<T> pagedQuery = (JPAQuery<T>) getQuerydsl().applyPagination(pageable, jpaQuery);
+		Function<Duration, CountedPage.Total> total = pageCounter == null
+				? timeout -> CountedPage.Total.exact(cachedCount(jpaQuery, timeout))
+				: timeout -> pageCounter.count(entityManager, jpaQuery, countStrategy, countCacheKey(jpaQuery),
+						timeout);
+		return recorded("applyPagination", jpaQuery, () -> {
+			if (parallelPageExecutor == null) {
+				return CountedPage.of(pagedQuery.fetch(), pageable, countStrategy, () -> total.apply(null));
+			}
+			applyTimeout(pagedQuery);
+			return parallelPageExecutor.getPage(pagedQuery::fetch, pageable, countStrategy, total);
+		});
+	}
+
+	// querydsl.parallel-count.enabled=true 이면 컨텐츠, count 쿼리를 동시에 실행한다.
+	private <T> Page<T> page(JPAQuery<T> pagedQuery, Pageable pageable, ToLongFunction<Duration> count) {
+		if (parallelPageExecutor == null) {
+			return PageableExecutionUtils.getPage(pagedQuery.fetch(), pageable, () -> count.applyAsLong(null));
+		}
+		applyTimeout(pagedQuery);
+		return parallelPageExecutor.getPage(pagedQuery::fetch, pageable, count);
+	}
+
+	/**
+	 * count 쿼리 없이 size + 1 건을 조회해서 다음 페이지가 있는지만 알려준다. (무한 스크롤 등)
+	 */
+	protected <T> Slice<T> applySlicing(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery) {
+		JPAQuery<T> jpaQuery = contentQuery.apply(getQueryFactory());
+		if (pageable.isPaged()) {
+			getQuerydsl().applySorting(pageable.getSort(), jpaQuery);
+			jpaQuery.offset(pageable.getOffset()).limit(Slices.limitOf(pageable));
+		}
+		return recorded("applySlicing", jpaQuery, () -> Slices.of(jpaQuery.fetch(), pageable));
+	}
+
+	// RepositoryMetrics가 있으면 실행 시간, row 수, SQL 문장 수를 where 절 모양별로 기록한다.
+	private <R> R recorded(String method, JPAQuery<?> query, Supplier<R> call) {
+		if (repositoryMetrics == null) {
+			return call.get();
+		}
+		return repositoryMetrics.record(getClass().getSimpleName(), method,
+				RepositoryMetrics.shapeOf(query.getMetadata().getWhere()), call);
+	}
+
+	private void applyTimeout(JPAQuery<?> pagedQuery) {
+		if (parallelPageExecutor.isEnabled()) {
+			pagedQuery.setHint(QueryHints.SPEC_HINT_TIMEOUT,
+					Math.toIntExact(parallelPageExecutor.getTimeout().toMillis()));
+		}
+	}
+
+	private long cachedCount(JPAQuery<?> countQuery, Duration timeout) {
+		Object key = countCacheKey(countQuery);
+		if (key == null) {
+			return optimizedCount(countQuery, timeout);
+		}
+		return countCache.get(key, timeout, countTimeout -> optimizedCount(countQuery, countTimeout));
+	}
+
+	// CountCache는 Member, Team 변경으로만 무효화되므로 그 밖의 엔티티 repository의 count는 캐시하지 않는다. (null)
+	private Object countCacheKey(JPAQuery<?> countQuery) {
+		if (countCache == null || !countCache.isInvalidatedBy(domainClass)) {
+			return null;
+		}
+		return CountCache.keyOf(countQuery);
+	}
+
+	// 컨텐츠 쿼리(또는 count 쿼리)에서 select 절, 정렬, offset/limit, fetch join을 걷어낸 count 쿼리를 만들어 실행
+	private long optimizedCount(JPAQuery<?> countQuery, Duration timeout) {
+		if (countQueryOptimizer == null) {
+			if (timeout != null) {
+				countQuery.setHint(QueryHints.SPEC_HINT_TIMEOUT, Math.toIntExact(Math.max(1000, timeout.toMillis())));
+			}
+			return countQuery.fetchCount();
+		}
+		return countQueryOptimizer.count(entityManager, countQuery, timeout);
+	}
+
+	protected <T, K extends Comparable<? super K>> KeysetSlice<T> applyKeyset(Keyset<T, K> keyset, String cursor,
+			int size, Function<JPAQueryFactory, JPAQuery<T>> contentQuery) {
+		JPAQuery<T> jpaContentQuery = contentQuery.apply(getQueryFactory());
+		return recorded("applyKeyset", jpaContentQuery, () -> keyset.fetch(jpaContentQuery, cursor, size));
 	}
 }
@@ -0,0 +1,36 @@
+package study.querydsl.repository.support;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+/**
+ * size + 1 건을 조회해서 count 쿼리 없이 다음 페이지가 있는지 판단하는 Slice 유틸
+ */
+public final class Slices {
+
+	private Slices() {
+	}
+
+	/**
+	 * @param rows pageable.getPageSize() + 1 건까지 조회한 결과
+	 */
+	public static <T> Slice<T> of(List<T> rows, Pageable pageable) {
+		if (pageable.isUnpaged()) {
+			return new SliceImpl<>(rows, pageable, false);
+		}
+		boolean hasNext = rows.size() > pageable.getPageSize();
+		List<T> content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+		return new SliceImpl<>(content, pageable, hasNext);
+	}
+
+	/**
+	 * 다음 페이지가 있는지 알기 위해 한 건 더 조회할 limit
+	 */
+	public static long limitOf(Pageable pageable) {
+		return pageable.getPageSize() + 1L;
+	}
+
+}
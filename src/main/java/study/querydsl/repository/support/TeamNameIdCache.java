@@ -0,0 +1,95 @@
+package study.querydsl.repository.support;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import study.querydsl.entity.Team;
+import study.querydsl.entity.listener.MemberTeamBulkInsertedEvent;
+import study.querydsl.entity.listener.MemberTeamChangedEvent;
+
+/**
+ * 팀 이름 -> 팀 id 목록 캐시
+ *
+ * count 쿼리에서 team.name = ? 조건을 member.team_id in (?) 로 바꿔서 team 조인을 없애는 데 쓴다.
+ * 조회는 ConcurrentHashMap.get 이라 락이 없고, Team이 추가/변경/삭제되면 통째로 비운다.
+ * (이름은 유일하지 않으므로 id 목록을 담는다.)
+ */
+@Component
+public class TeamNameIdCache {
+
+	private final EntityManager em;
+	private final ConcurrentMap<String, List<Long>> ids = new ConcurrentHashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+
+	public TeamNameIdCache(EntityManager em) {
+		this.em = em;
+	}
+
+	/**
+	 * @return 이름이 name인 팀 id 목록 (없으면 빈 목록)
+	 */
+	public List<Long> get(String name) {
+		List<Long> cached = ids.get(name);
+		if (cached != null) {
+			return cached;
+		}
+
+		long loadGeneration = generation.get();
+		List<Long> loaded = Collections.unmodifiableList(em.createQuery(
+				"select t.id from Team t where t.name = :name order by t.id", Long.class)
+				.setParameter("name", name)
+				.getResultList());
+
+		// 트랜잭션 안에서 Team을 바꾼 경우, 커밋 전 값이 다른 트랜잭션에 보이지 않도록 캐시하지 않는다.
+		if (!TransactionSynchronizationManager.hasResource(this)) {
+			ids.putIfAbsent(name, loaded);
+			// 읽는 동안 무효화되었다면 방금 넣은 값도 버린다.
+			if (generation.get() != loadGeneration) {
+				ids.remove(name, loaded);
+			}
+		}
+		return loaded;
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		ids.clear();
+	}
+
+	@EventListener
+	public void onMemberTeamChanged(MemberTeamChangedEvent event) {
+		if (!(event.getEntity() instanceof Team)) {
+			return;
+		}
+		changed();
+	}
+
+	@EventListener
+	public void onBulkInserted(MemberTeamBulkInsertedEvent event) {
+		if (event.getTeamIds().isEmpty()) {
+			return;
+		}
+		changed();
+	}
+
+	/**
+	 * 바로 무효화하고, 트랜잭션 안이면 끝날 때(커밋/롤백) 한 번 더 무효화한다.
+	 * (엔티티 리스너를 타지 않는 변경은 직접 부른다.)
+	 */
+	public void changed() {
+		invalidateAll();
+
+		// 커밋/롤백 모두
+		TransactionScopedInvalidation.onCompletion(this, status -> invalidateAll());
+	}
+
+}
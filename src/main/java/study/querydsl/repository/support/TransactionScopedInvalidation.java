@@ -0,0 +1,56 @@
+package study.querydsl.repository.support;
+
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 트랜잭션이 끝날 때(커밋/롤백) 한 번 부를 콜백을 key 단위로 등록한다.
+ *
+ * - key를 리소스로 묶어두므로 같은 트랜잭션에서 여러 번 불러도 한 번만 등록된다. (afterCompletion에서 푼다.)
+ * - 콜백은 TransactionSynchronization.STATUS_COMMITTED / STATUS_ROLLED_BACK / STATUS_UNKNOWN 을 받는다.
+ *   커밋에만 반응할지, 롤백에도 반응할지는 부르는 쪽이 정한다.
+ * - 트랜잭션 동기화가 없으면 등록하지 않는다. (부르는 쪽이 바로 처리한다.)
+ */
+public final class TransactionScopedInvalidation {
+
+	private TransactionScopedInvalidation() {
+	}
+
+	/**
+	 * @return 등록했거나 이미 등록되어 있으면 true, 트랜잭션 동기화가 없으면 false
+	 */
+	public static boolean onCompletion(Object key, IntConsumer callback) {
+		return onCompletion(key, () -> Boolean.TRUE, (value, status) -> callback.accept(status)) != null;
+	}
+
+	/**
+	 * 트랜잭션마다 값(변경 목록 등)을 하나 묶어두고, 끝날 때 그 값과 상태로 콜백을 부른다.
+	 *
+	 * @return 이 트랜잭션에 묶인 값, 트랜잭션 동기화가 없으면 null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T onCompletion(Object key, Supplier<T> resource, ObjIntConsumer<T> callback) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		T bound = (T) TransactionSynchronizationManager.getResource(key);
+		if (bound != null) {
+			return bound;
+		}
+		T value = resource.get();
+		TransactionSynchronizationManager.bindResource(key, value);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(key);
+				callback.accept(value, status);
+			}
+		});
+		return value;
+	}
+
+}
@@ -0,0 +1,155 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberUsernameGram;
+import study.querydsl.entity.listener.MemberTeamBulkInsertedEvent;
+import study.querydsl.entity.listener.MemberTeamChangedEvent;
+
+/**
+ * member_username_gram(MemberUsernameGram)을 Member의 username에 맞춰준다.
+ *
+ * - Member 엔티티 리스너(MemberTeamChangeListener)가 보내는 이벤트로 저장/수정/삭제할 때마다 맞춘다.
+ *   flush 도중이므로 JPA 대신 같은 트랜잭션(커넥션)의 JDBC로 쓴다. (롤백되면 함께 롤백된다.)
+ * - 엔티티 리스너를 타지 않는 대량 저장(SqlMemberBulkLoader)은 MemberTeamBulkInsertedEvent로 받아서 넣는다.
+ * - 수정은 지금 있는 조각과 비교해서 바뀐 조각만 지우고 넣는다. (username이 그대로면 조회 한 번)
+ * - 엔티티 리스너를 타지 않는 벌크 update(JPQL, querydsl)로 username을 바꿨다면 rebuild()로 다시 만든다.
+ */
+@Component
+public class UsernameGramIndex {
+
+	private static final String INSERT = "insert into member_username_gram (gram, member_id) values (?, ?)";
+	private static final String DELETE = "delete from member_username_gram where gram = ? and member_id = ?";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final int batchSize;
+
+	public UsernameGramIndex(JdbcTemplate jdbcTemplate,
+			@Value("${querydsl.sql-bulk.batch-size:1000}") int batchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.batchSize = batchSize;
+	}
+
+	@EventListener
+	public void onMemberTeamChanged(MemberTeamChangedEvent event) {
+		if (!(event.getEntity() instanceof Member)) {
+			return;
+		}
+		Member member = (Member) event.getEntity();
+		switch (event.getType()) {
+		case PERSIST:
+			insert(Map.of(member.getId(), gramsOf(member)));
+			break;
+		case UPDATE:
+			update(member.getId(), gramsOf(member));
+			break;
+		case REMOVE:
+			jdbcTemplate.update("delete from member_username_gram where member_id = ?", member.getId());
+			break;
+		}
+	}
+
+	/**
+	 * 엔티티 리스너를 거치지 않고 대량 저장한 회원들의 조각을 넣는다. (SqlMemberBulkLoader)
+	 * 저장한 트랜잭션 안에서 batchSize 건씩 member에서 읽어서 넣는다.
+	 */
+	@EventListener
+	public void onBulkInserted(MemberTeamBulkInsertedEvent event) {
+		List<Long> memberIds = event.getMemberIds();
+		for (int from = 0; from < memberIds.size(); from += batchSize) {
+			List<Long> chunk = memberIds.subList(from, Math.min(from + batchSize, memberIds.size()));
+			Map<Long, Set<String>> grams = new LinkedHashMap<>();
+			jdbcTemplate.query("select member_id, username_normalized from member where member_id in ("
+					+ String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")",
+					rs -> {
+						grams.put(rs.getLong(1), MemberUsernameGram.gramsOf(rs.getString(2)));
+					}, chunk.toArray());
+			insert(grams);
+		}
+	}
+
+	/**
+	 * member 테이블 전체로 username_normalized와 조각을 다시 만든다.
+	 *
+	 * @return 처리한 Member 수
+	 */
+	@Transactional
+	public long rebuild() {
+		jdbcTemplate.update("delete from member_username_gram");
+
+		List<Object[]> normalized = new ArrayList<>();
+		Map<Long, Set<String>> grams = new LinkedHashMap<>();
+		long[] count = new long[1];
+		jdbcTemplate.query("select member_id, username from member", rs -> {
+			long memberId = rs.getLong(1);
+			String username = MemberUsernameGram.normalize(rs.getString(2));
+			normalized.add(new Object[] { username, memberId });
+			grams.put(memberId, MemberUsernameGram.gramsOf(username));
+			if (normalized.size() >= batchSize) {
+				flushRebuild(normalized, grams);
+			}
+			count[0]++;
+		});
+		flushRebuild(normalized, grams);
+		return count[0];
+	}
+
+	private void flushRebuild(List<Object[]> normalized, Map<Long, Set<String>> grams) {
+		jdbcTemplate.batchUpdate("update member set username_normalized = ? where member_id = ?", normalized);
+		insert(grams);
+		normalized.clear();
+		grams.clear();
+	}
+
+	private void update(Long memberId, Set<String> grams) {
+		Set<String> current = new HashSet<>(jdbcTemplate.queryForList(
+				"select gram from member_username_gram where member_id = ?", String.class, memberId));
+		if (current.equals(grams)) {
+			return;
+		}
+
+		List<Object[]> removed = new ArrayList<>();
+		for (String gram : current) {
+			if (!grams.contains(gram)) {
+				removed.add(new Object[] { gram, memberId });
+			}
+		}
+		Set<String> added = new HashSet<>(grams);
+		added.removeAll(current);
+
+		if (!removed.isEmpty()) {
+			jdbcTemplate.batchUpdate(DELETE, removed);
+		}
+		insert(Map.of(memberId, added));
+	}
+
+	private void insert(Map<Long, Set<String>> grams) {
+		List<Object[]> rows = new ArrayList<>();
+		grams.forEach((memberId, memberGrams) -> {
+			for (String gram : memberGrams) {
+				rows.add(new Object[] { gram, memberId });
+			}
+		});
+		if (!rows.isEmpty()) {
+			jdbcTemplate.batchUpdate(INSERT, rows);
+		}
+	}
+
+	private static Set<String> gramsOf(Member member) {
+		return MemberUsernameGram.gramsOf(member.getUsernameNormalized());
+	}
+
+}
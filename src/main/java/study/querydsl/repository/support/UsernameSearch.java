@@ -0,0 +1,153 @@
+package study.querydsl.repository.support;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberUsernameGram.memberUsernameGram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.JPAExpressions;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.MemberUsernameGram;
+
+/**
+ * MemberSearchCondition의 usernameIgnoreCase, usernameStartsWith, usernameContains 조건
+ *
+ * lower(username) 처럼 컬럼에 함수를 씌우면 인덱스를 못 쓰므로 미리 소문자로 바꿔둔 컬럼(username_normalized)을 쓴다.
+ * - usernameIgnoreCase: username_normalized = ?
+ * - usernameStartsWith: username_normalized like '?%' (인덱스 범위 검색)
+ * - usernameContains: 검색어의 3글자 조각을 모두 가진 회원(member_username_gram)으로 좁힌 뒤
+ *   username_normalized like '%?%' 로 확인한다. ('%?%' 만으로는 전체 스캔)
+ *
+ * 파라미터는 parameterValues() 순서로 쓰인다. (MemberSearchQueryCache)
+ * 읽기 모델(member_team)을 검색할 때는 MemberTeamView의 컬럼으로 같은 조건을 만든다.
+ */
+public final class UsernameSearch {
+
+	private static final char ESCAPE = '!';
+
+	private UsernameSearch() {
+	}
+
+	/**
+	 * @return 세 조건을 and로 묶은 것 (조건이 없으면 null)
+	 */
+	public static Predicate of(MemberSearchCondition condition) {
+		return of(condition, member.usernameNormalized, member.id);
+	}
+
+	/**
+	 * @param usernameNormalized username_normalized 컬럼
+	 * @param memberId member_username_gram.member_id 와 비교할 member id 컬럼
+	 */
+	public static Predicate of(MemberSearchCondition condition, StringPath usernameNormalized,
+			NumberPath<Long> memberId) {
+		return ExpressionUtils.allOf(
+				usernameIgnoreCaseEq(usernameNormalized, condition.getUsernameIgnoreCase()),
+				usernameStartsWith(usernameNormalized, condition.getUsernameStartsWith()),
+				usernameContains(usernameNormalized, memberId, condition.getUsernameContains()));
+	}
+
+	public static BooleanExpression usernameIgnoreCaseEq(String username) {
+		return usernameIgnoreCaseEq(member.usernameNormalized, username);
+	}
+
+	public static BooleanExpression usernameStartsWith(String prefix) {
+		return usernameStartsWith(member.usernameNormalized, prefix);
+	}
+
+	/**
+	 * @throws IllegalArgumentException 검색어가 MemberUsernameGram.GRAM_LENGTH 글자보다 짧을 때
+	 */
+	public static BooleanExpression usernameContains(String text) {
+		return usernameContains(member.usernameNormalized, member.id, text);
+	}
+
+	private static BooleanExpression usernameIgnoreCaseEq(StringPath usernameNormalized, String username) {
+		return hasText(username) ? usernameNormalized.eq(MemberUsernameGram.normalize(username)) : null;
+	}
+
+	private static BooleanExpression usernameStartsWith(StringPath usernameNormalized, String prefix) {
+		return hasText(prefix) ? usernameNormalized.like(prefixPattern(prefix), ESCAPE) : null;
+	}
+
+	private static BooleanExpression usernameContains(StringPath usernameNormalized, NumberPath<Long> memberId,
+			String text) {
+		if (!hasText(text)) {
+			return null;
+		}
+		List<String> grams = grams(text);
+		return memberId.in(JPAExpressions
+						.select(memberUsernameGram.memberId)
+						.from(memberUsernameGram)
+						.where(memberUsernameGram.gram.in(grams))
+						.groupBy(memberUsernameGram.memberId)
+						.having(memberUsernameGram.gram.countDistinct().eq((long) grams.size())))
+				.and(usernameNormalized.like(containsPattern(text), ESCAPE));
+	}
+
+	/**
+	 * of()로 조건을 만들 수 있는지 (usernameContains가 MemberUsernameGram.GRAM_LENGTH 글자보다 짧으면 false)
+	 */
+	public static boolean isValid(MemberSearchCondition condition) {
+		return !hasText(condition.getUsernameContains())
+				|| MemberUsernameGram.normalize(condition.getUsernameContains()).length() >= MemberUsernameGram.GRAM_LENGTH;
+	}
+
+	/**
+	 * of()가 만드는 조건의 파라미터 값 (쿼리에 나오는 순서)
+	 */
+	public static List<Object> parameterValues(MemberSearchCondition condition) {
+		List<Object> values = new ArrayList<>(4);
+		if (hasText(condition.getUsernameIgnoreCase())) {
+			values.add(MemberUsernameGram.normalize(condition.getUsernameIgnoreCase()));
+		}
+		if (hasText(condition.getUsernameStartsWith())) {
+			values.add(prefixPattern(condition.getUsernameStartsWith()));
+		}
+		if (hasText(condition.getUsernameContains())) {
+			List<String> grams = grams(condition.getUsernameContains());
+			values.add(grams);
+			values.add((long) grams.size());
+			values.add(containsPattern(condition.getUsernameContains()));
+		}
+		return values;
+	}
+
+	private static List<String> grams(String text) {
+		String normalized = MemberUsernameGram.normalize(text);
+		if (normalized.length() < MemberUsernameGram.GRAM_LENGTH) {
+			throw new IllegalArgumentException(
+					"usernameContains must be at least " + MemberUsernameGram.GRAM_LENGTH + " characters");
+		}
+		return new ArrayList<>(MemberUsernameGram.gramsOf(normalized));
+	}
+
+	private static String prefixPattern(String prefix) {
+		return escape(MemberUsernameGram.normalize(prefix)) + "%";
+	}
+
+	private static String containsPattern(String text) {
+		return "%" + escape(MemberUsernameGram.normalize(text)) + "%";
+	}
+
+	private static String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length() + 4);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ESCAPE || c == '%' || c == '_') {
+				escaped.append(ESCAPE);
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
+}
@@ -0,0 +1,131 @@
+package study.querydsl.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.MemberTeamVersion;
+
+/**
+ * 스트리밍 응답(/v3/members/stream)이 중간에 실패했을 때 정상 응답처럼 보이지 않는지 확인한다.
+ * keyset 페이징(/v4/members)의 size 제한, 잘못된 cursor 응답도 확인한다.
+ */
+class MemberControllerTest {
+
+	ObjectMapper objectMapper = new ObjectMapper();
+	MemberRepository memberRepository;
+	MemberController memberController;
+
+	@BeforeEach
+	public void before() {
+		memberRepository = mock(MemberRepository.class);
+		memberController = new MemberController(mock(MemberJpaRepository.class), memberRepository, objectMapper,
+				mock(MemberTeamVersion.class));
+	}
+
+	@Test
+	public void badConditionBeforeFirstRow() throws Exception {
+		when(memberRepository.streamPage(any(), any(), any(), any()))
+				.thenThrow(new IllegalArgumentException("usernameContains must be at least 3 characters"));
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(memberController)
+				.setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+				.build();
+
+		mockMvc.perform(get("/v3/members/stream").param("usernameContains", "ab"))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string("usernameContains must be at least 3 characters"));
+	}
+
+	@Test
+	public void keysetSizeCappedAndBadCursor() throws Exception {
+		ReflectionTestUtils.setField(memberController, "keysetMaxSize", 100);
+		when(memberRepository.searchSlice(any(), eq("bad"), anyInt()))
+				.thenThrow(new InvalidDataAccessApiUsageException("Invalid cursor: bad",
+						new IllegalArgumentException("Invalid cursor: bad")));
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(memberController).build();
+
+		mockMvc.perform(get("/v4/members").param("size", "1000000"));
+		verify(memberRepository).searchSlice(any(), isNull(), eq(100));
+
+		mockMvc.perform(get("/v4/members").param("cursor", "bad"))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string("Invalid cursor: bad"));
+	}
+
+	@Test
+	public void failureBeforeFlushLeavesNothing() {
+		failAfter(1);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertThatThrownBy(() -> stream(response)).isInstanceOf(DataAccessResourceFailureException.class);
+
+		// 버퍼를 비웠으므로 오류 페이지가 응답할 수 있다.
+		assertThat(response.isCommitted()).isFalse();
+		assertThat(response.getContentAsByteArray()).isEmpty();
+	}
+
+	@Test
+	public void failureAfterFlushLeavesUnterminatedJson() throws Exception {
+		// 응답 버퍼보다 많이 써서 일부가 이미 나간 경우
+		failAfter(1000);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertThatThrownBy(() -> stream(response)).isInstanceOf(DataAccessResourceFailureException.class);
+
+		String body = response.getContentAsString();
+		assertThat(response.isCommitted()).isTrue();
+		assertThat(body).startsWith("{\"content\":[").doesNotContain("totalElements");
+		assertThatThrownBy(() -> objectMapper.readTree(body)).isInstanceOf(JsonProcessingException.class);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void failAfter(int rows) {
+		doAnswer(invocation -> {
+			Consumer<MemberTeamDto> consumer = invocation.getArgument(3);
+			for (long i = 1; i <= rows; i++) {
+				consumer.accept(new MemberTeamDto(i, "member" + i, 10, 1L, "teamA"));
+			}
+			throw new DataAccessResourceFailureException("connection lost");
+		}).when(memberRepository).streamPage(any(), any(), any(), any(Consumer.class));
+	}
+
+	private void stream(MockHttpServletResponse response) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v3/members/stream");
+		memberController.streamMemberV3(new MemberSearchCondition(), PageRequest.of(0, 2000), CountStrategy.EXACT,
+				new ServletWebRequest(request, response), response);
+	}
+
+}
@@ -0,0 +1,65 @@
+package study.querydsl.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
+import study.querydsl.repository.support.CountedPage.Total;
+
+class StreamingPageWriterTest {
+
+	static final String[] PAGE_FIELDS = { "number", "size", "numberOfElements", "totalElements", "totalPages",
+			"first", "last", "countStrategy", "totalExact" };
+
+	ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	public void sameAsCountedPage() throws IOException {
+		List<MemberTeamDto> content = List.of(
+				new MemberTeamDto(3L, "member3", 30, 2L, "teamB"),
+				new MemberTeamDto(4L, "member4", 40, null, null));
+
+		for (Pageable pageable : List.of(PageRequest.of(1, 2), PageRequest.of(0, 2), PageRequest.of(3, 2))) {
+			for (Total total : List.of(Total.exact(7), Total.capped(11, 10), Total.estimated(3))) {
+				JsonNode streamed = objectMapper.readTree(write(content, pageable, total));
+				JsonNode page = objectMapper.readTree(
+						objectMapper.writeValueAsString(new CountedPage<>(content, pageable, total)));
+
+				assertThat(streamed.get("content")).isEqualTo(page.get("content"));
+				for (String field : PAGE_FIELDS) {
+					assertThat(streamed.get(field)).as(field).isEqualTo(page.get(field));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void emptyContent() throws IOException {
+		JsonNode streamed = objectMapper.readTree(write(List.of(), PageRequest.of(0, 20), Total.exact(0)));
+
+		assertThat(streamed.get("content").size()).isZero();
+		assertThat(streamed.get("totalPages").asInt()).isZero();
+		assertThat(streamed.get("countStrategy").asText()).isEqualTo(CountStrategy.EXACT.name());
+	}
+
+	private String write(List<MemberTeamDto> content, Pageable pageable, Total total) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StreamingPageWriter<MemberTeamDto> writer = new StreamingPageWriter<>(objectMapper, MemberTeamDto.class, out);
+		content.forEach(writer::write);
+		writer.finish(pageable, total);
+		return out.toString("UTF-8");
+	}
+
+}
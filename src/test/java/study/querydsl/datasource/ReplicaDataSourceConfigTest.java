@@ -0,0 +1,71 @@
+package study.querydsl.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * replica 라우팅을 켜고 실제 JPA + LazyConnectionDataSourceProxy + Hikari 구성으로 띄운다.
+ * (primary, replica 모두 메모리 H2, 어느 쪽에서 읽었는지는 database()로 구분한다.)
+ * 테스트 application.properties가 main 것을 가리므로 replica 설정(p6spy 제외 포함)은 여기서 준다.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:boot-primary;DB_CLOSE_DELAY=-1",
+		"spring.datasource.hikari.maximum-pool-size=3",
+		"spring.datasource.hikari.connection-test-query=select 1",
+		"querydsl.replica.enabled=true",
+		"querydsl.replica.urls=jdbc:h2:mem:boot-replica;DB_CLOSE_DELAY=-1",
+		"querydsl.replica.read-your-writes=0s",
+		"querydsl.replica.connection-timeout=2s",
+		"decorator.datasource.exclude-beans=lazyDataSource" })
+class ReplicaDataSourceConfigTest {
+
+	@Autowired
+	DataSource dataSource;
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	@Autowired
+	EntityManager em;
+
+	@Test
+	public void wiring() throws SQLException {
+		assertThat(dataSource.isWrapperFor(LazyConnectionDataSourceProxy.class)).isTrue();
+		ReplicaRoutingDataSource routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+
+		// spring.datasource.hikari.* 는 primary, replica 풀 모두에 들어간다.
+		HikariDataSource primary = (HikariDataSource) routing.getPrimary();
+		assertThat(primary.getMaximumPoolSize()).isEqualTo(3);
+		assertThat(primary.getConnectionTestQuery()).isEqualTo("select 1");
+		HikariDataSource replica = (HikariDataSource) routing.getReplicas().get(0).getDataSource();
+		assertThat(replica.getMaximumPoolSize()).isEqualTo(3);
+		assertThat(replica.getConnectionTimeout()).isEqualTo(2000);
+		assertThat(replica.isReadOnly()).isTrue();
+	}
+
+	@Test
+	public void jpaTransactionsAreRouted() {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+		assertThat(readOnly.<String> execute(status -> database())).isEqualToIgnoringCase("boot-replica");
+		assertThat(readWrite.<String> execute(status -> database())).isEqualToIgnoringCase("boot-primary");
+	}
+
+	private String database() {
+		return String.valueOf(em.createNativeQuery("select database()").getSingleResult());
+	}
+
+}
@@ -0,0 +1,183 @@
+package study.querydsl.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.datasource.ReplicaRoutingDataSource.Replica;
+import study.querydsl.datasource.ReplicaRoutingDataSource.Writer;
+
+/**
+ * 메모리 H2 두 개를 primary, replica로 쓴다. (각각 route 테이블에 자기 이름을 넣어둔다.)
+ */
+class ReplicaRoutingDataSourceTest {
+
+	DataSource primary = h2("primary");
+	DataSource replica = h2("replica");
+
+	@Test
+	public void readOnlyTransactionUsesReplica() {
+		Routing routing = new Routing(Collections.singletonList(new Replica("replica", replica)), Duration.ZERO);
+
+		assertThat(routing.read()).isEqualTo("replica");
+		assertThat(routing.write()).isEqualTo("primary");
+		// 트랜잭션 밖은 primary
+		assertThat(routing.jdbcTemplate.queryForObject("select name from route", String.class)).isEqualTo("primary");
+	}
+
+	@Test
+	public void readYourWrites() {
+		Routing routing = new Routing(Collections.singletonList(new Replica("replica", replica)),
+				Duration.ofMillis(300));
+
+		assertThat(routing.read()).isEqualTo("replica");
+		routing.write();
+		assertThat(routing.read()).isEqualTo("primary");
+
+		sleep(400);
+		assertThat(routing.read()).isEqualTo("replica");
+	}
+
+	@Test
+	public void readYourWritesPerWriter() {
+		Routing routing = new Routing(Collections.singletonList(new Replica("replica", replica)),
+				Duration.ofSeconds(10));
+		List<Long> cookies = new ArrayList<>();
+		Writer a = new Writer(0, cookies::add);
+		Writer b = new Writer(0, untilMillis -> {
+		});
+
+		as(a, routing::write);
+		assertThat(cookies).hasSize(1);
+		assertThat(as(a, routing::read)).isEqualTo("primary");
+		// 다른 클라이언트의 읽기는 그대로 replica
+		assertThat(as(b, routing::read)).isEqualTo("replica");
+		// 다음 요청은 쿠키로 받은 시각을 이어받는다.
+		assertThat(as(new Writer(cookies.get(0), untilMillis -> {
+		}), routing::read)).isEqualTo("primary");
+	}
+
+	@Test
+	public void connectionWithCredentials() {
+		Routing routing = new Routing(Collections.singletonList(new Replica("replica", replica)), Duration.ZERO);
+
+		String name = routing.readOnly.execute(status -> {
+			try (Connection connection = routing.routingDataSource.getConnection("sa", "");
+					ResultSet rs = connection.createStatement().executeQuery("select name from route")) {
+				rs.next();
+				return rs.getString(1);
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		assertThat(name).isEqualTo("replica");
+	}
+
+	@Test
+	public void unavailableReplica() {
+		Replica down = new Replica("down", unreachable());
+		Replica up = new Replica("replica", replica);
+		Routing routing = new Routing(Arrays.asList(down, up), Duration.ZERO);
+
+		for (int i = 0; i < 4; i++) {
+			assertThat(routing.read()).isEqualTo("replica");
+		}
+
+		// 한 번 실패하면 retryAfter 동안은 다시 시도하지 않는다.
+		assertThat(down.isUp()).isFalse();
+		assertThat(down.isAvailable()).isFalse();
+		assertThat(down.getFailureCount()).isEqualTo(1);
+		assertThat(down.getLastError()).isNotNull();
+		assertThat(up.isUp()).isTrue();
+	}
+
+	@Test
+	public void allReplicasDown() {
+		Routing routing = new Routing(Collections.singletonList(new Replica("down", unreachable())), Duration.ZERO);
+
+		assertThat(routing.read()).isEqualTo("primary");
+	}
+
+	private class Routing {
+
+		final ReplicaRoutingDataSource routingDataSource;
+		final JdbcTemplate jdbcTemplate;
+		final TransactionTemplate readOnly;
+		final TransactionTemplate readWrite;
+
+		Routing(List<Replica> replicas, Duration readYourWrites) {
+			routingDataSource = new ReplicaRoutingDataSource(primary, replicas, readYourWrites, Duration.ofMinutes(1));
+			DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+			DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+			jdbcTemplate = new JdbcTemplate(dataSource);
+			readOnly = new TransactionTemplate(transactionManager);
+			readOnly.setReadOnly(true);
+			readWrite = new TransactionTemplate(transactionManager);
+		}
+
+		String read() {
+			return readOnly.execute(status -> jdbcTemplate.queryForObject("select name from route", String.class));
+		}
+
+		String write() {
+			return readWrite.execute(status -> {
+				jdbcTemplate.update("update route set name = name");
+				return jdbcTemplate.queryForObject("select name from route", String.class);
+			});
+		}
+
+	}
+
+	private static <T> T as(Writer writer, Supplier<T> action) {
+		ReplicaRoutingDataSource.bindWriter(writer);
+		try {
+			return action.get();
+		} finally {
+			ReplicaRoutingDataSource.unbindWriter();
+		}
+	}
+
+	private static DataSource h2(String name) {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+		dataSource.setUser("sa");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table if not exists route (name varchar(20))");
+		jdbcTemplate.update("delete from route");
+		jdbcTemplate.update("insert into route values (?)", name);
+		return dataSource;
+	}
+
+	private static DataSource unreachable() {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:routing-missing;IFEXISTS=TRUE");
+		return dataSource;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package study.querydsl.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.servlet.FilterChain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+@SpringBootTest
+@Transactional
+class NPlusOneDetectorTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Autowired
+	NPlusOneDetector detector;
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	SqlBudgetFilter filter;
+	MemberSearchCondition condition;
+
+	@BeforeEach
+	public void before() {
+		filter = new SqlBudgetFilter(detector, meterRegistry, 1.0);
+
+		// 팀이 모두 달라서 member.team을 지연 로딩하면 팀마다 select가 한 번씩 나간다.
+		for (int i = 0; i < 12; i++) {
+			Team team = new Team("nPlusOneTeam" + i);
+			em.persist(team);
+			em.persist(new Member("nPlusOneMember" + i, 5000 + i, team));
+		}
+		em.flush();
+		em.clear();
+
+		condition = new MemberSearchCondition();
+		condition.setAgeGoe(5000);
+	}
+
+	@Test
+	public void detectRepeatedStatements() throws Exception {
+		double before = exceeded("repeated");
+
+		doFilter((request, response) -> {
+			List<Member> members = memberJpaRepository.searchMember(condition);
+			for (Member member : members) {
+				member.getTeam().getName();
+			}
+		});
+
+		assertThat(exceeded("repeated") - before).isEqualTo(1);
+	}
+
+	@Test
+	public void withinBudget() throws Exception {
+		double before = exceeded("repeated");
+
+		doFilter((request, response) -> memberJpaRepository.search(condition));
+
+		assertThat(exceeded("repeated")).isEqualTo(before);
+	}
+
+	private void doFilter(FilterChain chain) throws Exception {
+		filter.doFilter(new MockHttpServletRequest("GET", "/v1/members"), new MockHttpServletResponse(), chain);
+	}
+
+	private double exceeded(String type) {
+		Counter counter = meterRegistry.find("querydsl.sql.budget.exceeded")
+				.tags("type", type, "request", "GET UNKNOWN")
+				.counter();
+		return counter != null ? counter.count() : 0;
+	}
+
+}
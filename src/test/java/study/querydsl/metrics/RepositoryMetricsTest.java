@@ -0,0 +1,112 @@
+package study.querydsl.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberTestRepository;
+
+@SpringBootTest
+@Transactional
+class RepositoryMetricsTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	RepositoryMetrics repositoryMetrics;
+
+	@BeforeEach
+	public void before() {
+		Team team = new Team("metricsTeam");
+		em.persist(team);
+		for (int i = 0; i < 3; i++) {
+			em.persist(new Member("metricsMember" + i, 10 + i, team));
+		}
+		em.flush();
+	}
+
+	@Test
+	public void search() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("metricsTeam");
+		condition.setAgeGoe(10);
+
+		DistributionSummary rows = summary("querydsl.repository.rows", "MemberJpaRepository", "search",
+				"teamName,ageGoe");
+		long before = rows == null ? 0 : rows.count();
+		double totalBefore = rows == null ? 0 : rows.totalAmount();
+
+		memberJpaRepository.search(condition);
+
+		rows = summary("querydsl.repository.rows", "MemberJpaRepository", "search", "teamName,ageGoe");
+		assertThat(rows.count()).isEqualTo(before + 1);
+		assertThat(rows.totalAmount() - totalBefore).isEqualTo(3);
+		assertThat(summary("querydsl.repository.statements", "MemberJpaRepository", "search", "teamName,ageGoe")
+				.max()).isGreaterThanOrEqualTo(1);
+		assertThat(timer("MemberJpaRepository", "search", "teamName,ageGoe").count()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	public void searchPageComplex() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("metricsTeam");
+
+		memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+
+		assertThat(timer("MemberRepositoryImpl", "searchPageComplex", "teamName").count()).isGreaterThanOrEqualTo(1);
+		// 컨텐츠 + count
+		assertThat(summary("querydsl.repository.statements", "MemberRepositoryImpl", "searchPageComplex", "teamName")
+				.max()).isGreaterThanOrEqualTo(2);
+	}
+
+	@Test
+	public void applyPagination() {
+		MemberTestRepository memberTestRepository = new MemberTestRepository(Member.class);
+		memberTestRepository.setEntityManager(em);
+		memberTestRepository.setRepositoryMetrics(repositoryMetrics);
+
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("metricsTeam");
+		memberTestRepository.applyPagenation(condition, PageRequest.of(0, 10));
+
+		assertThat(timer("MemberTestRepository", "applyPagination", "team.name").count()).isGreaterThanOrEqualTo(1);
+	}
+
+	private Timer timer(String repository, String method, String shape) {
+		return meterRegistry.find("querydsl.repository.latency")
+				.tags("repository", repository, "method", method, "shape", shape, "outcome", "success")
+				.timer();
+	}
+
+	private DistributionSummary summary(String name, String repository, String method, String shape) {
+		return meterRegistry.find(name)
+				.tags("repository", repository, "method", method, "shape", shape, "outcome", "success")
+				.summary();
+	}
+
+}
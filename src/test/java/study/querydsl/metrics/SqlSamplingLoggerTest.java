@@ -0,0 +1,77 @@
+package study.querydsl.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import com.p6spy.engine.common.ConnectionInformation;
+import com.p6spy.engine.common.StatementInformation;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+class SqlSamplingLoggerTest {
+
+	Logger logger = (Logger) LoggerFactory.getLogger(SqlSamplingLogger.LOGGER_NAME);
+	ListAppender<ILoggingEvent> appender = new ListAppender<>();
+	StatementInformation statement = new StatementInformation(ConnectionInformation.fromTestConnection(null));
+
+	@BeforeEach
+	public void before() {
+		appender.start();
+		logger.addAppender(appender);
+		statement.setStatementQuery("select * from member where age > 10");
+	}
+
+	@AfterEach
+	public void after() {
+		logger.detachAppender(appender);
+	}
+
+	@Test
+	public void slowStatementIsAlwaysLogged() {
+		SqlSamplingLogger sqlLogger = new SqlSamplingLogger(Duration.ofMillis(200), 0);
+
+		sqlLogger.onAfterAnyExecute(statement, TimeUnit.MILLISECONDS.toNanos(10), null);
+		sqlLogger.onAfterAnyExecute(statement, TimeUnit.MILLISECONDS.toNanos(250), null);
+
+		assertThat(appender.list).hasSize(1);
+		ILoggingEvent event = appender.list.get(0);
+		assertThat(event.getLevel()).isEqualTo(Level.WARN);
+		assertThat(event.getFormattedMessage()).startsWith("slow 250ms").endsWith("select * from member where age > 10");
+	}
+
+	@Test
+	public void failedStatementIsAlwaysLogged() {
+		SqlSamplingLogger sqlLogger = new SqlSamplingLogger(Duration.ofMillis(200), 0);
+
+		sqlLogger.onAfterAnyExecute(statement, 0, new SQLException("broken"));
+
+		assertThat(appender.list).hasSize(1);
+		assertThat(appender.list.get(0).getFormattedMessage()).startsWith("failed").endsWith(": broken");
+	}
+
+	@Test
+	public void sampling() {
+		new SqlSamplingLogger(Duration.ofMillis(200), 1.0).onAfterAnyExecute(statement, 0, null);
+		assertThat(appender.list).hasSize(1);
+		assertThat(appender.list.get(0).getLevel()).isEqualTo(Level.INFO);
+
+		appender.list.clear();
+		SqlSamplingLogger sqlLogger = new SqlSamplingLogger(Duration.ofMillis(200), 0.5);
+		for (int i = 0; i < 1000; i++) {
+			sqlLogger.onAfterAnyExecute(statement, 0, null);
+		}
+		assertThat(appender.list.size()).isBetween(350, 650);
+	}
+
+}
@@ -0,0 +1,131 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import study.querydsl.controller.MemberController;
+import study.querydsl.dto.IndexAdviceDto;
+import study.querydsl.dto.MemberSearchCondition;
+
+/**
+ * 인덱스를 만들면 트랜잭션이 커밋되므로 @Transactional 없이 데이터 없는 테이블로 EXPLAIN 한다.
+ */
+@SpringBootTest
+class IndexAdvisorTest {
+
+	@Autowired
+	MemberSearchQueryCache queryCache;
+
+	@Autowired
+	EntityManagerFactory emf;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	IndexAdvisor endpointAdvisor;
+
+	@Autowired
+	MemberController memberController;
+
+	IndexAdvisor advisor;
+
+	@BeforeEach
+	public void before() {
+		advisor = new IndexAdvisor(queryCache, emf, jdbcTemplate);
+		advisor.record(condition("member1", null, null));
+		advisor.record(condition("member1", null, 10));
+		advisor.record(condition("member1", null, 20));
+		advisor.record(condition(null, "teamA", null));
+	}
+
+	@Test
+	public void recordEndpointConditions() {
+		long before = endpointAdvisor.getShapeCounts()[MemberSearchQueryCache.USERNAME];
+
+		memberController.searchMemberV1(condition("indexAdvisorMember", null, null),
+				new ServletWebRequest(new MockHttpServletRequest()));
+
+		assertThat(endpointAdvisor.getShapeCounts()[MemberSearchQueryCache.USERNAME]).isEqualTo(before + 1);
+	}
+
+	@Test
+	public void skipInvalidConditions() {
+		MemberSearchCondition invalid = new MemberSearchCondition();
+		invalid.setUsernameContains("ab");
+		advisor.record(invalid);
+
+		assertThat(advisor.getShapeCounts()[MemberSearchQueryCache.USERNAME_CONTAINS]).isZero();
+		assertThat(advisor.advise()).extracting("shape").doesNotContain("usernameContains");
+
+		// 400으로 끝난 요청 뒤에도 /v1/index/advice는 정상 응답한다.
+		assertThatThrownBy(() -> memberController.searchMemberV1(invalid,
+				new ServletWebRequest(new MockHttpServletRequest()))).isInstanceOf(RuntimeException.class);
+		assertThat(endpointAdvisor.advise()).extracting("shape").doesNotContain("usernameContains");
+	}
+
+	@Test
+	public void adviseIndexesForFullScans() {
+		List<IndexAdviceDto> advices = advisor.advise();
+		Map<String, IndexAdviceDto> byShape = advices.stream()
+				.collect(Collectors.toMap(IndexAdviceDto::getShape, Function.identity()));
+
+		assertThat(advices.get(0).getShape()).isEqualTo("username,ageGoe");
+		assertThat(advices.get(0).getRequests()).isEqualTo(2);
+
+		// (username)은 (username, age)로 대신한다.
+		for (String shape : new String[] { "username", "username,ageGoe" }) {
+			assertThat(byShape.get(shape).isFullScan()).isTrue();
+			assertThat(byShape.get(shape).getScannedTables()).containsExactly("member");
+			assertThat(byShape.get(shape).getIndexes())
+					.containsExactly("Member: @Index(name = \"idx_member_username_age\", columnList = \"username, age\")");
+			assertThat(byShape.get(shape).getDdl())
+					.containsExactly("create index if not exists idx_member_username_age on member (username, age)");
+		}
+
+		// team 조건은 left join 뒤에 적용되므로 member 인덱스로 줄일 수 없다.
+		assertThat(byShape.get("teamName").isFullScan()).isTrue();
+		assertThat(byShape.get("teamName").getIndexes()).isEmpty();
+		assertThat(byShape.get("teamName").getNote()).isNotNull();
+	}
+
+	@Test
+	public void applyAdvisedIndexes() {
+		try {
+			assertThat(advisor.apply()).containsExactly(
+					"create index if not exists idx_member_username_age on member (username, age)");
+
+			Map<String, IndexAdviceDto> byShape = advisor.advise().stream()
+					.collect(Collectors.toMap(IndexAdviceDto::getShape, Function.identity()));
+			assertThat(byShape.get("username").isFullScan()).isFalse();
+			assertThat(byShape.get("username").getPlan()).containsIgnoringCase("idx_member_username_age");
+			assertThat(byShape.get("username,ageGoe").isFullScan()).isFalse();
+		} finally {
+			jdbcTemplate.execute("drop index if exists idx_member_username_age");
+		}
+	}
+
+	private static MemberSearchCondition condition(String username, String teamName, Integer ageGoe) {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsername(username);
+		condition.setTeamName(teamName);
+		condition.setAgeGoe(ageGoe);
+		return condition;
+	}
+
+}
@@ -0,0 +1,56 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+@SpringBootTest
+class MemberBulkLoaderTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberBulkLoader memberBulkLoader;
+
+	@Test
+	@Transactional
+	public void load() {
+		Team teamA = new Team("bulkTeamA");
+		Team teamB = new Team("bulkTeamB");
+
+		List<Member> members = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			Member newMember = new Member("bulkMember" + i, i % 100);
+			newMember.setTeam(i % 2 == 0 ? teamA : teamB);
+			members.add(newMember);
+		}
+
+		long loaded = memberBulkLoader.load(Arrays.asList(teamA, teamB), members);
+
+		Long count = new JPAQueryFactory(em)
+				.select(member.count())
+				.from(member)
+				.where(member.team.id.in(teamA.getId(), teamB.getId()))
+				.fetchOne();
+
+		assertThat(loaded).isEqualTo(250);
+		assertThat(count).isEqualTo(250);
+	}
+
+}
@@ -3,6 +3,7 @@ package study.querydsl.repository;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -68,5 +69,27 @@ class MemberJpaRepositoryTest {
 		List<MemberTeamDto> result = memberJpaRepository.search(condition);
 		assertThat(result).extracting("username").containsExactly("member4");
 	}
+	
+	@Test
+	public void exportSearch() {
+		Team team = new Team("exportTeam");
+		em.persist(team);
+		
+		for (int i = 0; i < 5; i++) {
+			em.persist(new Member("exportMember" + i, i, team));
+		}
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("exportTeam");
+		
+		List<MemberTeamDto> rows = new ArrayList<>();
+		long count = memberJpaRepository.exportSearch(condition, 2, rows::add);
+		
+		assertThat(count).isEqualTo(5);
+		assertThat(rows).extracting("username")
+			.containsExactlyInAnyOrder("exportMember0", "exportMember1", "exportMember2", "exportMember3", "exportMember4");
+		// 호출한 트랜잭션의 영속성 컨텍스트를 비우지 않는다.
+		assertThat(em.contains(team)).isTrue();
+	}
 
 }
@@ -1,8 +1,10 @@
 package study.querydsl.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -12,12 +14,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.transaction.annotation.Transactional;
 
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
+import study.querydsl.repository.support.CountedPage.Total;
+import study.querydsl.repository.support.KeysetSlice;
 
 @SpringBootTest
 @Transactional
@@ -98,6 +105,28 @@ class MemberRepositoryTest {
 		assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
 	}
 	
+	@Test
+	public void searchPageSimpleWithCountStrategy() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		for (int i = 0; i < 5; i++) {
+			em.persist(new Member("member" + i, 10 * i, teamA));
+		}
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		PageRequest pageRequest = PageRequest.of(0, 3);
+		Page<MemberTeamDto> exact = memberRepository.searchPageSimple(condition, pageRequest);
+		
+		// count 방법만 바뀌고 조회 쿼리, 순서는 searchPageSimple과 같다.
+		CountedPage<MemberTeamDto> capped = memberRepository.searchPageSimple(condition, pageRequest,
+				CountStrategy.CAPPED);
+		
+		assertThat(capped.getContent()).usingRecursiveFieldByFieldElementComparator()
+			.containsExactlyElementsOf(exact.getContent());
+		assertThat(capped.getTotalElements()).isEqualTo(exact.getTotalElements());
+		assertThat(capped.getCountStrategy()).isEqualTo(CountStrategy.CAPPED);
+	}
+	
 	@Test
 	public void searchPageComplex() {
 		Team teamA = new Team("teamA");
@@ -124,5 +153,85 @@ class MemberRepositoryTest {
 		assertThat(result.getSize()).isEqualTo(3);
 		assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
 	}
+	
+	@Test
+	public void searchSlice() {
+		Team team = new Team("sliceTeam");
+		em.persist(team);
+		
+		for (int i = 0; i < 5; i++) {
+			em.persist(new Member("sliceMember" + i, 10 + i, team));
+		}
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("sliceTeam");
+		
+		KeysetSlice<MemberTeamDto> first = memberRepository.searchSlice(condition, null, 2);
+		assertThat(first.getContent()).extracting("username").containsExactly("sliceMember0", "sliceMember1");
+		assertThat(first.isHasNext()).isTrue();
+		
+		KeysetSlice<MemberTeamDto> second = memberRepository.searchSlice(condition, first.getNextCursor(), 2);
+		assertThat(second.getContent()).extracting("username").containsExactly("sliceMember2", "sliceMember3");
+		
+		KeysetSlice<MemberTeamDto> last = memberRepository.searchSlice(condition, second.getNextCursor(), 2);
+		assertThat(last.getContent()).extracting("username").containsExactly("sliceMember4");
+		assertThat(last.isHasNext()).isFalse();
+		assertThat(last.getNextCursor()).isNull();
+		
+		// 형식이 틀린 cursor는 NumberFormatException이 아닌 잘못된 요청
+		for (String cursor : List.of("not-a-cursor", "YWJj")) {
+			assertThatThrownBy(() -> memberRepository.searchSlice(condition, cursor, 2))
+				.hasMessageContaining("Invalid cursor")
+				.hasRootCauseInstanceOf(NumberFormatException.class);
+		}
+	}
+	
+	@Test
+	public void streamPage() {
+		Team team = new Team("streamTeam");
+		em.persist(team);
+		
+		for (int i = 0; i < 5; i++) {
+			em.persist(new Member("streamMember" + i, 10 + i, team));
+		}
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("streamTeam");
+		
+		List<MemberTeamDto> rows = new ArrayList<>();
+		Total total = memberRepository.streamPage(condition, PageRequest.of(1, 2), CountStrategy.EXACT, rows::add);
+		
+		assertThat(rows).extracting("username").containsExactly("streamMember2", "streamMember3");
+		assertThat(rows).extracting("teamName").containsOnly("streamTeam");
+		assertThat(total.getValue()).isEqualTo(5);
+		assertThat(total.isExact()).isTrue();
+		
+		// 마지막 페이지는 count 없이 컨텐츠 건수로 total을 구한다.
+		rows.clear();
+		Total last = memberRepository.streamPage(condition, PageRequest.of(2, 2), CountStrategy.EXACT, rows::add);
+		assertThat(rows).extracting("username").containsExactly("streamMember4");
+		assertThat(last.getValue()).isEqualTo(5);
+	}
+	
+	@Test
+	public void searchSliceByPage() {
+		Team team = new Team("pageSliceTeam");
+		em.persist(team);
+		
+		for (int i = 0; i < 5; i++) {
+			em.persist(new Member("pageSliceMember" + i, 10 + i, team));
+		}
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("pageSliceTeam");
+		
+		Slice<MemberTeamDto> first = memberRepository.searchSlice(condition, PageRequest.of(0, 2));
+		assertThat(first.getContent()).extracting("username").containsExactly("pageSliceMember0", "pageSliceMember1");
+		assertThat(first.hasNext()).isTrue();
+		
+		Slice<MemberTeamDto> last = memberRepository.searchSlice(condition, PageRequest.of(2, 2));
+		assertThat(last.getContent()).extracting("username").containsExactly("pageSliceMember4");
+		assertThat(last.hasNext()).isFalse();
+	}
 
 }
@@ -0,0 +1,185 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.CountQueryOptimizer;
+import study.querydsl.repository.support.UsernameSearch;
+
+@SpringBootTest
+@Transactional
+class MemberSearchQueryCacheTest {
+
+	@Autowired
+	EntityManager em;
+	@Autowired
+	CountQueryOptimizer countQueryOptimizer;
+
+	JPAQueryFactory queryFactory;
+
+	@BeforeEach
+	public void before() {
+		queryFactory = new JPAQueryFactory(em);
+
+		Team teamA = new Team("shapeTeamA");
+		Team teamB = new Team("shapeTeamB");
+		em.persist(teamA);
+		em.persist(teamB);
+
+		em.persist(new Member("shapeMember1", 10, teamA));
+		em.persist(new Member("shapeMember2", 20, teamA));
+		em.persist(new Member("shapeMember3", 30, teamB));
+		em.persist(new Member("shapeMember4", 40, teamB));
+		em.persist(new Member("shapeMember5", 50, null));
+	}
+
+	@Test
+	public void sameResultForEveryShape() {
+		MemberSearchQueryCache cache = new MemberSearchQueryCache();
+
+		for (int shape = 0; shape < MemberSearchQueryCache.SHAPE_COUNT; shape++) {
+			MemberSearchCondition condition = conditionOf(shape, "shapeMember3", "shapeTeamB", 20, 40);
+
+			assertThat(cache.search(em, condition))
+				.usingRecursiveFieldByFieldElementComparator()
+				.containsExactlyInAnyOrderElementsOf(querydslSearch(condition));
+		}
+
+		assertThat(cache.getMissCount()).isEqualTo(MemberSearchQueryCache.SHAPE_COUNT);
+		assertThat(cache.getHitCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void countMatchesContentForEveryShape() {
+		MemberSearchQueryCache cache = new MemberSearchQueryCache();
+
+		for (int shape = 0; shape < MemberSearchQueryCache.SHAPE_COUNT; shape++) {
+			MemberSearchCondition condition = conditionOf(shape, "shapeMember3", "shapeTeamB", 20, 40);
+
+			// searchPageComplex는 컨텐츠(캐시된 JPQL)와 count를 같은 searchQuery()에서 만든다.
+			long count = countQueryOptimizer.count(em,
+					MemberSearchQueryCache.searchQuery(queryFactory.query(), condition, false));
+			assertThat(count).isEqualTo(cache.search(em, condition).size());
+		}
+	}
+
+	@Test
+	public void orderedById() {
+		MemberSearchQueryCache cache = new MemberSearchQueryCache();
+
+		for (int shape = 0; shape < MemberSearchQueryCache.SHAPE_COUNT; shape++) {
+			MemberSearchCondition condition = conditionOf(shape, "shapeMember3", "shapeTeamB", 20, 40);
+			assertThat(cache.jpql(em, shape, condition)).endsWith("order by member1.id asc");
+		}
+		cache.setReadModelEnabled(true);
+		assertThat(cache.jpql(em, 0, new MemberSearchCondition())).endsWith("order by memberTeamView.memberId asc");
+	}
+
+	@Test
+	public void reuseCompiledQuery() {
+		MemberSearchQueryCache cache = new MemberSearchQueryCache();
+
+		MemberSearchCondition first = new MemberSearchCondition();
+		first.setTeamName("shapeTeamA");
+		MemberSearchCondition second = new MemberSearchCondition();
+		second.setTeamName("shapeTeamB");
+
+		assertThat(cache.search(em, first)).extracting("username").containsExactly("shapeMember1", "shapeMember2");
+		assertThat(cache.search(em, second)).extracting("username").containsExactly("shapeMember3", "shapeMember4");
+
+		assertThat(cache.getMissCount()).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getShapeCounts()[MemberSearchQueryCache.TEAM_NAME]).isEqualTo(2);
+	}
+
+	@Test
+	public void pagedSearch() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsername("shapeMember2");
+
+		assertThat(new MemberSearchQueryCache().search(em, condition, 0, 1))
+			.extracting("username").containsExactly("shapeMember2");
+	}
+
+	private MemberSearchCondition conditionOf(int shape, String username, String teamName, int ageGoe, int ageLoe) {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		if ((shape & MemberSearchQueryCache.USERNAME) != 0) {
+			condition.setUsername(username);
+		}
+		if ((shape & MemberSearchQueryCache.TEAM_NAME) != 0) {
+			condition.setTeamName(teamName);
+		}
+		if ((shape & MemberSearchQueryCache.AGE_GOE) != 0) {
+			condition.setAgeGoe(ageGoe);
+		}
+		if ((shape & MemberSearchQueryCache.AGE_LOE) != 0) {
+			condition.setAgeLoe(ageLoe);
+		}
+		if ((shape & MemberSearchQueryCache.USERNAME_IGNORE_CASE) != 0) {
+			condition.setUsernameIgnoreCase(username.toUpperCase());
+		}
+		if ((shape & MemberSearchQueryCache.USERNAME_STARTS_WITH) != 0) {
+			condition.setUsernameStartsWith("SHAPEmem");
+		}
+		if ((shape & MemberSearchQueryCache.USERNAME_CONTAINS) != 0) {
+			condition.setUsernameContains("Member");
+		}
+		return condition;
+	}
+
+	private List<MemberTeamDto> querydslSearch(MemberSearchCondition condition) {
+		return queryFactory
+				.select(new QMemberTeamDto(
+						member.id.as("memberId"),
+						member.username,
+						member.age,
+						team.id.as("teamId"),
+						team.name.as("teamName")))
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(
+						usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe()),
+						UsernameSearch.of(condition))
+				.fetch();
+	}
+
+	private BooleanExpression usernameEq(String username) {
+		return hasText(username) ? member.username.eq(username) : null;
+	}
+
+	private BooleanExpression teamNameEq(String teamName) {
+		return hasText(teamName) ? team.name.eq(teamName) : null;
+	}
+
+	private BooleanExpression ageGoe(Integer ageGoe) {
+		return ageGoe != null ? member.age.goe(ageGoe) : null;
+	}
+
+	private BooleanExpression ageLoe(Integer ageLoe) {
+		return ageLoe != null ? member.age.loe(ageLoe) : null;
+	}
+
+}
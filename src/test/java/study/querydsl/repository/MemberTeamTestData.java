@@ -0,0 +1,63 @@
+package study.querydsl.repository;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import javax.persistence.EntityManager;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * 테스트, 벤치마크(src/jmh)에서 같이 쓰는 Team, Member 데이터
+ */
+public final class MemberTeamTestData {
+
+	private MemberTeamTestData() {
+	}
+
+	/**
+	 * size 건의 Member를 필요할 때 하나씩 만든다. (한꺼번에 메모리에 올리지 않는다.)
+	 * 이름은 bulkMember{i}, 나이는 0 ~ 99 를 돌아가며 준다.
+	 */
+	public static Iterable<Member> members(int size, Team team) {
+		return () -> new Iterator<Member>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < size;
+			}
+
+			@Override
+			public Member next() {
+				Member newMember = new Member("bulkMember" + i, i++ % 100);
+				newMember.setTeam(team);
+				return newMember;
+			}
+		};
+	}
+
+	/**
+	 * 팀과 그 팀의 Member를 지운다. 트랜잭션 안에서 부른다.
+	 *
+	 * 벌크 delete(JPQL)는 엔티티 리스너를 타지 않으므로 username 조각(member_username_gram),
+	 * 읽기 모델(member_team)도 같이 지운다.
+	 */
+	public static void deleteTeams(EntityManager em, Collection<Long> teamIds) {
+		em.createNativeQuery("delete from member_username_gram where member_id in"
+				+ " (select member_id from member where team_id in (:teamIds))")
+			.setParameter("teamIds", teamIds)
+			.executeUpdate();
+		em.createNativeQuery("delete from member_team where team_id in (:teamIds)")
+			.setParameter("teamIds", teamIds)
+			.executeUpdate();
+		em.createQuery("delete from Member m where m.team.id in :teamIds")
+			.setParameter("teamIds", teamIds)
+			.executeUpdate();
+		em.createQuery("delete from Team t where t.id in :teamIds")
+			.setParameter("teamIds", teamIds)
+			.executeUpdate();
+	}
+
+}
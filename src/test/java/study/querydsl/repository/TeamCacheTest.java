@@ -0,0 +1,119 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * 트랜잭션(세션)이 달라도 Team은 2차 캐시에서 가져온다.
+ * 캐시는 커밋된 데이터만 담으므로 @Transactional 롤백 테스트가 아니라 직접 커밋하고 지운다.
+ */
+@SpringBootTest
+class TeamCacheTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	TeamRepository teamRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	TransactionTemplate tx;
+	Statistics statistics;
+	Team teamA;
+	Team teamB;
+
+	@BeforeEach
+	public void before() {
+		tx = new TransactionTemplate(transactionManager);
+		statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+		teamA = new Team("cacheTeamA");
+		teamB = new Team("cacheTeamB");
+		tx.executeWithoutResult(status -> {
+			em.persist(teamA);
+			em.persist(teamB);
+			em.persist(new Member("cacheMember1", 10, teamA));
+			em.persist(new Member("cacheMember2", 20, teamA));
+			em.persist(new Member("cacheMember3", 30, teamB));
+		});
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> MemberTeamTestData.deleteTeams(em,
+				Arrays.asList(teamA.getId(), teamB.getId())));
+	}
+
+	@Test
+	public void memberTeamNavigation() {
+		// 첫 번째 세션에서 캐시를 채운다.
+		navigateTeams();
+
+		for (int i = 0; i < 3; i++) {
+			statistics.clear();
+
+			List<String> teamNames = navigateTeams();
+
+			assertThat(teamNames).containsExactly("cacheTeamA", "cacheTeamA", "cacheTeamB");
+			// member 조회 쿼리 한 번만 나가고 team은 조회하지 않는다.
+			assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+			assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(2);
+			assertThat(statistics.getCacheRegionStatistics("team").getHitCount()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	public void findByNameQueryCache() {
+		tx.executeWithoutResult(status -> teamRepository.findByName("cacheTeamA"));
+
+		statistics.clear();
+		Team findTeam = tx.execute(status -> teamRepository.findByName("cacheTeamA").get());
+
+		assertThat(findTeam.getId()).isEqualTo(teamA.getId());
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(0);
+		assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void queryCacheInvalidatedOnUpdate() {
+		tx.executeWithoutResult(status -> teamRepository.findByName("cacheTeamB"));
+		tx.executeWithoutResult(status -> em.find(Team.class, teamB.getId()).setName("cacheTeamB2"));
+
+		Optional<Team> oldName = tx.execute(status -> teamRepository.findByName("cacheTeamB"));
+		Optional<Team> newName = tx.execute(status -> teamRepository.findByName("cacheTeamB2"));
+
+		assertThat(oldName).isEmpty();
+		assertThat(newName).isPresent();
+	}
+
+	private List<String> navigateTeams() {
+		return tx.execute(status -> em.createQuery(
+				"select m from Member m where m.username like 'cacheMember%' order by m.username", Member.class)
+				.getResultList()
+				.stream()
+				.map(m -> m.getTeam().getName())
+				.collect(Collectors.toList()));
+	}
+
+}
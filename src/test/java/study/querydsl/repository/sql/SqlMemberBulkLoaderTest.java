@@ -0,0 +1,122 @@
+package study.querydsl.repository.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamRepository;
+
+@SpringBootTest
+class SqlMemberBulkLoaderTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	SqlMemberBulkLoader sqlMemberBulkLoader;
+
+	@Autowired
+	TeamRepository teamRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	@Transactional
+	public void load() {
+		Team teamA = new Team("sqlBulkTeamA");
+		Team teamB = new Team("sqlBulkTeamB");
+
+		List<Member> members = new ArrayList<>();
+		for (int i = 0; i < 2500; i++) {
+			Member newMember = new Member("sqlBulkMember" + i, i % 100);
+			newMember.setTeam(i % 2 == 0 ? teamA : teamB);
+			members.add(newMember);
+		}
+
+		long loaded = sqlMemberBulkLoader.load(Arrays.asList(teamA, teamB), members);
+
+		Long count = new JPAQueryFactory(em)
+				.select(member.count())
+				.from(member)
+				.where(member.team.id.in(teamA.getId(), teamB.getId()))
+				.fetchOne();
+		assertThat(loaded).isEqualTo(2500);
+		assertThat(count).isEqualTo(2500);
+
+		// 읽기 모델(member_team)도 같이 채운다.
+		Long readModelCount = new JPAQueryFactory(em)
+				.select(memberTeamView.count())
+				.from(memberTeamView)
+				.where(memberTeamView.teamName.in("sqlBulkTeamA", "sqlBulkTeamB"))
+				.fetchOne();
+		assertThat(readModelCount).isEqualTo(2500);
+
+		// JPA로 읽어도 같은 데이터
+		Member findMember = em.find(Member.class, members.get(1).getId());
+		assertThat(findMember.getUsername()).isEqualTo("sqlBulkMember1");
+		assertThat(findMember.getTeam().getName()).isEqualTo("sqlBulkTeamB");
+
+		// JPA로 저장하는 id와 겹치지 않는다.
+		Member jpaMember = new Member("jpaMember", 10, teamA);
+		em.persist(jpaMember);
+		em.flush();
+		assertThat(jpaMember.getId()).isNotIn(members.stream().map(Member::getId).toArray());
+
+		// 감사 컬럼도 JPA로 저장한 것과 같게 채운다.
+		assertThat(auditColumns(members.get(1).getId())).containsExactly(auditColumns(jpaMember.getId()));
+	}
+
+	private Object[] auditColumns(Long memberId) {
+		return (Object[]) em.createNativeQuery("select created_by, last_modified_by,"
+				+ " created_date is null, last_modified_date is null from member where member_id = ?")
+				.setParameter(1, memberId)
+				.getSingleResult();
+	}
+
+	@Test
+	public void evictQueryCacheAfterCommit() {
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		Team newTeam = new Team("sqlEvictTeam");
+		tx.executeWithoutResult(status -> teamRepository.findByName("sqlEvictTeam"));
+
+		tx.executeWithoutResult(status -> {
+			sqlMemberBulkLoader.load(Arrays.asList(newTeam), new ArrayList<>());
+
+			// 커밋 전에는 쿼리 캐시를 그대로 둔다.
+			statistics.clear();
+			assertThat(teamRepository.findByName("sqlEvictTeam")).isEmpty();
+			assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+		});
+
+		statistics.clear();
+		assertThat(tx.<Optional<Team>> execute(status -> teamRepository.findByName("sqlEvictTeam"))).isPresent();
+		assertThat(statistics.getQueryCacheHitCount()).isEqualTo(0);
+
+		tx.executeWithoutResult(status -> em.createQuery("delete from Team t where t.id = :teamId")
+				.setParameter("teamId", newTeam.getId())
+				.executeUpdate());
+	}
+
+}
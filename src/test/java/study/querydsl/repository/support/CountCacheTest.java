@@ -0,0 +1,128 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import study.querydsl.entity.DataVersion;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+class CountCacheTest {
+	
+	static final Duration REFRESH_TIMEOUT = Duration.ofSeconds(30);
+	
+	PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+	CountCache countCache;
+	
+	@AfterEach
+	public void after() {
+		countCache.shutdown();
+	}
+
+	@Test
+	public void cacheHit() {
+		countCache = new CountCache(transactionManager, 10, Duration.ofMinutes(1), Duration.ofMinutes(1), REFRESH_TIMEOUT);
+		AtomicLong loads = new AtomicLong();
+		
+		assertThat(countCache.get("key", () -> loads.incrementAndGet() * 10)).isEqualTo(10);
+		assertThat(countCache.get("key", () -> loads.incrementAndGet() * 10)).isEqualTo(10);
+		
+		assertThat(loads.get()).isEqualTo(1);
+		assertThat(countCache.getHitCount()).isEqualTo(1);
+		assertThat(countCache.getMissCount()).isEqualTo(1);
+	}
+	
+	@Test
+	public void invalidateAll() {
+		countCache = new CountCache(transactionManager, 10, Duration.ofMinutes(1), Duration.ofMinutes(1), REFRESH_TIMEOUT);
+		AtomicLong loads = new AtomicLong();
+		
+		countCache.get("key", loads::incrementAndGet);
+		countCache.invalidateAll();
+		
+		assertThat(countCache.get("key", loads::incrementAndGet)).isEqualTo(2);
+	}
+	
+	@Test
+	public void invalidatedByMemberAndTeamOnly() {
+		countCache = new CountCache(transactionManager, 10, Duration.ofMinutes(1), Duration.ofMinutes(1), REFRESH_TIMEOUT);
+
+		assertThat(countCache.isInvalidatedBy(Member.class)).isTrue();
+		assertThat(countCache.isInvalidatedBy(Team.class)).isTrue();
+		// 변경 이벤트가 없는 엔티티
+		assertThat(countCache.isInvalidatedBy(DataVersion.class)).isFalse();
+	}
+	
+	@Test
+	public void expireAfterTtl() {
+		countCache = new CountCache(transactionManager, 10, Duration.ZERO, Duration.ZERO, REFRESH_TIMEOUT);
+		AtomicLong loads = new AtomicLong();
+		
+		countCache.get("key", loads::incrementAndGet);
+		
+		assertThat(countCache.get("key", loads::incrementAndGet)).isEqualTo(2);
+	}
+	
+	@Test
+	public void evictEldest() {
+		countCache = new CountCache(transactionManager, 2, Duration.ofMinutes(1), Duration.ofMinutes(1), REFRESH_TIMEOUT);
+		
+		countCache.get("a", () -> 1);
+		countCache.get("b", () -> 2);
+		countCache.get("c", () -> 3);
+		
+		assertThat(countCache.get("a", () -> 100)).isEqualTo(100);
+	}
+	
+	@Test
+	public void refreshAhead() throws Exception {
+		countCache = new CountCache(transactionManager, 10, Duration.ofMinutes(1), Duration.ZERO, REFRESH_TIMEOUT);
+		AtomicLong loads = new AtomicLong();
+		
+		countCache.get("key", loads::incrementAndGet);
+		
+		// 캐시된 값을 바로 돌려주고 백그라운드에서 다시 읽어온다.
+		assertThat(countCache.get("key", loads::incrementAndGet)).isEqualTo(1);
+		
+		for (int i = 0; i < 100 && loads.get() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(loads.get()).isEqualTo(2);
+		// 요청의 트랜잭션 밖이므로 읽기 전용 트랜잭션을 따로 연다.
+		verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+	}
+	
+	@Test
+	public void refreshWithRefreshTimeout() throws Exception {
+		countCache = new CountCache(transactionManager, 10, Duration.ofMinutes(1), Duration.ZERO, REFRESH_TIMEOUT);
+		List<Duration> timeouts = new CopyOnWriteArrayList<>();
+		
+		countCache.get("key", Duration.ofMillis(200), timeout -> {
+			timeouts.add(timeout);
+			return 1;
+		});
+		countCache.get("key", Duration.ofMillis(100), timeout -> {
+			timeouts.add(timeout);
+			return 1;
+		});
+		
+		for (int i = 0; i < 100 && timeouts.size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		// 처음 요청은 요청의 남은 시간으로, 백그라운드는 요청과 상관없이 refresh-timeout으로 읽는다.
+		assertThat(timeouts).containsExactly(Duration.ofMillis(200), REFRESH_TIMEOUT);
+	}
+
+}
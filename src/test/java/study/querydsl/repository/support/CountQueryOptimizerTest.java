@@ -0,0 +1,253 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import java.time.Duration;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+@SpringBootTest
+@Transactional
+class CountQueryOptimizerTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	CountQueryOptimizer countQueryOptimizer;
+
+	JPAQueryFactory queryFactory;
+	Team teamA;
+	Team teamB;
+
+	@BeforeEach
+	public void before() {
+		queryFactory = new JPAQueryFactory(em);
+
+		teamA = new Team("optimizerTeamA");
+		teamB = new Team("optimizerTeamB");
+		em.persist(teamA);
+		em.persist(teamB);
+
+		em.persist(new Member("optimizerMember1", 10, teamA));
+		em.persist(new Member("optimizerMember2", 20, teamA));
+		em.persist(new Member("optimizerMember3", 30, teamB));
+		em.persist(new Member("optimizerMember4", 40, null));
+	}
+
+	@Test
+	public void removeUnusedJoin() {
+		JPAQuery<Member> query = queryFactory
+				.selectFrom(member)
+				.leftJoin(member.team, team)
+				.where(member.username.startsWith("optimizerMember"), member.age.goe(20))
+				.orderBy(member.username.desc())
+				.offset(1)
+				.limit(1);
+
+		JPAQuery<Member> optimized = countQueryOptimizer.optimize(em, query);
+
+		assertThat(optimized.toString()).doesNotContain("join").doesNotContain("order by");
+		assertThat(optimized.fetchCount()).isEqualTo(query.fetchCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void teamNameToTeamId() {
+		JPAQuery<Member> query = queryFactory
+				.selectFrom(member)
+				.leftJoin(member.team, team)
+				.where(team.name.eq("optimizerTeamA"), member.age.loe(30));
+
+		JPAQuery<Member> optimized = countQueryOptimizer.optimize(em, query);
+
+		assertThat(optimized.toString()).doesNotContain("join").contains("member1.team.id");
+		assertThat(optimized.fetchCount()).isEqualTo(query.fetchCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void unknownTeamNameKeepsJoin() {
+		JPAQuery<Member> query = queryFactory
+				.selectFrom(member)
+				.leftJoin(member.team, team)
+				.where(team.name.eq("optimizerNoTeam"));
+
+		JPAQuery<Member> optimized = countQueryOptimizer.optimize(em, query);
+
+		assertThat(optimized.toString()).contains("left join");
+		assertThat(optimized.fetchCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void keepJoinsThatChangeRowCount() {
+		// inner join은 team이 없는 member를 거른다.
+		JPAQuery<Member> innerJoin = queryFactory
+				.selectFrom(member)
+				.join(member.team, team)
+				.where(member.username.startsWith("optimizerMember"));
+		assertThat(countQueryOptimizer.optimize(em, innerJoin).fetchCount()).isEqualTo(3);
+
+		// 컬렉션 join은 row가 늘어난다.
+		QMember teamMember = new QMember("teamMember");
+		JPAQuery<Team> collectionJoin = queryFactory
+				.selectFrom(team)
+				.leftJoin(team.members, teamMember)
+				.where(team.name.startsWith("optimizerTeam"));
+		assertThat(countQueryOptimizer.optimize(em, collectionJoin).fetchCount())
+				.isEqualTo(collectionJoin.fetchCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void fetchJoin() {
+		JPAQuery<Member> query = queryFactory
+				.selectFrom(member)
+				.join(member.team, team).fetchJoin()
+				.where(member.username.startsWith("optimizerMember"));
+
+		assertThat(countQueryOptimizer.optimize(em, query).fetchCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void renameTeam() {
+		JPAQuery<Member> query = queryFactory
+				.selectFrom(member)
+				.leftJoin(member.team, team)
+				.where(team.name.eq("optimizerTeamB"));
+		assertThat(countQueryOptimizer.optimize(em, query).fetchCount()).isEqualTo(1);
+
+		teamA.setName("optimizerTeamB");
+		em.flush();
+
+		assertThat(countQueryOptimizer.optimize(em, query).fetchCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void countFromContentQuery() {
+		JPAQuery<MemberTeamDto> contentQuery = queryFactory
+				.select(new QMemberTeamDto(
+						member.id.as("memberId"),
+						member.username,
+						member.age,
+						team.id.as("teamId"),
+						team.name.as("teamName")))
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(member.username.startsWith("optimizerMember"), team.name.eq("optimizerTeamA"))
+				.orderBy(member.age.desc())
+				.offset(1)
+				.limit(1);
+
+		assertThat(countQueryOptimizer.count(em, contentQuery)).isEqualTo(2);
+	}
+
+	@Test
+	public void countDistinctOnlyForToManyJoin() {
+		QMember teamMember = new QMember("teamMember");
+
+		// 컬렉션 join으로 team이 중복되므로 count(distinct team)
+		JPAQuery<Team> toManyJoin = queryFactory
+				.selectFrom(team)
+				.distinct()
+				.join(team.members, teamMember)
+				.where(team.name.startsWith("optimizerTeam"), teamMember.age.goe(10));
+		assertThat(countQueryOptimizer.count(em, toManyJoin)).isEqualTo(toManyJoin.fetch().size()).isEqualTo(2);
+
+		// 참조하지 않는 컬렉션 left join은 빼고 count(team)
+		JPAQuery<Team> unusedJoin = queryFactory
+				.selectFrom(team)
+				.distinct()
+				.leftJoin(team.members, teamMember)
+				.where(team.name.startsWith("optimizerTeam"));
+		assertThat(countQueryOptimizer.optimize(em, unusedJoin).toString()).doesNotContain("join");
+		assertThat(countQueryOptimizer.count(em, unusedJoin)).isEqualTo(2);
+
+		// distinct가 아니면 중복된 row 수 그대로
+		JPAQuery<Team> notDistinct = queryFactory
+				.selectFrom(team)
+				.join(team.members, teamMember)
+				.where(team.name.startsWith("optimizerTeam"));
+		assertThat(countQueryOptimizer.count(em, notDistinct)).isEqualTo(notDistinct.fetch().size()).isEqualTo(3);
+	}
+
+	@Test
+	public void countGroupsAndDistinctRows() {
+		// group by 식 하나: team이 없는 member도 한 그룹이다. (teamA, teamB, null)
+		JPAQuery<Long> groupByTeam = queryFactory
+				.select(member.count())
+				.from(member)
+				.where(member.username.startsWith("optimizerMember"))
+				.groupBy(member.team.id);
+		assertThat(countQueryOptimizer.count(em, groupByTeam)).isEqualTo(groupByTeam.fetch().size()).isEqualTo(3);
+
+		// having이 있으면 row를 읽어서 센다.
+		JPAQuery<Long> having = groupByTeam.clone(em).having(member.count().goe(2));
+		assertThat(countQueryOptimizer.count(em, having)).isEqualTo(1);
+
+		// 루트가 아닌 distinct 조회
+		JPAQuery<Integer> distinctAge = queryFactory
+				.select(member.age.divide(20))
+				.distinct()
+				.from(member)
+				.where(member.username.startsWith("optimizerMember"));
+		assertThat(countQueryOptimizer.count(em, distinctAge)).isEqualTo(distinctAge.fetch().size()).isEqualTo(3);
+
+		JPAQuery<String> distinctTeamName = queryFactory
+				.select(team.name)
+				.distinct()
+				.from(member)
+				.leftJoin(member.team, team)
+				.where(member.username.startsWith("optimizerMember"));
+		assertThat(countQueryOptimizer.count(em, distinctTeamName)).isEqualTo(3);
+	}
+
+	@Test
+	public void countUpTo() {
+		JPAQuery<Member> query = queryFactory
+				.selectFrom(member)
+				.leftJoin(member.team, team)
+				.where(member.username.startsWith("optimizerMember"))
+				.orderBy(member.username.asc());
+
+		assertThat(countQueryOptimizer.countUpTo(em, query, 2)).isEqualTo(2);
+		assertThat(countQueryOptimizer.countUpTo(em, query, 10)).isEqualTo(4);
+		// 쿼리 타임아웃 힌트를 줘도 결과는 같다. (1초 미만은 1초로 준다.)
+		assertThat(countQueryOptimizer.countUpTo(em, query, 10, Duration.ofMillis(300))).isEqualTo(4);
+		assertThat(countQueryOptimizer.count(em, query, Duration.ofSeconds(3))).isEqualTo(4);
+
+		// distinct 루트 조회는 컬렉션 join으로 중복된 루트를 한 번만 센다.
+		QMember teamMember = new QMember("teamMember");
+		JPAQuery<Team> toManyJoin = queryFactory
+				.selectFrom(team)
+				.distinct()
+				.join(team.members, teamMember)
+				.where(team.name.startsWith("optimizerTeam"));
+		assertThat(countQueryOptimizer.countUpTo(em, toManyJoin, 10)).isEqualTo(2);
+		assertThat(countQueryOptimizer.countUpTo(em, toManyJoin, 1)).isEqualTo(1);
+
+		// group by는 그룹 수를 센다. (teamA, teamB, null)
+		JPAQuery<Long> groupByTeam = queryFactory
+				.select(member.count())
+				.from(member)
+				.where(member.username.startsWith("optimizerMember"))
+				.groupBy(member.team.id);
+		assertThat(countQueryOptimizer.countUpTo(em, groupByTeam, 2)).isEqualTo(2);
+		assertThat(countQueryOptimizer.countUpTo(em, groupByTeam, 10)).isEqualTo(3);
+	}
+
+}
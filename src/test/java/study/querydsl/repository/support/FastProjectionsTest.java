@@ -0,0 +1,119 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+import org.junit.jupiter.api.Test;
+
+import com.querydsl.core.types.ExpressionException;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.UserDto;
+
+class FastProjectionsTest {
+
+	@Test
+	public void bean() {
+		assertSameResult(
+				Projections.bean(MemberDto.class, member.username, member.age),
+				FastProjections.bean(MemberDto.class, member.username, member.age),
+				"member1", 10);
+	}
+
+	@Test
+	public void fields() {
+		assertSameResult(
+				Projections.fields(MemberDto.class, member.username, member.age),
+				FastProjections.fields(MemberDto.class, member.username, member.age),
+				"member1", 10);
+	}
+
+	@Test
+	public void constructor() {
+		assertSameResult(
+				Projections.constructor(UserDto.class, member.username, member.age),
+				FastProjections.constructor(UserDto.class, member.username, member.age),
+				"member1", 10);
+	}
+
+	@Test
+	public void alias() {
+		FactoryExpression<UserDto> projection = FastProjections.fields(UserBean.class,
+				member.username.as("name"), member.age);
+
+		UserDto userDto = projection.newInstance("member1", 10);
+		assertThat(userDto.getName()).isEqualTo("member1");
+		assertThat(userDto.getAge()).isEqualTo(10);
+	}
+
+	@Test
+	public void unknownPropertyIsIgnored() {
+		// UserDto에는 username이 없으므로 Projections와 같이 무시된다.
+		assertSameResult(
+				Projections.fields(UserBean.class, member.username, member.age),
+				FastProjections.fields(UserBean.class, member.username, member.age),
+				"member1", 10);
+		assertSameResult(
+				Projections.bean(UserBean.class, member.username, member.age),
+				FastProjections.bean(UserBean.class, member.username, member.age),
+				"member1", 10);
+	}
+
+	@Test
+	public void nullValue() {
+		assertSameResult(
+				Projections.bean(MemberDto.class, member.username, member.age),
+				FastProjections.bean(MemberDto.class, member.username, member.age),
+				null, null);
+		assertSameResult(
+				Projections.fields(MemberDto.class, member.username, member.age),
+				FastProjections.fields(MemberDto.class, member.username, member.age),
+				null, null);
+
+		// 기본형 생성자 파라미터에는 기본값
+		UserDto userDto = FastProjections.constructor(UserDto.class, member.username, member.age)
+				.newInstance("member1", null);
+		assertThat(userDto.getAge()).isEqualTo(0);
+	}
+
+	@Test
+	public void noMatchingConstructor() {
+		assertThatThrownBy(() -> FastProjections.constructor(UserDto.class, member.username))
+				.isInstanceOf(ExpressionException.class);
+	}
+
+	@Test
+	public void sameJpql() {
+		assertThat(jpql(FastProjections.fields(UserBean.class, member.username.as("name"), member.age)))
+				.isEqualTo(jpql(Projections.fields(UserBean.class, member.username.as("name"), member.age)));
+		assertThat(jpql(FastProjections.constructor(UserDto.class, member.username, member.age)))
+				.isEqualTo(jpql(Projections.constructor(UserDto.class, member.username, member.age)));
+	}
+
+	private <T> void assertSameResult(FactoryExpression<T> expected, FactoryExpression<T> actual, Object... args) {
+		assertThat(actual.getArgs()).isEqualTo(expected.getArgs());
+		assertThat(actual.newInstance(args)).isEqualTo(expected.newInstance(args));
+	}
+
+	private String jpql(FactoryExpression<?> projection) {
+		JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+		serializer.serialize(new JPAQuery<Void>().select(projection).from(member).getMetadata(), false, null);
+		return serializer.toString();
+	}
+
+	/** 기본 생성자가 있는 UserDto */
+	public static class UserBean extends UserDto {
+
+		public UserBean() {
+			super(null, 0);
+		}
+
+	}
+
+}
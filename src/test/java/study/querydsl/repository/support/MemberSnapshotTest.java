@@ -0,0 +1,244 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchQueryCache;
+
+/**
+ * 스냅샷은 커밋된 변경만 반영하므로 @Transactional 없이 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest
+class MemberSnapshotTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	MemberSearchQueryCache queryCache;
+
+	@Autowired
+	MemberSnapshot memberSnapshot;
+
+	TransactionTemplate tx;
+	Long teamAId;
+	Long teamBId;
+	Long member1Id;
+
+	@BeforeEach
+	public void before() {
+		tx = new TransactionTemplate(transactionManager);
+		tx.executeWithoutResult(status -> {
+			Team teamA = new Team("snapshotTeamA");
+			Team teamB = new Team("snapshotTeamB");
+			em.persist(teamA);
+			em.persist(teamB);
+			Member member1 = new Member("SnapshotMember1", 10, teamA);
+			em.persist(member1);
+			em.persist(new Member("snapshotMember2", 20, teamA));
+			em.persist(new Member("snapshotMember3", 30, teamB));
+			em.persist(new Member("snapshotMember4", 40, null));
+			teamAId = teamA.getId();
+			teamBId = teamB.getId();
+			member1Id = member1.getId();
+		});
+
+		memberSnapshot.setEnabled(true);
+		memberSnapshot.reload();
+	}
+
+	@AfterEach
+	public void after() {
+		memberSnapshot.setEnabled(false);
+		tx.executeWithoutResult(status -> {
+			String members = "select member_id from member where username_normalized like 'snapshot%'";
+			jdbcTemplate.update("delete from member_username_gram where member_id in (" + members + ")");
+			jdbcTemplate.update("delete from member_team where member_id in (" + members + ")");
+			jdbcTemplate.update("delete from member where member_id in (" + members + ")");
+			jdbcTemplate.update("delete from team where name like 'snapshotTeam%'");
+		});
+		em.getEntityManagerFactory().getCache().evictAll();
+	}
+
+	@Test
+	public void searchSameAsDatabase() {
+		long hits = memberSnapshot.getHitCount();
+
+		for (MemberSearchCondition condition : List.of(
+				condition(null, null, null, null),
+				condition("snapshotMember2", null, null, null),
+				condition(null, "snapshotTeamA", null, null),
+				condition(null, null, 15, 35),
+				condition(null, "snapshotTeamA", 15, null))) {
+			List<MemberTeamDto> database = tx.execute(status -> queryCache.search(em, condition));
+			assertThat(memberRepository.search(condition))
+					.usingRecursiveFieldByFieldElementComparator()
+					.containsExactlyInAnyOrderElementsOf(database);
+		}
+
+		MemberSearchCondition ignoreCase = condition(null, null, null, null);
+		ignoreCase.setUsernameIgnoreCase("SNAPSHOTMEMBER1");
+		assertThat(memberRepository.search(ignoreCase)).extracting("memberId").containsExactly(member1Id);
+
+		MemberSearchCondition contains = condition(null, null, null, null);
+		contains.setUsernameContains("MEMBER3");
+		assertThat(memberRepository.search(contains)).extracting("username").containsExactly("snapshotMember3");
+
+		assertThat(memberSnapshot.getHitCount()).isEqualTo(hits + 7);
+	}
+
+	@Test
+	public void pageWithBitmapCount() {
+		MemberSearchCondition teamA = condition(null, "snapshotTeamA", null, null);
+		// 나이 구간 경계가 맞지 않아 후보를 행마다 확인하는 조건
+		MemberSearchCondition ageRange = condition(null, null, 15, 35);
+		PageRequest firstPage = PageRequest.of(0, 1);
+
+		CountedPage<MemberTeamDto> teamPage = memberRepository.searchPageComplex(teamA, firstPage,
+				CountStrategy.CAPPED);
+		CountedPage<MemberTeamDto> agePage = memberRepository.searchPageComplex(ageRange, PageRequest.of(1, 1),
+				CountStrategy.ESTIMATED);
+
+		assertThat(teamPage.getContent()).extracting("memberId").containsExactly(member1Id);
+		assertThat(teamPage.getContent()).extracting("teamName").containsExactly("snapshotTeamA");
+		assertThat(teamPage.getTotalElements()).isEqualTo(2);
+		// bitmap count는 정확하지만 요청한 방법을 그대로 담는다.
+		assertThat(teamPage.getCountStrategy()).isEqualTo(CountStrategy.CAPPED);
+		assertThat(teamPage.isTotalExact()).isTrue();
+		assertThat(agePage.getContent()).extracting("username").containsExactly("snapshotMember3");
+		assertThat(agePage.getTotalElements()).isEqualTo(2);
+		assertThat(agePage.getCountStrategy()).isEqualTo(CountStrategy.ESTIMATED);
+		assertThat(agePage.isTotalExact()).isTrue();
+
+		tx.executeWithoutResult(status -> em.remove(em.find(Member.class, member1Id)));
+
+		assertThat(memberRepository.searchPageComplex(teamA, firstPage).getTotalElements()).isEqualTo(1);
+
+		memberSnapshot.setEnabled(false);
+		assertThat(memberRepository.searchPageComplex(ageRange, PageRequest.of(0, 10)).getTotalElements())
+				.isEqualTo(2);
+	}
+
+	@Test
+	public void applyCommittedChanges() {
+		tx.executeWithoutResult(status -> {
+			em.find(Team.class, teamAId).setName("snapshotTeamRenamed");
+			Member member1 = em.find(Member.class, member1Id);
+			member1.setAge(11);
+			member1.changeTeam(em.find(Team.class, teamBId));
+			em.persist(new Member("snapshotMember5", 50, em.find(Team.class, teamAId)));
+			Team teamC = new Team("snapshotTeamC");
+			em.persist(teamC);
+			em.persist(new Member("snapshotMember6", 60, teamC));
+		});
+		long fallbacks = memberSnapshot.getFallbackCount();
+
+		assertThat(memberRepository.search(condition(null, "snapshotTeamRenamed", null, null)))
+				.extracting("username").containsExactly("snapshotMember2", "snapshotMember5");
+		assertThat(memberRepository.search(condition(null, "snapshotTeamB", null, null)))
+				.extracting("username", "age").containsExactly(
+						tuple("SnapshotMember1", 11),
+						tuple("snapshotMember3", 30));
+		assertThat(memberRepository.search(condition(null, "snapshotTeamC", null, null)))
+				.extracting("username").containsExactly("snapshotMember6");
+
+		tx.executeWithoutResult(status -> em.remove(em.find(Member.class, member1Id)));
+
+		assertThat(memberRepository.search(condition(null, "snapshotTeamB", null, null)))
+				.extracting("username").containsExactly("snapshotMember3");
+		assertThat(memberSnapshot.getFallbackCount()).isEqualTo(fallbacks);
+	}
+
+	@Test
+	public void applyOutOfOrderIds() {
+		// 먼저 id를 받은 트랜잭션이 다른 스레드의 트랜잭션보다 나중에 커밋된다.
+		tx.executeWithoutResult(status -> {
+			em.persist(new Member("snapshotMember5", 50, null));
+			em.flush();
+			CompletableFuture.runAsync(() -> tx.executeWithoutResult(
+					other -> em.persist(new Member("snapshotMember6", 60, null)))).join();
+		});
+		// 버리고 다시 읽지 않고 제자리에 끼워 넣는다.
+		assertThat(memberSnapshot.isReady()).isTrue();
+		long fallbacks = memberSnapshot.getFallbackCount();
+
+		assertThat(memberRepository.search(condition(null, null, 35, null)))
+				.extracting("username").containsExactly("snapshotMember4", "snapshotMember5", "snapshotMember6");
+		assertThat(memberRepository.search(condition(null, null, 50, 59)))
+				.extracting("username").containsExactly("snapshotMember5");
+		assertThat(memberRepository.search(condition(null, "snapshotTeamB", null, null)))
+				.extracting("username").containsExactly("snapshotMember3");
+		assertThat(memberSnapshot.getFallbackCount()).isEqualTo(fallbacks);
+	}
+
+	@Test
+	public void ignoreRollbackAndReadOwnWrites() {
+		MemberSearchCondition condition = condition("SnapshotMember1", null, null, null);
+
+		tx.executeWithoutResult(status -> {
+			em.find(Member.class, member1Id).setAge(99);
+			em.flush();
+			// 변경한 트랜잭션 안에서는 DB로 조회한다.
+			assertThat(memberRepository.search(condition)).extracting("age").containsExactly(99);
+			status.setRollbackOnly();
+		});
+
+		assertThat(memberRepository.search(condition)).extracting("age").containsExactly(10);
+	}
+
+	@Test
+	public void fallbackWhenInvalidated() {
+		memberSnapshot.invalidate();
+		long fallbacks = memberSnapshot.getFallbackCount();
+
+		assertThat(memberRepository.search(condition("snapshotMember2", null, null, null)))
+				.extracting("age").containsExactly(20);
+		assertThat(memberSnapshot.getFallbackCount()).isEqualTo(fallbacks + 1);
+
+		memberSnapshot.reload();
+		assertThat(memberSnapshot.isReady()).isTrue();
+	}
+
+	private MemberSearchCondition condition(String username, String teamName, Integer ageGoe, Integer ageLoe) {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsername(username);
+		condition.setTeamName(teamName);
+		condition.setAgeGoe(ageGoe);
+		condition.setAgeLoe(ageLoe);
+		if (username == null && teamName == null) {
+			// 다른 테스트가 남긴 회원은 제외
+			condition.setUsernameStartsWith("snapshot");
+		}
+		return condition;
+	}
+
+}
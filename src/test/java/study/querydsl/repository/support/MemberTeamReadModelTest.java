@@ -0,0 +1,172 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.ReadModelCheckDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchQueryCache;
+
+@SpringBootTest
+@Transactional
+class MemberTeamReadModelTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	MemberSearchQueryCache queryCache;
+
+	@Autowired
+	MemberTeamReadModel memberTeamReadModel;
+
+	Team teamA;
+	Team teamB;
+	Member member1;
+
+	@BeforeEach
+	public void before() {
+		teamA = new Team("readModelTeamA");
+		teamB = new Team("readModelTeamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		member1 = new Member("readModelMember1", 10, teamA);
+		em.persist(member1);
+		em.persist(new Member("readModelMember2", 20, teamA));
+		em.persist(new Member("readModelMember3", 30, teamB));
+		em.persist(new Member("readModelMember4", 40, null));
+		em.flush();
+		em.clear();
+	}
+
+	@AfterEach
+	public void after() {
+		queryCache.setReadModelEnabled(false);
+	}
+
+	@Test
+	public void persist() {
+		assertThat(row(member1.getId()))
+				.containsEntry("USERNAME", "readModelMember1")
+				.containsEntry("USERNAME_NORMALIZED", "readmodelmember1")
+				.containsEntry("AGE", 10)
+				.containsEntry("TEAM_ID", teamA.getId())
+				.containsEntry("TEAM_NAME", "readModelTeamA");
+	}
+
+	@Test
+	public void update() {
+		// team은 지연 로딩 프록시인 채로 수정
+		Member findMember = em.find(Member.class, member1.getId());
+		findMember.setUsername("ReadModelRenamed");
+		findMember.setAge(11);
+		em.flush();
+
+		assertThat(row(member1.getId()))
+				.containsEntry("USERNAME", "ReadModelRenamed")
+				.containsEntry("USERNAME_NORMALIZED", "readmodelrenamed")
+				.containsEntry("AGE", 11)
+				.containsEntry("TEAM_NAME", "readModelTeamA");
+	}
+
+	@Test
+	public void changeTeam() {
+		Member findMember = em.find(Member.class, member1.getId());
+		findMember.changeTeam(em.find(Team.class, teamB.getId()));
+		em.flush();
+
+		assertThat(row(member1.getId()))
+				.containsEntry("TEAM_ID", teamB.getId())
+				.containsEntry("TEAM_NAME", "readModelTeamB");
+	}
+
+	@Test
+	public void renameTeam() {
+		em.find(Team.class, teamA.getId()).setName("readModelTeamRenamed");
+		em.flush();
+
+		assertThat(jdbcTemplate.queryForList("select team_name from member_team where team_id = ?", String.class,
+				teamA.getId())).containsExactly("readModelTeamRenamed", "readModelTeamRenamed");
+	}
+
+	@Test
+	public void remove() {
+		em.remove(em.find(Member.class, member1.getId()));
+		em.flush();
+
+		assertThat(jdbcTemplate.queryForObject("select count(*) from member_team where member_id = ?", Long.class,
+				member1.getId())).isZero();
+	}
+
+	@Test
+	public void search() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsernameStartsWith("readModel");
+		condition.setAgeGoe(15);
+		PageRequest pageRequest = PageRequest.of(0, 2);
+
+		List<MemberTeamDto> joined = memberRepository.search(condition);
+		long joinedTotal = memberRepository.searchPageComplex(condition, pageRequest).getTotalElements();
+
+		queryCache.setReadModelEnabled(true);
+		List<MemberTeamDto> readModel = memberRepository.search(condition);
+		long readModelTotal = memberRepository.searchPageComplex(condition, pageRequest).getTotalElements();
+
+		assertThat(readModel).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(joined);
+		assertThat(readModel).extracting("username")
+				.containsExactly("readModelMember2", "readModelMember3", "readModelMember4");
+		assertThat(readModelTotal).isEqualTo(joinedTotal).isEqualTo(3);
+
+		condition.setTeamName("readModelTeamA");
+		condition.setUsernameContains("member");
+		assertThat(memberRepository.search(condition)).extracting("username").containsExactly("readModelMember2");
+	}
+
+	@Test
+	public void checkAndRebuild() {
+		memberTeamReadModel.rebuild();
+		assertThat(memberTeamReadModel.check().isConsistent()).isTrue();
+
+		// 엔티티 리스너를 타지 않는 변경
+		jdbcTemplate.update("update member set age = 99 where member_id = ?", member1.getId());
+		jdbcTemplate.update("delete from member_team where username = 'readModelMember2'");
+
+		ReadModelCheckDto check = memberTeamReadModel.check();
+		assertThat(check.isConsistent()).isFalse();
+		assertThat(check.getMismatched()).isEqualTo(1);
+		assertThat(check.getMissing()).isEqualTo(1);
+		assertThat(check.getSampleMemberIds()).contains(member1.getId());
+
+		memberTeamReadModel.rebuild();
+		assertThat(memberTeamReadModel.check().isConsistent()).isTrue();
+		assertThat(row(member1.getId())).containsEntry("AGE", 99);
+	}
+
+	private Map<String, Object> row(Long memberId) {
+		return jdbcTemplate.queryForMap("select * from member_team where member_id = ?", memberId);
+	}
+
+}
@@ -0,0 +1,156 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import study.querydsl.controller.MemberController;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * 버전은 커밋된 변경만 반영하므로 @Transactional 없이 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest
+class MemberTeamVersionTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	MemberTeamVersion memberTeamVersion;
+
+	@Autowired
+	MemberController memberController;
+
+	TransactionTemplate tx;
+	Long member1Id;
+
+	@BeforeEach
+	public void before() {
+		tx = new TransactionTemplate(transactionManager);
+		tx.executeWithoutResult(status -> {
+			Team teamA = new Team("versionTeamA");
+			em.persist(teamA);
+			Member member1 = new Member("versionMember1", 10, teamA);
+			em.persist(member1);
+			member1Id = member1.getId();
+		});
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> {
+			String members = "select member_id from member where username_normalized like 'version%'";
+			jdbcTemplate.update("delete from member_username_gram where member_id in (" + members + ")");
+			jdbcTemplate.update("delete from member_team where member_id in (" + members + ")");
+			jdbcTemplate.update("delete from member where member_id in (" + members + ")");
+			jdbcTemplate.update("delete from team where name like 'versionTeam%'");
+		});
+		em.getEntityManagerFactory().getCache().evictAll();
+	}
+
+	@Test
+	public void bumpOnlyAfterCommit() {
+		long version = memberTeamVersion.get();
+
+		tx.executeWithoutResult(status -> {
+			em.find(Member.class, member1Id).setAge(11);
+			em.flush();
+			// 커밋 전에는 그대로
+			assertThat(memberTeamVersion.get()).isEqualTo(version);
+		});
+		assertThat(memberTeamVersion.get()).isEqualTo(version + 1);
+
+		tx.executeWithoutResult(status -> {
+			em.find(Member.class, member1Id).setAge(12);
+			em.flush();
+			status.setRollbackOnly();
+		});
+		assertThat(memberTeamVersion.get()).isEqualTo(version + 1);
+	}
+
+	@Test
+	public void sharedAcrossInstances() {
+		// 다른 서버의 MemberTeamVersion
+		MemberTeamVersion otherServer = new MemberTeamVersion(jdbcTemplate, transactionManager);
+		MemberSearchCondition condition = condition("versionTeamA");
+		String etag = otherServer.etag("v1", condition);
+		assertThat(memberTeamVersion.etag("v1", condition)).isEqualTo(etag);
+
+		tx.executeWithoutResult(status -> em.find(Member.class, member1Id).setAge(11));
+
+		assertThat(otherServer.get()).isEqualTo(memberTeamVersion.get());
+		assertThat(otherServer.etag("v1", condition)).isNotEqualTo(etag);
+	}
+
+	@Test
+	public void etagPerConditionAndPage() {
+		MemberSearchCondition condition = condition("versionTeamA");
+
+		assertThat(memberTeamVersion.etag("v2", condition, PageRequest.of(0, 20)))
+				.startsWith("W/\"")
+				.isEqualTo(memberTeamVersion.etag("v2", condition("versionTeamA"), PageRequest.of(0, 20)))
+				.isNotEqualTo(memberTeamVersion.etag("v2", condition, PageRequest.of(1, 20)))
+				.isNotEqualTo(memberTeamVersion.etag("v2", condition("versionTeamB"), PageRequest.of(0, 20)));
+	}
+
+	@Test
+	public void notModifiedUntilCommit() {
+		MemberSearchCondition condition = condition("versionTeamA");
+
+		MockHttpServletResponse first = new MockHttpServletResponse();
+		assertThat(memberController.searchMemberV1(condition, request(null, first)))
+				.extracting("age").containsExactly(10);
+		String etag = first.getHeader(HttpHeaders.ETAG);
+		assertThat(etag).isNotNull();
+
+		MockHttpServletResponse second = new MockHttpServletResponse();
+		assertThat(memberController.searchMemberV1(condition, request(etag, second))).isNull();
+		assertThat(second.getStatus()).isEqualTo(304);
+
+		tx.executeWithoutResult(status -> em.find(Member.class, member1Id).setAge(11));
+
+		MockHttpServletResponse third = new MockHttpServletResponse();
+		assertThat(memberController.searchMemberV1(condition, request(etag, third)))
+				.extracting("age").containsExactly(11);
+		assertThat(third.getStatus()).isEqualTo(200);
+		assertThat(third.getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+	}
+
+	private ServletWebRequest request(String ifNoneMatch, MockHttpServletResponse response) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/members");
+		if (ifNoneMatch != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+		return new ServletWebRequest(request, response);
+	}
+
+	private MemberSearchCondition condition(String teamName) {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName(teamName);
+		return condition;
+	}
+
+}
@@ -0,0 +1,143 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import java.util.Collections;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.CountedPage.Total;
+
+@SpringBootTest
+@Transactional
+class PageCounterTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	CountCache countCache;
+
+	@Autowired
+	CountQueryOptimizer countQueryOptimizer;
+
+	@Autowired
+	MemberStatistics memberStatistics;
+
+	JPAQueryFactory queryFactory;
+	PageCounter pageCounter;
+
+	@BeforeEach
+	public void before() {
+		queryFactory = new JPAQueryFactory(em);
+		pageCounter = new PageCounter(countCache, countQueryOptimizer, memberStatistics, 10);
+
+		Team teamA = new Team("counterTeamA");
+		em.persist(teamA);
+		for (int i = 0; i < 30; i++) {
+			em.persist(new Member("counterMember" + i, i, teamA));
+		}
+		em.flush();
+		memberStatistics.refresh();
+	}
+
+	@Test
+	public void exact() {
+		Total total = pageCounter.count(em, teamQuery(), CountStrategy.EXACT, null);
+
+		assertThat(total.getValue()).isEqualTo(30);
+		assertThat(total.getStrategy()).isEqualTo(CountStrategy.EXACT);
+		assertThat(total.isExact()).isTrue();
+	}
+
+	@Test
+	public void capped() {
+		Total total = pageCounter.count(em, teamQuery(), CountStrategy.CAPPED, null);
+
+		assertThat(total.getValue()).isEqualTo(10);
+		assertThat(total.getStrategy()).isEqualTo(CountStrategy.CAPPED);
+		assertThat(total.isExact()).isFalse();
+
+		// cap보다 적으면 정확한 값
+		Total underCap = pageCounter.count(em, teamQuery().where(member.age.lt(5)), CountStrategy.CAPPED, null);
+		assertThat(underCap.getValue()).isEqualTo(5);
+		assertThat(underCap.isExact()).isTrue();
+	}
+
+	@Test
+	public void estimated() {
+		Total total = pageCounter.count(em, teamQuery(), CountStrategy.ESTIMATED, null);
+
+		// 팀 인원 수 통계로 추정
+		assertThat(total.getValue()).isEqualTo(30);
+		assertThat(total.getStrategy()).isEqualTo(CountStrategy.ESTIMATED);
+		assertThat(total.isExact()).isFalse();
+	}
+
+	@Test
+	public void estimatedFallsBackToCapped() {
+		// like 조건은 통계로 추정할 수 없다.
+		JPAQuery<Member> query = teamQuery().where(member.username.startsWith("counterMember"));
+
+		Total total = pageCounter.count(em, query, CountStrategy.ESTIMATED, null);
+
+		assertThat(total.getStrategy()).isEqualTo(CountStrategy.CAPPED);
+		assertThat(total.getValue()).isEqualTo(10);
+	}
+
+	@Test
+	public void knownTotal() {
+		// 이미 정확한 건수를 알아도 CAPPED는 cap에서 자른다.
+		Total capped = pageCounter.of(30, CountStrategy.CAPPED);
+		assertThat(capped.getValue()).isEqualTo(10);
+		assertThat(capped.getStrategy()).isEqualTo(CountStrategy.CAPPED);
+		assertThat(capped.isExact()).isFalse();
+
+		Total underCap = pageCounter.of(5, CountStrategy.CAPPED);
+		assertThat(underCap.getValue()).isEqualTo(5);
+		assertThat(underCap.isExact()).isTrue();
+
+		Total estimated = pageCounter.of(30, CountStrategy.ESTIMATED);
+		assertThat(estimated.getValue()).isEqualTo(30);
+		assertThat(estimated.getStrategy()).isEqualTo(CountStrategy.ESTIMATED);
+		assertThat(estimated.isExact()).isTrue();
+	}
+
+	@Test
+	public void countedPage() {
+		CountedPage<Member> page = CountedPage.of(teamQuery().limit(5).fetch(), PageRequest.of(0, 5),
+				CountStrategy.CAPPED, () -> pageCounter.count(em, teamQuery(), CountStrategy.CAPPED, null));
+
+		assertThat(page.getTotalElements()).isEqualTo(10);
+		assertThat(page.getCountStrategy()).isEqualTo(CountStrategy.CAPPED);
+		assertThat(page.isTotalExact()).isFalse();
+
+		// 컨텐츠만으로 total을 알 수 있으면 정확한 값
+		CountedPage<Member> shortPage = CountedPage.of(Collections.emptyList(), PageRequest.of(0, 5),
+				CountStrategy.ESTIMATED, () -> Total.estimated(100));
+		assertThat(shortPage.getTotalElements()).isEqualTo(0);
+		assertThat(shortPage.isTotalExact()).isTrue();
+	}
+
+	private JPAQuery<Member> teamQuery() {
+		return queryFactory
+				.selectFrom(member)
+				.leftJoin(member.team, team)
+				.where(team.name.eq("counterTeamA"));
+	}
+
+}
@@ -0,0 +1,185 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class ParallelPageExecutorTest {
+
+	ParallelPageExecutor executor;
+
+	@AfterEach
+	public void after() {
+		executor.shutdown();
+		TransactionSynchronizationManager.setActualTransactionActive(false);
+	}
+
+	@Test
+	public void parallel() {
+		executor = newExecutor(true, Duration.ofSeconds(5));
+		AtomicReference<String> countThread = new AtomicReference<>();
+		// 컨텐츠와 count가 서로 시작할 때까지 기다린다. 차례로 실행되면 먼저 실행된 쪽이 기다리다 실패한다.
+		CyclicBarrier bothStarted = new CyclicBarrier(2);
+
+		Page<String> page = executor.getPage(() -> {
+			await(bothStarted);
+			return Arrays.asList("a", "b");
+		}, PageRequest.of(0, 2), remaining -> {
+			countThread.set(Thread.currentThread().getName());
+			await(bothStarted);
+			return 10;
+		});
+
+		assertThat(page.getContent()).containsExactly("a", "b");
+		assertThat(page.getTotalElements()).isEqualTo(10);
+		assertThat(countThread.get()).startsWith("parallel-count-");
+	}
+
+	@Test
+	public void countTimeout() {
+		executor = newExecutor(true, Duration.ofMillis(100));
+
+		assertThatThrownBy(() -> executor.getPage(() -> Arrays.asList("a", "b"), PageRequest.of(0, 2),
+				remaining -> {
+					sleep(2000);
+					return 10;
+				}))
+			.isInstanceOf(QueryTimeoutException.class);
+	}
+
+	@Test
+	public void countGetsRemainingTimeout() {
+		executor = newExecutor(true, Duration.ofSeconds(5));
+		AtomicReference<Duration> countTimeout = new AtomicReference<>();
+
+		executor.getPage(() -> Arrays.asList("a", "b"), PageRequest.of(0, 2), remaining -> {
+			countTimeout.set(remaining);
+			return 10;
+		});
+
+		// count 쿼리에 쿼리 타임아웃 힌트로 줄 남은 시간
+		assertThat(countTimeout.get()).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void disabled() {
+		executor = newExecutor(false, Duration.ofSeconds(5));
+		AtomicReference<String> countThread = new AtomicReference<>();
+
+		Page<String> page = executor.getPage(() -> Arrays.asList("a", "b"), PageRequest.of(0, 2), remaining -> {
+			countThread.set(Thread.currentThread().getName());
+			return 10;
+		});
+
+		assertThat(page.getTotalElements()).isEqualTo(10);
+		assertThat(countThread.get()).isEqualTo(Thread.currentThread().getName());
+	}
+
+	@Test
+	public void noTimeoutWhenDisabled() {
+		executor = newExecutor(false, Duration.ofSeconds(5));
+		AtomicReference<Duration> countTimeout = new AtomicReference<>(Duration.ZERO);
+
+		executor.getPage(() -> Arrays.asList("a", "b"), PageRequest.of(0, 2), remaining -> {
+			countTimeout.set(remaining);
+			return 10;
+		});
+
+		assertThat(countTimeout.get()).isNull();
+	}
+
+	@Test
+	public void sequentialInTransaction() {
+		executor = newExecutor(true, Duration.ofSeconds(5));
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		AtomicReference<String> countThread = new AtomicReference<>();
+
+		executor.getPage(() -> Arrays.asList("a", "b"), PageRequest.of(0, 2), remaining -> {
+			countThread.set(Thread.currentThread().getName());
+			return 10;
+		});
+
+		assertThat(countThread.get()).isEqualTo(Thread.currentThread().getName());
+	}
+
+	@Test
+	public void countNotNeededOnLastPage() {
+		executor = newExecutor(true, Duration.ofSeconds(5));
+		AtomicBoolean countFinished = new AtomicBoolean();
+
+		Page<String> page = executor.getPage(() -> Arrays.asList("a"), PageRequest.of(0, 2), remaining -> {
+			sleep(1000);
+			// 취소(interrupt)되면 끝까지 실행하지 않은 것으로 본다.
+			countFinished.set(!Thread.currentThread().isInterrupted());
+			return 10;
+		});
+
+		// 컨텐츠가 size보다 작으면 count를 기다리지 않고 취소한다.
+		assertThat(page.getTotalElements()).isEqualTo(1);
+		assertThat(countFinished.get()).isFalse();
+	}
+
+	private ParallelPageExecutor newExecutor(boolean enabled, Duration timeout) {
+		return new ParallelPageExecutor(new NoOpTransactionManager(), enabled, 2, 4, timeout);
+	}
+
+	private void await(CyclicBarrier barrier) {
+		try {
+			barrier.await(2, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (BrokenBarrierException | TimeoutException e) {
+			throw new IllegalStateException("content and count did not run in parallel", e);
+		}
+	}
+
+	private void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** 커넥션 없이 트랜잭션 경계만 흉내 내는 트랜잭션 매니저 */
+	static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+		@Override
+		protected Object doGetTransaction() {
+			return new Object();
+		}
+
+		@Override
+		protected void doBegin(Object transaction, TransactionDefinition definition) {
+		}
+
+		@Override
+		protected void doCommit(DefaultTransactionStatus status) {
+		}
+
+		@Override
+		protected void doRollback(DefaultTransactionStatus status) {
+		}
+
+	}
+
+}
@@ -0,0 +1,184 @@
+package study.querydsl.repository.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.IndexAdviceDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.IndexAdvisor;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchQueryCache;
+
+@SpringBootTest
+@Transactional
+class UsernameGramIndexTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	EntityManagerFactory emf;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	MemberSearchQueryCache queryCache;
+
+	@Autowired
+	UsernameGramIndex usernameGramIndex;
+
+	Member alpha;
+
+	@BeforeEach
+	public void before() {
+		Team team = new Team("gramTeam");
+		em.persist(team);
+		alpha = new Member("GramAlphaMember", 10, team);
+		em.persist(alpha);
+		em.persist(new Member("gramBetaMember", 20, team));
+		em.persist(new Member("gram_gamma%", 30, team));
+		em.flush();
+		em.clear();
+	}
+
+	@Test
+	public void ignoreCase() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsernameIgnoreCase("gramalphamember");
+
+		assertThat(memberJpaRepository.search(condition)).extracting("username").containsExactly("GramAlphaMember");
+	}
+
+	@Test
+	public void startsWith() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsernameStartsWith("GRAM");
+		assertThat(memberJpaRepository.search(condition)).extracting("username")
+				.containsExactlyInAnyOrder("GramAlphaMember", "gramBetaMember", "gram_gamma%");
+
+		// _, % 는 와일드카드가 아니다.
+		condition.setUsernameStartsWith("gram_");
+		assertThat(memberJpaRepository.search(condition)).extracting("username").containsExactly("gram_gamma%");
+	}
+
+	@Test
+	public void contains() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsernameContains("AMEMB");
+		assertThat(memberJpaRepository.search(condition)).extracting("username")
+				.containsExactlyInAnyOrder("GramAlphaMember", "gramBetaMember");
+
+		condition.setUsernameContains("ma%");
+		assertThat(memberJpaRepository.search(condition)).extracting("username").containsExactly("gram_gamma%");
+
+		// 조각은 모두 있지만 이어져 있지 않으면 제외된다. ("alp", "lph", "pha" 는 있지만 "alpha member"는 아님)
+		condition.setUsernameContains("alphamember");
+		assertThat(memberJpaRepository.search(condition)).hasSize(1);
+		condition.setUsernameContains("phaalp");
+		assertThat(memberJpaRepository.search(condition)).isEmpty();
+	}
+
+	@Test
+	public void containsWithOtherConditions() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsernameContains("member");
+		condition.setTeamName("gramTeam");
+		condition.setAgeGoe(15);
+
+		List<MemberTeamDto> content = memberRepository
+				.searchPageComplex(condition, PageRequest.of(0, 10))
+				.getContent();
+		assertThat(content).extracting("username").containsExactly("gramBetaMember");
+	}
+
+	@Test
+	public void tooShortContains() {
+		assertThatThrownBy(() -> UsernameSearch.usernameContains("ab"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void maintainedByEntityListener() {
+		assertThat(grams(alpha.getId())).contains("gra", "alp", "ber");
+
+		Member found = em.find(Member.class, alpha.getId());
+		found.setUsername("GramOmega");
+		em.flush();
+		assertThat(grams(alpha.getId())).containsExactlyInAnyOrder("gra", "ram", "amo", "mom", "ome", "meg", "ega");
+
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsernameContains("omega");
+		assertThat(memberJpaRepository.search(condition)).extracting("username").containsExactly("GramOmega");
+		condition.setUsernameContains("alpha");
+		assertThat(memberJpaRepository.search(condition)).isEmpty();
+
+		em.remove(found);
+		em.flush();
+		assertThat(grams(alpha.getId())).isEmpty();
+	}
+
+	@Test
+	public void rebuildAfterBulkUpdate() {
+		// 벌크 update는 엔티티 리스너를 타지 않는다.
+		new JPAQueryFactory(em)
+				.update(member)
+				.set(member.username, "BulkRenamed")
+				.where(member.id.eq(alpha.getId()))
+				.execute();
+
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsernameContains("renamed");
+		assertThat(memberJpaRepository.search(condition)).isEmpty();
+
+		assertThat(usernameGramIndex.rebuild()).isGreaterThanOrEqualTo(3);
+		assertThat(memberJpaRepository.search(condition)).extracting("username").containsExactly("BulkRenamed");
+	}
+
+	@Test
+	public void noFullScan() {
+		IndexAdvisor advisor = new IndexAdvisor(queryCache, emf, jdbcTemplate);
+		MemberSearchCondition startsWith = new MemberSearchCondition();
+		startsWith.setUsernameStartsWith("gram");
+		MemberSearchCondition contains = new MemberSearchCondition();
+		contains.setUsernameContains("member");
+		advisor.record(startsWith);
+		advisor.record(contains);
+
+		for (IndexAdviceDto advice : advisor.advise()) {
+			assertThat(advice.isFullScan()).as(advice.getPlan()).isFalse();
+		}
+	}
+
+	private List<String> grams(Long memberId) {
+		return jdbcTemplate.queryForList("select gram from member_username_gram where member_id = ?", String.class,
+				memberId);
+	}
+
+}